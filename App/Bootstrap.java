@@ -0,0 +1,307 @@
+package App;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import App.container.Container;
+import App.container.Journal;
+import App.container.JournalReplayer;
+import App.container.SnapshotReader;
+import App.container.data.AppointmentContainer;
+import App.container.data.AppointmentOutcomeRecordContainer;
+import App.container.data.MedicineContainer;
+import App.container.data.RecordContainer;
+import App.container.data.ReplenishmentRequestContainer;
+import App.container.user.AdministratorContainer;
+import App.container.user.DoctorContainer;
+import App.container.user.PatientContainer;
+import App.container.user.PharmacistContainer;
+import App.container.user.StaffContainer;
+import App.container.user.StaffLoader;
+import App.container.user.UserContainer;
+import App.record.Prescription;
+import App.record.RecordIdAllocator;
+
+
+/**
+ * Bootstrap stage of the Hospital Management System (HMS).
+ *
+ * Holds the paths of all data files and loads every container from them. Containers that do not depend on each
+ * other are loaded in parallel on a fork-join pool, so a cold start takes about as long as the largest file
+ * instead of the sum of all files. The load time of each container is reported on the console.
+ *
+ * The CSV files are a snapshot; changes made since the snapshot are kept in the journal and replayed on top of it.
+ * Most CSV files also have a binary snapshot next to them, which is loaded instead of the CSV file while it is up to date.
+ */
+public class Bootstrap {
+    public static final String PATIENT_PATH = "data/Patient_List.csv";
+    public static final String STAFF_PATH = "data/Staff_List.csv";
+    public static final String MEDICINE_PATH = "data/Medicine_List.csv";
+    public static final String MEDICAL_RECORD_PATH = "data/Medical_Record.csv";
+    public static final String APPOINTMENT_PATH = "data/Appointment_List.csv";
+    public static final String APPOINTMENT_OUTCOME_RECORD_PATH = "data/AppointmentOutcomeRecord_List.csv";
+    public static final String REPLENISHMENT_REQUEST_PATH = "data/ReplenishmentRequest_List.csv";
+    public static final String DOCTOR_ADDITIONALS_PATH = "data/DoctorAdditionals_List.csv";
+    public static final String PRESCRIPTIONS_PATH = "data/Prescriptions_List.csv";
+
+    public static final String JOURNAL_PATH = "data/journal";
+    public static final String RECORD_IDS_PATH = "data/Record_Ids.csv";
+
+    // Files with a binary snapshot. The medical record file has none, as its records are read from it by position.
+    private static final String[] SNAPSHOT_PATHS = {
+        PATIENT_PATH, STAFF_PATH, MEDICINE_PATH, APPOINTMENT_PATH,
+        APPOINTMENT_OUTCOME_RECORD_PATH, REPLENISHMENT_REQUEST_PATH, DOCTOR_ADDITIONALS_PATH, PRESCRIPTIONS_PATH
+    };
+
+    /**
+     * Opens the journal, finishing a checkpoint that was interrupted by a crash.
+     *
+     * @return The opened journal.
+     * @throws IOException If the journal directory cannot be created or read.
+     */
+    public static Journal openJournal() throws IOException {
+        return new Journal(JOURNAL_PATH);
+    }
+
+    /**
+     * Loads all containers from the data files, replays the changes journaled since the last checkpoint
+     * and attaches the journal to every container, so that every further change is journaled.
+     * Records keep the IDs stored with them, and new record IDs continue from the high-water marks saved at the
+     * last checkpoint.
+     *
+     * @param journal The opened journal.
+     * @return A HashMap of all containers, keyed by the names used by StartMenu.
+     * @throws IOException If the journal cannot be read or started.
+     */
+    public static HashMap<String, Container> loadContainers(Journal journal) throws IOException {
+        HashMap<String, Container> containers = loadContainers(true);
+        // Raised after loading, so records of files written before record IDs were stored get the same IDs every start
+        RecordIdAllocator.load(RECORD_IDS_PATH);
+
+        long start = System.nanoTime();
+        long lastLsn = new JournalReplayer(containers).replay(journal, journal.getCheckpointLsn(), Long.MAX_VALUE);
+        if (lastLsn > journal.getCheckpointLsn()) {
+            System.out.printf("Replayed %d journal entries in %d ms%n", lastLsn - journal.getCheckpointLsn(), (System.nanoTime() - start) / 1_000_000);
+        }
+
+        journal.start(lastLsn, upToLsn -> compact(journal, upToLsn));
+        for (Container container : containers.values()) {
+            if (container instanceof RecordContainer) {
+                ((RecordContainer) container).setJournal(journal);
+            } else if (container instanceof UserContainer) {
+                ((UserContainer) container).setJournal(journal);
+            }
+        }
+        return containers;
+    }
+
+    /**
+     * Loads all containers from the data files.
+     *
+     * Patients, staff, medicines, appointments, replenishment requests and prescriptions are loaded at the same time.
+     * Appointment outcome records are loaded as soon as the prescriptions they depend on are available.
+     * The records keep the IDs stored in the files; records of files written before record IDs were stored take new IDs.
+     *
+     * @param report true to report the load time of each container on the console.
+     * @return A HashMap of all containers, keyed by the names used by StartMenu.
+     */
+    private static HashMap<String, Container> loadContainers(boolean report) {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            long start = System.nanoTime();
+
+            CompletableFuture<PatientContainer> patients = CompletableFuture.supplyAsync(
+                () -> timed(report, "Patient", () -> new PatientContainer(PATIENT_PATH, MEDICAL_RECORD_PATH)), pool);
+            CompletableFuture<StaffLoader> staff = CompletableFuture.supplyAsync(
+                () -> timed(report, "Staff", () -> new StaffLoader(STAFF_PATH, DOCTOR_ADDITIONALS_PATH)), pool);
+            CompletableFuture<MedicineContainer> medicines = CompletableFuture.supplyAsync(
+                () -> timed(report, "Medicine", () -> new MedicineContainer(MEDICINE_PATH)), pool);
+            CompletableFuture<AppointmentContainer> appointments = CompletableFuture.supplyAsync(
+                () -> timed(report, "Appointment", () -> new AppointmentContainer(APPOINTMENT_PATH)), pool);
+            CompletableFuture<ReplenishmentRequestContainer> replenishmentRequests = CompletableFuture.supplyAsync(
+                () -> timed(report, "ReplenishmentRequest", () -> new ReplenishmentRequestContainer(REPLENISHMENT_REQUEST_PATH)), pool);
+
+            // Outcome records need the prescriptions index, so they start once it has been built
+            CompletableFuture<HashMap<String, ArrayList<Prescription>>> prescriptions = CompletableFuture.supplyAsync(
+                () -> timed(report, "Prescription", () -> AppointmentOutcomeRecordContainer.loadPrescriptions(PRESCRIPTIONS_PATH)), pool);
+            CompletableFuture<AppointmentOutcomeRecordContainer> appointmentOutcomes = prescriptions.thenApplyAsync(
+                index -> timed(report, "AppointmentOutcomeRecord", () -> new AppointmentOutcomeRecordContainer(APPOINTMENT_OUTCOME_RECORD_PATH, index)), pool);
+
+            HashMap<String, Container> containers = new HashMap<>();
+            containers.put("Patient", patients.join());
+            containers.put("Doctor", staff.join().getDoctorContainer());
+            containers.put("Pharmacist", staff.join().getPharmacistContainer());
+            containers.put("Administrator", staff.join().getAdministratorContainer());
+            containers.put("Medicine", medicines.join());
+            containers.put("Appointment", appointments.join());
+            containers.put("AppointmentOutcomeRecord", appointmentOutcomes.join());
+            containers.put("ReplenishmentRequest", replenishmentRequests.join());
+
+            if (report) {
+                System.out.printf("All data loaded in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+            }
+            return containers;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Folds the journal entries up to the given log sequence number into the CSV files.
+     * Runs on the journal's background compaction thread: it loads its own copy of the containers from the
+     * CSV files, so it never touches the containers used by the menus. The records of the copy keep the IDs stored
+     * in the files and the journal, so loading it takes no new record IDs. The high-water marks are saved with the
+     * checkpoint.
+     *
+     * @param journal The journal to compact.
+     * @param upToLsn The log sequence number of the last entry to fold in.
+     */
+    private static void compact(Journal journal, long upToLsn) {
+        try {
+            HashMap<String, Container> snapshot = loadContainers(false);
+            new JournalReplayer(snapshot).replay(journal, journal.getCheckpointLsn(), upToLsn);
+            List<String> exported = exportContainers(snapshot, Journal.COMPACT_SUFFIX);
+            journal.checkpoint(upToLsn, exported);
+            RecordIdAllocator.save(RECORD_IDS_PATH);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Closes the journal and writes the changed containers to the CSV files, so the next start does not need to replay
+     * anything. Nothing is written if no change was journaled since the last checkpoint and every snapshot is up to date.
+     *
+     * @param containers The containers used by the menus, which must no longer be changed.
+     * @param journal The journal attached to the containers.
+     */
+    public static void checkpoint(HashMap<String, Container> containers, Journal journal) {
+        journal.close();
+        RecordIdAllocator.save(RECORD_IDS_PATH);
+        long lastLsn = journal.getLastLsn();
+        if (lastLsn <= journal.getCheckpointLsn() && snapshotsFresh()) {
+            return;
+        }
+        try {
+            List<String> exported = exportContainers(containers, Journal.COMPACT_SUFFIX);
+            journal.checkpoint(lastLsn, exported);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Exports every container that changed since it was loaded or last exported to its CSV files and their snapshots.
+     * Files whose rows did not change are skipped, so a session that changed one appointment rewrites one file.
+     * Files without an up-to-date snapshot are written as well, so the next start can load the snapshot.
+     *
+     * @param containers A HashMap of all containers, keyed by the names used by StartMenu.
+     * @param suffix Appended to every path, so the files can be moved into place later; empty to write them directly.
+     * @return The paths (without suffix) of the files and snapshots that were written.
+     */
+    public static List<String> exportContainers(HashMap<String, Container> containers, String suffix) {
+        PatientContainer patientContainer = (PatientContainer) containers.get("Patient");
+        DoctorContainer doctorContainer = (DoctorContainer) containers.get("Doctor");
+        PharmacistContainer pharmacistContainer = (PharmacistContainer) containers.get("Pharmacist");
+        AdministratorContainer administratorContainer = (AdministratorContainer) containers.get("Administrator");
+        MedicineContainer medicineContainer = (MedicineContainer) containers.get("Medicine");
+        AppointmentContainer appointmentContainer = (AppointmentContainer) containers.get("Appointment");
+        ReplenishmentRequestContainer replenishmentRequestContainer = (ReplenishmentRequestContainer) containers.get("ReplenishmentRequest");
+        AppointmentOutcomeRecordContainer appointmentOutcomeContainer = (AppointmentOutcomeRecordContainer) containers.get("AppointmentOutcomeRecord");
+
+        List<String> exported = new ArrayList<>();
+        if (patientContainer.hasChanges() || !SnapshotReader.isFresh(PATIENT_PATH)) {
+            patientContainer.exportPatientsToCSV(PATIENT_PATH + suffix);
+            addExported(exported, PATIENT_PATH);
+        }
+        if (doctorContainer.hasChanges() || pharmacistContainer.hasChanges() || administratorContainer.hasChanges() || !SnapshotReader.isFresh(STAFF_PATH)) {
+            StaffContainer.exportStaffToCSV(STAFF_PATH + suffix, doctorContainer, pharmacistContainer, administratorContainer);
+            addExported(exported, STAFF_PATH);
+        }
+        if (medicineContainer.hasChanges() || !SnapshotReader.isFresh(MEDICINE_PATH)) {
+            medicineContainer.exportMedicineToCSV(MEDICINE_PATH + suffix);
+            addExported(exported, MEDICINE_PATH);
+        }
+        if (appointmentContainer.hasChanges() || !SnapshotReader.isFresh(APPOINTMENT_PATH)) {
+            appointmentContainer.exportAppointmentToCSV(APPOINTMENT_PATH + suffix);
+            addExported(exported, APPOINTMENT_PATH);
+        }
+        if (replenishmentRequestContainer.hasChanges() || !SnapshotReader.isFresh(REPLENISHMENT_REQUEST_PATH)) {
+            replenishmentRequestContainer.exportReplenishmentRequestToCSV(REPLENISHMENT_REQUEST_PATH + suffix);
+            addExported(exported, REPLENISHMENT_REQUEST_PATH);
+        }
+        if (appointmentOutcomeContainer.hasChanges() || !SnapshotReader.isFresh(APPOINTMENT_OUTCOME_RECORD_PATH)) {
+            appointmentOutcomeContainer.exportAppointmentOutcomeRecordToCSV(APPOINTMENT_OUTCOME_RECORD_PATH + suffix);
+            addExported(exported, APPOINTMENT_OUTCOME_RECORD_PATH);
+        }
+        if (appointmentOutcomeContainer.hasPrescriptionChanges() || !SnapshotReader.isFresh(PRESCRIPTIONS_PATH)) {
+            appointmentOutcomeContainer.exportPrescriptionsToCSV(PRESCRIPTIONS_PATH + suffix);
+            addExported(exported, PRESCRIPTIONS_PATH);
+        }
+        if (doctorContainer.hasAdditionalChanges() || !SnapshotReader.isFresh(DOCTOR_ADDITIONALS_PATH)) {
+            doctorContainer.exportDoctorAdditionalsToCSV(DOCTOR_ADDITIONALS_PATH + suffix);
+            addExported(exported, DOCTOR_ADDITIONALS_PATH);
+        }
+        if (patientContainer.hasMedicalRecordChanges()) {
+            patientContainer.exportMedicalRecordsToCSV(MEDICAL_RECORD_PATH + suffix);
+            exported.add(MEDICAL_RECORD_PATH);
+        }
+
+        for (Container container : containers.values()) {
+            if (container instanceof RecordContainer) {
+                ((RecordContainer) container).clearChanges();
+            } else if (container instanceof UserContainer) {
+                ((UserContainer) container).clearChanges();
+            }
+        }
+        return exported;
+    }
+
+    /**
+     * Records that a CSV file and its snapshot were written.
+     *
+     * @param exported The paths of the files written so far.
+     * @param path The path of the CSV file.
+     */
+    private static void addExported(List<String> exported, String path) {
+        exported.add(path);
+        exported.add(SnapshotReader.snapshotPath(path));
+    }
+
+    /**
+     * Checks whether every CSV file has an up-to-date snapshot.
+     *
+     * @return True if no snapshot needs to be written, otherwise false.
+     */
+    private static boolean snapshotsFresh() {
+        for (String path : SNAPSHOT_PATHS) {
+            if (!SnapshotReader.isFresh(path)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs a loader and reports how long it took.
+     *
+     * @param <T> The type of the loaded object.
+     * @param report false to run the loader without reporting.
+     * @param name The name of the data being loaded, used in the report.
+     * @param loader The loader to run.
+     * @return The loaded object.
+     */
+    private static <T> T timed(boolean report, String name, Supplier<T> loader) {
+        long start = System.nanoTime();
+        T result = loader.get();
+        if (report) {
+            System.out.printf("Loaded %s in %d ms%n", name, (System.nanoTime() - start) / 1_000_000);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,363 @@
+package App.container;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Reads a comma separated file row by row, straight from the bytes of the file.
+ *
+ * Large files are memory-mapped with FileChannel.map one window at a time, so files of any size can be read
+ * without copying them onto the heap. Small files are read into a single heap buffer instead, which keeps them
+ * from staying mapped (and locked on some platforms) until the buffer is garbage collected.
+ *
+ * Fields are never split into intermediate strings: the reader only records where each field starts and ends,
+ * parses numbers directly from the bytes and returns repeated identifiers as shared strings.
+ * Leading and trailing spaces of every field are ignored, like String.trim() did in the old loaders.
+ */
+public class CsvReader implements RowReader {
+    private static final long MAP_THRESHOLD = 1L << 20;    // Files up to 1 MB are read, not mapped
+    private static final long WINDOW_SIZE = 1L << 28;      // 256 MB mapped at a time
+    private static final int MAX_SHARED_IDS = 4096;        // Identifiers remembered by getId
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private ByteBuffer buffer;
+    private long bufferOffset;      // Position of buffer[0] within the file
+    private int position;           // Start of the next row within the buffer
+    private long rowOffset;         // Position of the current row within the file
+
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private int fieldCount;
+    private byte[] scratch = new byte[256];
+    private String[] idTable = new String[256];
+    private int idCount;
+
+    /**
+     * Opens a CSV file for reading.
+     *
+     * @param filePath Path to the CSV file.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    public CsvReader(String filePath) throws IOException {
+        this(filePath, 0);
+    }
+
+    /**
+     * Opens a CSV file for reading, starting at a row whose position was recorded earlier with getRowOffset().
+     *
+     * @param filePath Path to the CSV file.
+     * @param offset Position within the file of the first row to read.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    public CsvReader(String filePath, long offset) throws IOException {
+        channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        fileSize = channel.size();
+        loadWindow(Math.min(offset, fileSize));
+    }
+
+    /**
+     * Makes the part of the file starting at the given offset available in the buffer.
+     *
+     * @param offset The position within the file where the buffer should start.
+     * @throws IOException If the file cannot be read.
+     */
+    private void loadWindow(long offset) throws IOException {
+        long length = Math.min(WINDOW_SIZE, fileSize - offset);
+        if (fileSize <= MAP_THRESHOLD) {
+            ByteBuffer heap = ByteBuffer.allocate((int) length);
+            while (heap.hasRemaining() && channel.read(heap, offset + heap.position()) >= 0) {
+                // Keep reading until the whole file is in memory
+            }
+            heap.flip();
+            buffer = heap;
+        } else {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+        bufferOffset = offset;
+        position = 0;
+    }
+
+    /**
+     * Advances to the next non-empty row of the file.
+     *
+     * @return true if a row was read, false at the end of the file.
+     * @throws IOException If the file cannot be read or a single row is larger than the mapping window.
+     */
+    public boolean nextRow() throws IOException {
+        while (true) {
+            int limit = buffer.limit();
+            int end = position;
+            while (end < limit && buffer.get(end) != '\n') {
+                end++;
+            }
+            if (end == limit && bufferOffset + limit < fileSize) {
+                // The row continues past this window, so move the window to start at this row
+                if (position == 0) {
+                    throw new IOException("CSV row longer than " + WINDOW_SIZE + " bytes");
+                }
+                loadWindow(bufferOffset + position);
+                continue;
+            }
+            if (position >= limit) {
+                return false;
+            }
+
+            int rowStart = position;
+            rowOffset = bufferOffset + rowStart;
+            int rowEnd = (end > rowStart && buffer.get(end - 1) == '\r') ? end - 1 : end;
+            position = end + 1;
+            if (rowEnd > rowStart) {
+                splitRow(rowStart, rowEnd);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Records the start and end of every field of the row held in buffer[start, end).
+     *
+     * @param start Index of the first byte of the row.
+     * @param end Index just after the last byte of the row.
+     */
+    private void splitRow(int start, int end) {
+        fieldCount = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || buffer.get(i) == ',') {
+                if (fieldCount == fieldStarts.length) {
+                    fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+                    fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+                }
+                int s = fieldStart;
+                int e = i;
+                while (s < e && isBlank(buffer.get(s))) s++;
+                while (e > s && isBlank(buffer.get(e - 1))) e--;
+                fieldStarts[fieldCount] = s;
+                fieldEnds[fieldCount] = e;
+                fieldCount++;
+                fieldStart = i + 1;
+            }
+        }
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * Gets the position of the current row within the file, so it can be read again later without reading
+     * the rows before it.
+     *
+     * @return The offset of the first byte of the current row.
+     */
+    public long getRowOffset() {
+        return rowOffset;
+    }
+
+    /**
+     * Gets the number of fields in the current row.
+     *
+     * @return The number of fields.
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Gets a field of the current row as a string.
+     *
+     * @param index The index of the field.
+     * @return The trimmed field, or an empty string if the row has no such field.
+     */
+    public String getString(int index) {
+        if (index >= fieldCount) {
+            return "";
+        }
+        return decode(fieldStarts[index], fieldEnds[index]);
+    }
+
+    /**
+     * Gets a field of the current row that holds a repeating identifier, such as a foreign-key hospital ID or a
+     * status. Equal identifiers are returned as the same String instance, and an identifier that was already seen
+     * by this reader is returned without allocating anything. The reader remembers at most MAX_SHARED_IDS
+     * identifiers; after that, new identifiers are returned as fresh strings. Columns whose values are unique,
+     * such as the primary key of a file, should be read with getString instead.
+     *
+     * @param index The index of the field.
+     * @return The trimmed, shared field, or an empty string if the row has no such field.
+     */
+    public String getId(int index) {
+        if (index >= fieldCount) {
+            return "";
+        }
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < 0) {
+                return decode(start, end); // Non-ASCII identifiers are not cached
+            }
+            hash = 31 * hash + b;
+        }
+        int mask = idTable.length - 1;
+        int slot = mix(hash) & mask;
+        String candidate;
+        while ((candidate = idTable[slot]) != null) {
+            if (matches(candidate, start, end)) {
+                return candidate;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        String id = decode(start, end);
+        if (idCount == MAX_SHARED_IDS) {
+            return id; // The table is full, so this identifier is not shared
+        }
+        idTable[slot] = id;
+        if (++idCount * 2 > idTable.length) {
+            growIdTable();
+        }
+        return id;
+    }
+
+    /**
+     * Checks whether a cached ASCII identifier has exactly the bytes of buffer[start, end).
+     */
+    private boolean matches(String candidate, int start, int end) {
+        if (candidate.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (candidate.charAt(i - start) != buffer.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void growIdTable() {
+        String[] old = idTable;
+        idTable = new String[old.length * 2];
+        int mask = idTable.length - 1;
+        for (String id : old) {
+            if (id != null) {
+                int hash = 0;
+                for (int i = 0; i < id.length(); i++) {
+                    hash = 31 * hash + id.charAt(i);
+                }
+                int slot = mix(hash) & mask;
+                while (idTable[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                idTable[slot] = id;
+            }
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Gets a field of the current row as an int, parsed directly from the bytes of the file.
+     *
+     * @param index The index of the field.
+     * @return The value of the field.
+     * @throws NumberFormatException If the field is missing or is not a valid int.
+     */
+    public int getInt(int index) {
+        if (index >= fieldCount || fieldStarts[index] == fieldEnds[index]) {
+            throw new NumberFormatException("Missing number in field " + index);
+        }
+        int i = fieldStarts[index];
+        int end = fieldEnds[index];
+        boolean negative = buffer.get(i) == '-';
+        if (negative || buffer.get(i) == '+') {
+            i++;
+        }
+        if (i == end) {
+            throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Gets a field of the current row that holds a list, such as "Diabetes;Hypertension".
+     * Empty entries at the end of the list are dropped, as String.split did.
+     *
+     * @param index The index of the field.
+     * @param separator The character separating the entries of the list.
+     * @return A modifiable list of the entries, empty if the field is missing or blank.
+     */
+    public ArrayList<String> getList(int index, char separator) {
+        ArrayList<String> entries = new ArrayList<>();
+        if (index >= fieldCount) {
+            return entries;
+        }
+        int end = fieldEnds[index];
+        int entryStart = fieldStarts[index];
+        for (int i = entryStart; i <= end; i++) {
+            if (i == end || buffer.get(i) == separator) {
+                entries.add(decode(entryStart, i));
+                entryStart = i + 1;
+            }
+        }
+        while (!entries.isEmpty() && entries.get(entries.size() - 1).isEmpty()) {
+            entries.remove(entries.size() - 1);
+        }
+        return entries;
+    }
+
+    /**
+     * Decodes buffer[start, end) into a string.
+     */
+    private String decode(int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return "";
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(start, scratch, 0, length);
+        for (int i = 0; i < length; i++) {
+            if (scratch[i] < 0) {
+                return new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+        }
+        return new String(scratch, 0, length, StandardCharsets.ISO_8859_1); // Plain ASCII
+    }
+
+    /**
+     * Closes the underlying file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,80 @@
+package App.container;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes every row to a CSV file and to its binary snapshot at the same time.
+ * The CSV file is committed first, so the snapshot can record the size and modification time of the committed file.
+ */
+class CsvSnapshotWriter implements RowWriter {
+    private final CsvWriter csv;
+    private final SnapshotWriter snapshot;
+
+    /**
+     * Constructs a writer for a CSV file and its snapshot.
+     *
+     * @param csv The writer of the CSV file.
+     * @param snapshot The writer of the snapshot.
+     */
+    CsvSnapshotWriter(CsvWriter csv, SnapshotWriter snapshot) {
+        this.csv = csv;
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public RowWriter writeLine(String line) throws IOException {
+        csv.writeLine(line);
+        snapshot.writeLine(line);
+        return this;
+    }
+
+    @Override
+    public RowWriter field(String value) throws IOException {
+        csv.field(value);
+        snapshot.field(value);
+        return this;
+    }
+
+    @Override
+    public RowWriter id(String value) throws IOException {
+        csv.id(value);
+        snapshot.id(value);
+        return this;
+    }
+
+    @Override
+    public RowWriter field(int value) throws IOException {
+        csv.field(value);
+        snapshot.field(value);
+        return this;
+    }
+
+    @Override
+    public RowWriter field(List<String> values, char separator) throws IOException {
+        csv.field(values, separator);
+        snapshot.field(values, separator);
+        return this;
+    }
+
+    @Override
+    public void endRow() throws IOException {
+        csv.endRow();
+        snapshot.endRow();
+    }
+
+    @Override
+    public void commit() throws IOException {
+        csv.commit();
+        snapshot.commit();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            csv.close();
+        } finally {
+            snapshot.close();
+        }
+    }
+}
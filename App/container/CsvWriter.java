@@ -0,0 +1,249 @@
+package App.container;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes a comma separated file row by row through one large, reusable buffer.
+ *
+ * Fields are encoded straight into the buffer: plain ASCII text is copied one byte per character and numbers are
+ * formatted digit by digit, so writing a row allocates nothing. The buffer is only handed to the file when it is
+ * full, which turns millions of small writes into a few large ones.
+ *
+ * A new file is written next to its destination and only replaces it when commit() is called, so a failed export
+ * never leaves a half-written CSV file behind. A writer opened in append mode writes to the file directly.
+ *
+ * Typical use:
+ * <pre>
+ * try (CsvWriter writer = new CsvWriter(filePath)) {
+ *     writer.writeLine("Header,Line");
+ *     writer.field(name).field(amount).endRow();
+ *     writer.commit();
+ * }
+ * </pre>
+ */
+public class CsvWriter implements RowWriter {
+    private static final int BUFFER_SIZE = 1 << 20;    // 1 MB per write to the file
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+    private final byte[] digits = new byte[11];
+    private int count;
+    private boolean rowStarted;
+    private boolean committed;
+
+    /**
+     * Opens a CSV file for writing. The existing file is replaced when the writer is committed.
+     *
+     * @param filePath Path to the CSV file.
+     * @throws IOException If the file cannot be created.
+     */
+    public CsvWriter(String filePath) throws IOException {
+        this(filePath, false);
+    }
+
+    /**
+     * Opens a CSV file for writing.
+     *
+     * @param filePath Path to the CSV file.
+     * @param append true to add rows to the end of the existing file, false to replace the file on commit.
+     * @throws IOException If the file cannot be opened.
+     */
+    public CsvWriter(String filePath, boolean append) throws IOException {
+        target = Paths.get(filePath);
+        if (append) {
+            temp = null;
+            channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } else {
+            temp = Paths.get(filePath + ".tmp");
+            channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes a complete line, such as a header, followed by a line break.
+     *
+     * @param line The line to write, without the line break.
+     * @return This writer.
+     * @throws IOException If the file cannot be written.
+     */
+    public CsvWriter writeLine(String line) throws IOException {
+        writeText(line);
+        writeByte('\n');
+        rowStarted = false;
+        return this;
+    }
+
+    /**
+     * Writes a text field of the current row.
+     *
+     * @param value The value of the field. null is written as "null", like String.format did.
+     * @return This writer.
+     * @throws IOException If the file cannot be written.
+     */
+    public CsvWriter field(String value) throws IOException {
+        separate();
+        writeText(value == null ? "null" : value);
+        return this;
+    }
+
+    /**
+     * Writes an identifier field of the current row. In a CSV file identifiers are plain text fields.
+     *
+     * @param value The value of the field.
+     * @return This writer.
+     * @throws IOException If the file cannot be written.
+     */
+    public CsvWriter id(String value) throws IOException {
+        return field(value);
+    }
+
+    /**
+     * Writes a number field of the current row without creating a String for it.
+     *
+     * @param value The value of the field.
+     * @return This writer.
+     * @throws IOException If the file cannot be written.
+     */
+    public CsvWriter field(int value) throws IOException {
+        separate();
+        if (value == Integer.MIN_VALUE) {
+            writeText(Integer.toString(value));
+            return this;
+        }
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (length > 0) {
+            writeByte(digits[--length]);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a list field of the current row, such as "Diabetes;Hypertension", without joining it into a String first.
+     *
+     * @param values The entries of the list.
+     * @param separator The character placed between entries.
+     * @return This writer.
+     * @throws IOException If the file cannot be written.
+     */
+    public CsvWriter field(List<String> values, char separator) throws IOException {
+        separate();
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writeByte(separator);
+            }
+            writeText(values.get(i));
+        }
+        return this;
+    }
+
+    /**
+     * Ends the current row with a line break.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void endRow() throws IOException {
+        writeByte('\n');
+        rowStarted = false;
+    }
+
+    /**
+     * Writes the comma before every field except the first of a row.
+     */
+    private void separate() throws IOException {
+        if (rowStarted) {
+            writeByte(',');
+        }
+        rowStarted = true;
+    }
+
+    /**
+     * Encodes text into the buffer, copying plain ASCII characters directly and UTF-8 encoding anything else.
+     */
+    private void writeText(String text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                writeByte(c);
+            } else {
+                byte[] encoded = text.substring(i).getBytes(StandardCharsets.UTF_8);
+                for (byte b : encoded) {
+                    writeByte(b);
+                }
+                return;
+            }
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    /**
+     * Hands everything in the buffer to the file.
+     */
+    private void flushBuffer() throws IOException {
+        wrapped.clear().limit(count);
+        while (wrapped.hasRemaining()) {
+            channel.write(wrapped);
+        }
+        count = 0;
+    }
+
+    /**
+     * Writes the rest of the buffer and makes the written file the new CSV file.
+     *
+     * @throws IOException If the file cannot be written or moved into place.
+     */
+    public void commit() throws IOException {
+        flushBuffer();
+        channel.force(false);
+        channel.close();
+        if (temp != null) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        committed = true;
+    }
+
+    /**
+     * Closes the file. If the writer was not committed, a new file is discarded and the destination is left unchanged.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (committed) {
+            return;
+        }
+        if (temp == null) {
+            flushBuffer();
+            channel.close();
+        } else {
+            channel.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+}
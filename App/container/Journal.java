@@ -0,0 +1,505 @@
+package App.container;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Append-only write-ahead journal of every change made to the containers.
+ *
+ * Each change is written as one line "lsn TAB operation TAB field ..." to the current segment file, where lsn is
+ * the log sequence number of the entry. Appending threads hand their entry to a single flusher thread and wait
+ * until it is on disk; the flusher writes everything that has piled up in one write and one fsync, so concurrent
+ * changes share the cost of a sync (group commit). Containers hand over the entry while they hold their lock and
+ * wait after releasing it (enqueue, then awaitDurable), so other changes are not held up behind the sync.
+ *
+ * The CSV files are the snapshot the journal applies to. The checkpoint file records the last entry already
+ * contained in them, and on startup every later entry is replayed. When a segment grows past SEGMENT_SIZE it is
+ * sealed and a compactor is started in the background, which folds the sealed entries into the CSV files and
+ * deletes the segments.
+ *
+ * Compacted CSV files are first written next to their destination with the COMPACT_SUFFIX. The checkpoint file
+ * is then marked pending, the files are renamed into place, and the checkpoint is completed. A crash in between is
+ * finished the next time the journal is opened, so an entry is never applied twice or lost.
+ */
+public class Journal {
+    public static final String APPOINTMENT_ADD = "APPOINTMENT_ADD";
+    public static final String APPOINTMENT_STATUS = "APPOINTMENT_STATUS";
+    public static final String APPOINTMENT_TIME = "APPOINTMENT_TIME";
+    public static final String APPOINTMENT_REMOVE = "APPOINTMENT_REMOVE";
+    public static final String APPOINTMENT_BOOK = "APPOINTMENT_BOOK";             // A slot taken and its appointment added
+    public static final String APPOINTMENT_RESCHEDULE = "APPOINTMENT_RESCHEDULE"; // An appointment moved to another slot
+    public static final String APPOINTMENT_CANCEL = "APPOINTMENT_CANCEL";         // An appointment removed and its slot given back
+    public static final String OUTCOME_ADD = "OUTCOME_ADD";
+    public static final String PRESCRIPTION_ADD = "PRESCRIPTION_ADD";
+    public static final String PRESCRIPTION_STATUS = "PRESCRIPTION_STATUS";
+    public static final String MEDICINE_STOCK = "MEDICINE_STOCK";
+    public static final String MEDICINE_THRESHOLD = "MEDICINE_THRESHOLD";
+    public static final String REPLENISHMENT_ADD = "REPLENISHMENT_ADD";
+    public static final String REPLENISHMENT_STATUS = "REPLENISHMENT_STATUS";
+    public static final String REPLENISHMENT_REMOVE = "REPLENISHMENT_REMOVE";
+    public static final String USER_PASSWORD = "USER_PASSWORD";
+    public static final String USER_NAME = "USER_NAME";
+    public static final String USER_GENDER = "USER_GENDER";
+    public static final String USER_REMOVE = "USER_REMOVE";
+    public static final String PATIENT_EMAIL = "PATIENT_EMAIL";
+    public static final String DIAGNOSIS_ADD = "DIAGNOSIS_ADD";
+    public static final String TREATMENT_ADD = "TREATMENT_ADD";
+    public static final String STAFF_ADD = "STAFF_ADD";
+    public static final String STAFF_AGE = "STAFF_AGE";
+    public static final String SLOT_ADD = "SLOT_ADD";
+    public static final String SLOT_REMOVE = "SLOT_REMOVE";
+    public static final String PATIENT_UNDER_CARE_ADD = "PATIENT_UNDER_CARE_ADD";
+
+    public static final String COMPACT_SUFFIX = ".compact";
+    private static final long SEGMENT_SIZE = 8L << 20;     // Seal a segment after 8 MB
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String PENDING = "pending";
+    private static final String COMPLETE = "complete";
+
+    private final Path directory;
+    private volatile long checkpointLsn;
+
+    private final Object lock = new Object();
+    private StringBuilder pending = new StringBuilder();
+    private long nextLsn;
+    private long pendingLsn;
+    private long durableLsn;
+    private boolean closed;
+    private IOException failure; // Set when a batch could not be written; nothing can be appended after that
+
+    private FileChannel segment;
+    private volatile long segmentFirstLsn;
+    private long segmentSize;
+    private Thread flusher;
+    private LongConsumer compactor;
+    private ExecutorService compactionExecutor;
+
+    /**
+     * Opens the journal in the given directory, finishing a checkpoint that was interrupted by a crash.
+     * Nothing can be appended until start() is called.
+     *
+     * @param directoryPath Path to the directory holding the journal segments and the checkpoint file.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    public Journal(String directoryPath) throws IOException {
+        directory = Paths.get(directoryPath);
+        Files.createDirectories(directory);
+        checkpointLsn = recoverCheckpoint();
+    }
+
+    /**
+     * Reads the checkpoint file and completes it if it was left pending.
+     *
+     * @return The last log sequence number contained in the CSV files.
+     */
+    private long recoverCheckpoint() throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        List<String> lines = Files.readAllLines(checkpoint, StandardCharsets.UTF_8);
+        long lsn = Long.parseLong(lines.get(0).trim());
+        if (lines.size() > 1 && lines.get(1).equals(PENDING)) {
+            List<String> paths = lines.subList(2, lines.size());
+            moveCompactedFiles(paths);
+            writeCheckpoint(lsn, COMPLETE, Collections.emptyList());
+        }
+        return lsn;
+    }
+
+    /**
+     * Gets the log sequence number of the last entry already contained in the CSV files.
+     *
+     * @return The checkpoint log sequence number, 0 if nothing was ever checkpointed.
+     */
+    public long getCheckpointLsn() {
+        return checkpointLsn;
+    }
+
+    /**
+     * Gets the log sequence number of the last entry appended to the journal.
+     *
+     * @return The last log sequence number.
+     */
+    public long getLastLsn() {
+        synchronized (lock) {
+            return nextLsn - 1;
+        }
+    }
+
+    /**
+     * Reads every complete entry with a log sequence number in (fromLsn, toLsn], in order.
+     * A line cut short by a crash at the end of the last segment is ignored.
+     *
+     * @param fromLsn Entries up to and including this number are skipped.
+     * @param toLsn Entries after this number are skipped.
+     * @param handler Called with the operation and the fields of each entry.
+     * @return The log sequence number of the last entry read, or fromLsn if there was none.
+     * @throws IOException If a segment cannot be read.
+     */
+    public long readEntries(long fromLsn, long toLsn, BiConsumer<String, String[]> handler) throws IOException {
+        List<Long> segments = listSegments();
+        long lastLsn = fromLsn;
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && segments.get(i + 1) <= fromLsn + 1) {
+                continue; // Every entry of this segment is already in the CSV files
+            }
+            if (segments.get(i) > toLsn) {
+                break;
+            }
+            byte[] bytes = Files.readAllBytes(segmentPath(segments.get(i)));
+            int lineStart = 0;
+            for (int j = 0; j < bytes.length; j++) {
+                if (bytes[j] == '\n') {
+                    String[] fields = decodeLine(new String(bytes, lineStart, j - lineStart, StandardCharsets.UTF_8));
+                    lineStart = j + 1;
+                    long lsn = Long.parseLong(fields[0]);
+                    if (lsn > fromLsn && lsn <= toLsn) {
+                        String[] values = new String[fields.length - 2];
+                        System.arraycopy(fields, 2, values, 0, values.length);
+                        handler.accept(fields[1], values);
+                        lastLsn = lsn;
+                    }
+                }
+            }
+        }
+        return lastLsn;
+    }
+
+    /**
+     * Starts accepting entries. Entries are written to a new segment, so a segment cut short by a crash is never
+     * appended to. If entries are waiting to be compacted, a compaction is started right away.
+     *
+     * @param lastLsn The log sequence number of the last entry replayed on startup.
+     * @param compactor Folds every entry up to the given log sequence number into the CSV files and then calls
+     *                  checkpoint(). It runs on a background thread, one compaction at a time.
+     * @throws IOException If the new segment cannot be created.
+     */
+    public void start(long lastLsn, LongConsumer compactor) throws IOException {
+        this.compactor = compactor;
+        compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        nextLsn = lastLsn + 1;
+        durableLsn = lastLsn;
+        openSegment(nextLsn, true);
+        if (lastLsn > checkpointLsn) {
+            compactUpTo(lastLsn);
+        }
+
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Appends an entry and waits until it is on disk.
+     *
+     * @param operation The operation of the entry, one of the constants of this class.
+     * @param fields The values the operation needs to be replayed.
+     * @throws UncheckedIOException If the entry could not be written, or an earlier entry could not be, or the
+     *                              thread was interrupted while waiting. The change is then not durable.
+     */
+    public void append(String operation, Object... fields) {
+        awaitDurable(enqueue(operation, fields));
+    }
+
+    /**
+     * Appends an entry without waiting for it to be on disk, and returns its log sequence number.
+     *
+     * Containers call this while they hold the lock that orders the change with other changes of the same data,
+     * so the journal has the entries in the order the changes were made, and call awaitDurable once the lock is
+     * released. Changes made meanwhile by other sessions then share the flusher's next sync.
+     *
+     * @param operation The operation of the entry, one of the constants of this class.
+     * @param fields The values the operation needs to be replayed.
+     * @return The log sequence number of the entry.
+     * @throws UncheckedIOException If an earlier entry could not be written.
+     */
+    public long enqueue(String operation, Object... fields) {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Journal cannot be written", failure);
+            }
+            long lsn = nextLsn++;
+            pending.append(lsn).append('\t').append(operation);
+            for (Object field : fields) {
+                pending.append('\t');
+                escape(pending, field == null ? "" : String.valueOf(field));
+            }
+            pending.append('\n');
+            pendingLsn = lsn;
+            lock.notifyAll();
+            return lsn;
+        }
+    }
+
+    /**
+     * Waits until the entry with the given log sequence number, and every entry before it, is on disk.
+     *
+     * @param lsn The log sequence number returned by enqueue.
+     * @throws UncheckedIOException If the entry could not be written, or an earlier entry could not be, or the
+     *                              thread was interrupted while waiting. The change is then not durable.
+     */
+    public void awaitDurable(long lsn) {
+        synchronized (lock) {
+            // Wait for the flusher, which syncs this entry together with every other entry appended meanwhile
+            while (durableLsn < lsn) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Journal entry " + lsn + " could not be written", failure);
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new InterruptedIOException("Interrupted before journal entry " + lsn + " was written"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes and syncs batches of entries until the journal is closed.
+     */
+    private void flushLoop() {
+        while (true) {
+            byte[] batch;
+            long batchLsn;
+            synchronized (lock) {
+                while (pending.length() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (pending.length() == 0) {
+                    return; // Closed and everything is written
+                }
+                batch = pending.toString().getBytes(StandardCharsets.UTF_8);
+                pending = new StringBuilder(Math.max(16, batch.length));
+                batchLsn = pendingLsn;
+            }
+
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    segment.write(buffer);
+                }
+                segment.force(false);
+                segmentSize += batch.length;
+                if (segmentSize >= SEGMENT_SIZE) {
+                    // Seal the segment; everything in it can now be folded into the CSV files
+                    segment.close();
+                    openSegment(batchLsn + 1, false);
+                    compactUpTo(batchLsn);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                synchronized (lock) {
+                    failure = e;
+                    pending.setLength(0); // Entries queued behind the failed batch can never be written in order
+                    lock.notifyAll();
+                }
+                return;
+            }
+
+            synchronized (lock) {
+                durableLsn = batchLsn;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Opens the segment whose first entry has the given log sequence number.
+     *
+     * @param firstLsn The log sequence number of the first entry of the segment.
+     * @param truncate true to discard a partial line left in the file by a crash.
+     */
+    private void openSegment(long firstLsn, boolean truncate) throws IOException {
+        segment = FileChannel.open(segmentPath(firstLsn), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (truncate) {
+            segment.truncate(0); // A segment named after the next entry cannot hold a complete entry yet
+        }
+        segment.position(segment.size());
+        segmentFirstLsn = firstLsn;
+        segmentSize = segment.size();
+    }
+
+    /**
+     * Starts a background compaction of every entry up to the given log sequence number.
+     */
+    private void compactUpTo(long lsn) {
+        compactionExecutor.execute(() -> {
+            try {
+                if (lsn > checkpointLsn) {
+                    compactor.accept(lsn);
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Makes the compacted CSV files the new snapshot and deletes the segments they contain.
+     * For each path, the file path + COMPACT_SUFFIX is moved onto path if it exists.
+     *
+     * @param lsn The log sequence number of the last entry contained in the compacted files.
+     * @param paths The paths of the CSV files.
+     * @throws IOException If the files cannot be moved or the checkpoint cannot be written.
+     */
+    public void checkpoint(long lsn, List<String> paths) throws IOException {
+        writeCheckpoint(lsn, PENDING, paths);
+        moveCompactedFiles(paths);
+        writeCheckpoint(lsn, COMPLETE, Collections.emptyList());
+        checkpointLsn = lsn;
+
+        List<Long> segments = listSegments();
+        long activeFirstLsn;
+        synchronized (lock) {
+            activeFirstLsn = closed ? nextLsn : segmentFirstLsn;
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            long next = i + 1 < segments.size() ? segments.get(i + 1) : activeFirstLsn;
+            if (segments.get(i) < activeFirstLsn && next <= lsn + 1) {
+                Files.deleteIfExists(segmentPath(segments.get(i)));
+            }
+        }
+    }
+
+    private void moveCompactedFiles(List<String> paths) throws IOException {
+        for (String path : paths) {
+            Path compacted = Paths.get(path + COMPACT_SUFFIX);
+            if (Files.exists(compacted)) {
+                Files.move(compacted, Paths.get(path), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+    }
+
+    private void writeCheckpoint(long lsn, String state, List<String> paths) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(Long.toString(lsn));
+        lines.add(state);
+        lines.addAll(paths);
+        Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Stops accepting entries, writes everything still pending and waits for a running compaction to finish.
+     */
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            if (flusher != null) {
+                flusher.join();
+            }
+            if (compactionExecutor != null) {
+                compactionExecutor.shutdown();
+                compactionExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            if (segment != null) {
+                segment.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Lists the first log sequence number of every segment, in order.
+     */
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentPath(long firstLsn) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Escapes backslashes, tabs and line breaks so that every entry stays on one line.
+     */
+    private static void escape(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': out.append("\\\\"); break;
+                case '\t': out.append("\\t"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                default: out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Splits a journal line into its fields and undoes the escaping.
+     */
+    private static String[] decodeLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                field.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,301 @@
+package App.container;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import App.container.data.AppointmentContainer;
+import App.container.data.AppointmentOutcomeRecordContainer;
+import App.container.data.MedicineContainer;
+import App.container.data.ReplenishmentRequestContainer;
+import App.container.user.DoctorContainer;
+import App.container.user.PatientContainer;
+import App.container.user.StaffContainer;
+import App.container.user.UserContainer;
+import App.record.Appointment;
+import App.record.AppointmentOutcomeRecord;
+import App.record.Medicine;
+import App.record.Record;
+import App.record.ReplenishmentRequest;
+import App.user.Doctor;
+import App.user.Patient;
+import App.user.Staff;
+
+
+/**
+ * Applies journal entries to a set of containers, through the same container methods the menus use.
+ * The containers must not have a journal attached while entries are replayed, so nothing is journaled twice.
+ */
+public class JournalReplayer {
+    private final PatientContainer patientContainer;
+    private final DoctorContainer doctorContainer;
+    private final StaffContainer[] staffContainers;
+    private final MedicineContainer medicineContainer;
+    private final AppointmentContainer appointmentContainer;
+    private final AppointmentOutcomeRecordContainer appointmentOutcomeRecordContainer;
+    private final ReplenishmentRequestContainer replenishmentRequestContainer;
+
+    /**
+     * Constructs a JournalReplayer for the given containers.
+     *
+     * @param containers A HashMap of all containers, keyed by the names used by StartMenu.
+     */
+    public JournalReplayer(HashMap<String, Container> containers) {
+        patientContainer = (PatientContainer) containers.get("Patient");
+        doctorContainer = (DoctorContainer) containers.get("Doctor");
+        staffContainers = new StaffContainer[] {
+            doctorContainer,
+            (StaffContainer) containers.get("Pharmacist"),
+            (StaffContainer) containers.get("Administrator")
+        };
+        medicineContainer = (MedicineContainer) containers.get("Medicine");
+        appointmentContainer = (AppointmentContainer) containers.get("Appointment");
+        appointmentOutcomeRecordContainer = (AppointmentOutcomeRecordContainer) containers.get("AppointmentOutcomeRecord");
+        replenishmentRequestContainer = (ReplenishmentRequestContainer) containers.get("ReplenishmentRequest");
+    }
+
+    /**
+     * Applies every journal entry with a log sequence number in (fromLsn, toLsn].
+     *
+     * @param journal The journal to read.
+     * @param fromLsn Entries up to and including this number are already in the containers.
+     * @param toLsn Entries after this number are not applied.
+     * @return The log sequence number of the last entry applied, or fromLsn if there was none.
+     * @throws IOException If the journal cannot be read.
+     */
+    public long replay(Journal journal, long fromLsn, long toLsn) throws IOException {
+        return journal.readEntries(fromLsn, toLsn, this::apply);
+    }
+
+    /**
+     * Applies a single journal entry. Entries that refer to something that no longer exists are skipped.
+     *
+     * @param operation The operation of the entry.
+     * @param fields The fields of the entry.
+     */
+    private void apply(String operation, String[] fields) {
+        switch (operation) {
+            case Journal.APPOINTMENT_ADD:
+                appointmentContainer.addAppointment(recordId(fields, 3), fields[0], fields[1], fields[2]);
+                break;
+            case Journal.APPOINTMENT_STATUS: {
+                Appointment appointment = appointmentContainer.getAppointmentByAppointmentIdentifyId(fields[0]);
+                if (appointment != null) {
+                    appointmentContainer.updateAppointmentStatus(appointment, fields[1]);
+                }
+                break;
+            }
+            case Journal.APPOINTMENT_TIME: {
+                Appointment appointment = appointmentContainer.getAppointmentByAppointmentIdentifyId(fields[0]);
+                if (appointment != null) {
+                    appointmentContainer.rescheduleAppointment(appointment, fields[1]);
+                }
+                break;
+            }
+            case Journal.APPOINTMENT_REMOVE: {
+                Appointment appointment = appointmentContainer.getAppointmentByAppointmentIdentifyId(fields[0]);
+                if (appointment != null) {
+                    appointmentContainer.removeAppointment(appointment.getRecordId());
+                }
+                break;
+            }
+            case Journal.APPOINTMENT_BOOK: {
+                Doctor doctor = doctorContainer.getDoctorByHospitalId(fields[0]);
+                if (doctor != null) {
+                    doctorContainer.restoreBooking(doctor, fields[1], fields[2], recordId(fields, 3), appointmentContainer);
+                } else {
+                    appointmentContainer.addAppointment(recordId(fields, 3), fields[1], fields[2], fields[0]);
+                }
+                break;
+            }
+            case Journal.APPOINTMENT_RESCHEDULE: {
+                Appointment appointment = appointmentContainer.getAppointmentByAppointmentIdentifyId(fields[0]);
+                if (appointment != null) {
+                    Doctor doctor = doctorContainer.getDoctorByHospitalId(appointment.getdoctorHospitalId());
+                    if (doctor != null) {
+                        doctorContainer.restoreReschedule(doctor, appointment, fields[1], appointmentContainer);
+                    } else {
+                        appointmentContainer.rescheduleAppointment(appointment, fields[1]);
+                        appointmentContainer.updateAppointmentStatus(appointment, "pending");
+                    }
+                }
+                break;
+            }
+            case Journal.APPOINTMENT_CANCEL: {
+                Appointment appointment = appointmentContainer.getAppointmentByAppointmentIdentifyId(fields[0]);
+                if (appointment != null) {
+                    Doctor doctor = doctorContainer.getDoctorByHospitalId(appointment.getdoctorHospitalId());
+                    if (doctor != null) {
+                        doctorContainer.cancelBooking(doctor, appointment, appointmentContainer);
+                    } else {
+                        appointmentContainer.removeAppointment(appointment.getRecordId());
+                    }
+                }
+                break;
+            }
+            case Journal.OUTCOME_ADD:
+                appointmentOutcomeRecordContainer.addAppointmentOutcomeRecord(recordId(fields, 5), fields[0], fields[1], fields[2], fields[3], fields[4]);
+                break;
+            case Journal.PRESCRIPTION_ADD: {
+                AppointmentOutcomeRecord record = appointmentOutcomeRecordContainer.getAppointmentOutcomeRecordById(fields[0]);
+                if (record != null) {
+                    appointmentOutcomeRecordContainer.addPrescription(record, recordId(fields, 3), fields[1], Integer.parseInt(fields[2]));
+                }
+                break;
+            }
+            case Journal.PRESCRIPTION_STATUS: {
+                AppointmentOutcomeRecord record = appointmentOutcomeRecordContainer.getAppointmentOutcomeRecordById(fields[0]);
+                int index = Integer.parseInt(fields[1]);
+                if (record != null && index < record.getPrescriptions().size()) {
+                    appointmentOutcomeRecordContainer.updatePrescriptionStatus(record, index, fields[2]);
+                }
+                break;
+            }
+            case Journal.MEDICINE_STOCK: {
+                Medicine medicine = medicineContainer.getMedicineByName(fields[0]);
+                if (medicine != null) {
+                    medicineContainer.updateStock(medicine, Integer.parseInt(fields[1]));
+                }
+                break;
+            }
+            case Journal.MEDICINE_THRESHOLD: {
+                Medicine medicine = medicineContainer.getMedicineByName(fields[0]);
+                if (medicine != null) {
+                    medicineContainer.updateAlertThreshold(medicine, Integer.parseInt(fields[1]));
+                }
+                break;
+            }
+            case Journal.REPLENISHMENT_ADD:
+                replenishmentRequestContainer.addReplenishmentRequest(recordId(fields, 2), fields[0], Integer.parseInt(fields[1]));
+                break;
+            case Journal.REPLENISHMENT_STATUS: {
+                ReplenishmentRequest request = replenishmentRequestContainer.findReplenishmentRequest(fields[0], Integer.parseInt(fields[1]), fields[2]);
+                if (request != null) {
+                    replenishmentRequestContainer.updateReplenishmentRequestStatus(request.getRecordId(), fields[3]);
+                }
+                break;
+            }
+            case Journal.REPLENISHMENT_REMOVE: {
+                ReplenishmentRequest request = replenishmentRequestContainer.findReplenishmentRequest(fields[0], Integer.parseInt(fields[1]), fields[2]);
+                if (request != null) {
+                    replenishmentRequestContainer.removeReplenishmentRequest(request.getRecordId());
+                }
+                break;
+            }
+            case Journal.USER_PASSWORD: {
+                UserContainer container = findUserContainer(fields[0]);
+                if (container != null) {
+                    container.restorePassword(container.getUserByHospitalId(fields[0]), fields[1]);
+                }
+                break;
+            }
+            case Journal.USER_NAME: {
+                UserContainer container = findUserContainer(fields[0]);
+                if (container != null) {
+                    container.updateName(container.getUserByHospitalId(fields[0]), fields[1]);
+                }
+                break;
+            }
+            case Journal.USER_GENDER: {
+                UserContainer container = findUserContainer(fields[0]);
+                if (container != null) {
+                    container.updateGender(container.getUserByHospitalId(fields[0]), fields[1]);
+                }
+                break;
+            }
+            case Journal.USER_REMOVE: {
+                UserContainer container = findUserContainer(fields[0]);
+                if (container != null) {
+                    container.removeUser(fields[0]);
+                }
+                break;
+            }
+            case Journal.PATIENT_EMAIL: {
+                Patient patient = patientContainer.getPatientByHospitalId(fields[0]);
+                if (patient != null) {
+                    patientContainer.updateEmail(patient, fields[1]);
+                }
+                break;
+            }
+            case Journal.DIAGNOSIS_ADD: {
+                Patient patient = patientContainer.getPatientByHospitalId(fields[0]);
+                if (patient != null) {
+                    patientContainer.addDiagnosis(patient, fields[1]);
+                }
+                break;
+            }
+            case Journal.TREATMENT_ADD: {
+                Patient patient = patientContainer.getPatientByHospitalId(fields[0]);
+                if (patient != null) {
+                    patientContainer.addTreatment(patient, fields[1]);
+                }
+                break;
+            }
+            case Journal.STAFF_ADD: {
+                String userType = fields[4];
+                StaffContainer container = userType.equalsIgnoreCase("Doctor") ? staffContainers[0]
+                    : userType.equalsIgnoreCase("Pharmacist") ? staffContainers[1] : staffContainers[2];
+                container.restoreStaff(fields[0], fields[1], fields[2], fields[3], userType, fields[5], Integer.parseInt(fields[6]));
+                break;
+            }
+            case Journal.STAFF_AGE: {
+                UserContainer container = findUserContainer(fields[0]);
+                if (container instanceof StaffContainer) {
+                    ((StaffContainer) container).updateAge((Staff) container.getUserByHospitalId(fields[0]), Integer.parseInt(fields[1]));
+                }
+                break;
+            }
+            case Journal.SLOT_ADD: {
+                Doctor doctor = doctorContainer.getDoctorByHospitalId(fields[0]);
+                if (doctor != null) {
+                    doctorContainer.addAvailableSlot(doctor, fields[1]);
+                }
+                break;
+            }
+            case Journal.SLOT_REMOVE: {
+                Doctor doctor = doctorContainer.getDoctorByHospitalId(fields[0]);
+                if (doctor != null) {
+                    doctorContainer.removeAvailableSlot(doctor, fields[1]);
+                }
+                break;
+            }
+            case Journal.PATIENT_UNDER_CARE_ADD: {
+                Doctor doctor = doctorContainer.getDoctorByHospitalId(fields[0]);
+                if (doctor != null) {
+                    doctorContainer.addPatientUnderCare(doctor, fields[1]);
+                }
+                break;
+            }
+            default:
+                System.out.println("Skipping unrecognized journal entry: " + operation);
+        }
+    }
+
+    /**
+     * Gets the record ID stored in an entry that creates a record, so the record is created again with the same ID.
+     *
+     * @param fields The fields of the entry.
+     * @param index The index of the record ID field.
+     * @return The record ID, or Record.NEW_ID if the entry was journaled before record IDs were stored.
+     */
+    private static int recordId(String[] fields, int index) {
+        return index < fields.length ? Integer.parseInt(fields[index]) : Record.NEW_ID;
+    }
+
+    /**
+     * Finds the container holding the user with the given hospital ID.
+     *
+     * @param hospitalId The hospital ID of the user.
+     * @return The container holding the user, or null if no container does.
+     */
+    private UserContainer findUserContainer(String hospitalId) {
+        if (patientContainer.containsUser(hospitalId)) {
+            return patientContainer;
+        }
+        for (StaffContainer container : staffContainers) {
+            if (container.containsUser(hospitalId)) {
+                return container;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,90 @@
+package App.container;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import App.record.Record;
+
+/**
+ * Reads the rows of a data file one at a time, whatever format the file is stored in.
+ * Loaders read their files through this interface, so they work the same on a CSV file and on its binary snapshot.
+ */
+public interface RowReader extends Closeable {
+
+    /**
+     * Opens a data file for reading. The binary snapshot of the file is used if it was written together with the
+     * CSV file as it is now and its checksum is valid; otherwise the CSV file is read.
+     *
+     * @param filePath Path to the CSV file.
+     * @return A reader for the snapshot or the CSV file.
+     * @throws IOException If the CSV file cannot be opened.
+     */
+    static RowReader open(String filePath) throws IOException {
+        RowReader snapshot = SnapshotReader.open(filePath);
+        return snapshot != null ? snapshot : new CsvReader(filePath);
+    }
+
+    /**
+     * Advances to the next row.
+     *
+     * @return true if a row was read, false at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    boolean nextRow() throws IOException;
+
+    /**
+     * Gets the number of fields in the current row.
+     *
+     * @return The number of fields.
+     */
+    int getFieldCount();
+
+    /**
+     * Gets a field of the current row as a string.
+     *
+     * @param index The index of the field.
+     * @return The field, or an empty string if the row has no such field.
+     */
+    String getString(int index);
+
+    /**
+     * Gets a field of the current row that holds a repeating identifier, such as a foreign-key hospital ID or a
+     * status. Equal identifiers are returned as the same String instance, as far as the reader has room to
+     * remember them. Columns whose values are unique, such as the primary key of a file, are read with getString.
+     *
+     * @param index The index of the field.
+     * @return The field, or an empty string if the row has no such field.
+     */
+    String getId(int index);
+
+    /**
+     * Gets a field of the current row as an int.
+     *
+     * @param index The index of the field.
+     * @return The value of the field.
+     * @throws NumberFormatException If the field is missing or is not a valid int.
+     */
+    int getInt(int index);
+
+    /**
+     * Gets a field of the current row that holds a list, such as "Diabetes;Hypertension".
+     *
+     * @param index The index of the field.
+     * @param separator The character separating the entries of the list in the CSV file.
+     * @return A modifiable list of the entries, empty if the field is missing or blank.
+     */
+    ArrayList<String> getList(int index, char separator);
+
+    /**
+     * Gets a field of the current row that holds the record ID of the row's record. Files written before record
+     * IDs were stored have no such field, and their records are handed new IDs.
+     *
+     * @param index The index of the field.
+     * @return The record ID, or Record.NEW_ID if the row has no such field.
+     * @throws NumberFormatException If the field is not a valid int.
+     */
+    default int getRecordId(int index) {
+        return index < getFieldCount() ? getInt(index) : Record.NEW_ID;
+    }
+}
@@ -0,0 +1,85 @@
+package App.container;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes the rows of a data file one field at a time, whatever format the file is stored in.
+ * Exporters write their files through this interface, so every export also produces the binary snapshot.
+ */
+public interface RowWriter extends Closeable {
+
+    /**
+     * Opens a data file for writing. Rows are written both to the CSV file and to its binary snapshot.
+     * Neither file replaces the existing one until commit() is called.
+     *
+     * @param filePath Path to the CSV file.
+     * @return A writer for the CSV file and its snapshot.
+     * @throws IOException If the files cannot be created.
+     */
+    static RowWriter create(String filePath) throws IOException {
+        return new CsvSnapshotWriter(new CsvWriter(filePath), new SnapshotWriter(SnapshotReader.snapshotPath(filePath), filePath));
+    }
+
+    /**
+     * Writes a complete line, such as a header.
+     *
+     * @param line The line to write, without the line break.
+     * @return This writer.
+     * @throws IOException If the file cannot be written.
+     */
+    RowWriter writeLine(String line) throws IOException;
+
+    /**
+     * Writes a text field of the current row.
+     *
+     * @param value The value of the field.
+     * @return This writer.
+     * @throws IOException If the file cannot be written.
+     */
+    RowWriter field(String value) throws IOException;
+
+    /**
+     * Writes a field of the current row that holds an identifier, such as a hospital ID or a status.
+     * Identifiers repeat across rows, so formats that can store them only once do so.
+     *
+     * @param value The value of the field.
+     * @return This writer.
+     * @throws IOException If the file cannot be written.
+     */
+    RowWriter id(String value) throws IOException;
+
+    /**
+     * Writes a number field of the current row.
+     *
+     * @param value The value of the field.
+     * @return This writer.
+     * @throws IOException If the file cannot be written.
+     */
+    RowWriter field(int value) throws IOException;
+
+    /**
+     * Writes a list field of the current row, such as "Diabetes;Hypertension".
+     *
+     * @param values The entries of the list.
+     * @param separator The character placed between entries in the CSV file.
+     * @return This writer.
+     * @throws IOException If the file cannot be written.
+     */
+    RowWriter field(List<String> values, char separator) throws IOException;
+
+    /**
+     * Ends the current row.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    void endRow() throws IOException;
+
+    /**
+     * Writes everything still buffered and makes the written file replace the existing one.
+     *
+     * @throws IOException If the file cannot be written or moved into place.
+     */
+    void commit() throws IOException;
+}
@@ -0,0 +1,378 @@
+package App.container;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the binary snapshot of a data file, as written by SnapshotWriter.
+ *
+ * The whole snapshot is checked against its checksum before the first row is returned, so a damaged snapshot is
+ * never half-loaded. Rows are then read straight from the bytes: numbers need no parsing and every identifier is
+ * decoded only once, the first time it appears in the file.
+ */
+public class SnapshotReader implements RowReader {
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final long MAP_THRESHOLD = 1L << 20;    // Snapshots up to 1 MB are read, not mapped
+
+    private final ByteBuffer buffer;
+    private final ArrayList<String> dictionary = new ArrayList<>();
+    private int position;
+    private int fieldCount;
+    private int[] fieldTypes = new int[16];
+    private int[] fieldStarts = new int[16];
+    private int[] fieldInts = new int[16];
+    private String[] fieldIds = new String[16];
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Gets the path of the snapshot belonging to a CSV file. The snapshot of a compacted file written by the
+     * journal keeps the compaction suffix last, so the journal moves both into place the same way.
+     *
+     * @param csvPath Path to the CSV file.
+     * @return Path to its snapshot.
+     */
+    public static String snapshotPath(String csvPath) {
+        if (csvPath.endsWith(Journal.COMPACT_SUFFIX)) {
+            String base = csvPath.substring(0, csvPath.length() - Journal.COMPACT_SUFFIX.length());
+            return base + SNAPSHOT_SUFFIX + Journal.COMPACT_SUFFIX;
+        }
+        return csvPath + SNAPSHOT_SUFFIX;
+    }
+
+    /**
+     * Checks whether a CSV file has a snapshot that was written together with the file as it is now. The size and
+     * modification time of the CSV file must both equal the ones recorded in the header of the snapshot, so a CSV
+     * file that was edited, or replaced by a copy with other timestamps, is read instead of its snapshot.
+     *
+     * @param csvPath Path to the CSV file.
+     * @return True if the snapshot exists and is up to date, otherwise false.
+     */
+    public static boolean isFresh(String csvPath) {
+        Path csv = Paths.get(csvPath);
+        Path snapshot = Paths.get(snapshotPath(csvPath));
+        if (!Files.exists(csv) || !Files.exists(snapshot)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SnapshotWriter.HEADER_LENGTH);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // Keep reading until the whole header is in memory
+            }
+            if (header.hasRemaining()) {
+                return false;
+            }
+            header.flip();
+            for (byte b : SnapshotWriter.MAGIC) {
+                if (header.get() != b) {
+                    return false;
+                }
+            }
+            return header.getLong() == Files.size(csv)
+                && header.getLong() == Files.getLastModifiedTime(csv).to(TimeUnit.NANOSECONDS);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens the snapshot of a CSV file, if it can be used. A snapshot that fails its checks is deleted,
+     * so the next export writes a new one.
+     *
+     * @param csvPath Path to the CSV file.
+     * @return A reader for the snapshot, or null if there is no up-to-date, valid snapshot.
+     */
+    public static SnapshotReader open(String csvPath) {
+        if (!isFresh(csvPath)) {
+            return null;
+        }
+        Path snapshot = Paths.get(snapshotPath(csvPath));
+        try {
+            return new SnapshotReader(snapshot);
+        } catch (IOException e) {
+            System.out.println("Ignoring damaged snapshot " + snapshot + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(snapshot);
+            } catch (IOException deleteFailed) {
+                deleteFailed.printStackTrace();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Opens a snapshot file and verifies its header and checksum.
+     *
+     * @param snapshot Path to the snapshot file.
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    private SnapshotReader(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is too large");
+            }
+            if (size < SnapshotWriter.HEADER_LENGTH + 5) {
+                throw new IOException("Snapshot is truncated");
+            }
+            if (size <= MAP_THRESHOLD) {
+                ByteBuffer heap = ByteBuffer.allocate((int) size);
+                while (heap.hasRemaining() && channel.read(heap, heap.position()) >= 0) {
+                    // Keep reading until the whole file is in memory
+                }
+                heap.flip();
+                buffer = heap;
+            } else {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+        int checksumOffset = buffer.limit() - 4;
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.duplicate().limit(checksumOffset).position(SnapshotWriter.HEADER_LENGTH));
+        checksum.update(buffer.duplicate().limit(SnapshotWriter.HEADER_LENGTH)); // The header is checksummed last
+        if ((int) checksum.getValue() != buffer.getInt(checksumOffset)) {
+            throw new IOException("Checksum mismatch");
+        }
+        for (int i = 0; i < SnapshotWriter.MAGIC.length; i++) {
+            if (buffer.get(i) != SnapshotWriter.MAGIC[i]) {
+                throw new IOException("Unknown snapshot format");
+            }
+        }
+        buffer.limit(checksumOffset);
+        position = SnapshotWriter.HEADER_LENGTH;
+    }
+
+    /**
+     * Advances to the next row of the snapshot.
+     *
+     * @return true if a row was read, false at the end of the snapshot.
+     * @throws IOException If the snapshot contains an unknown field type.
+     */
+    public boolean nextRow() throws IOException {
+        if (position >= buffer.limit()) {
+            return false;
+        }
+        int length = readVarint();
+        if (length == 0) {
+            position = buffer.limit(); // End of rows
+            return false;
+        }
+        int rowEnd = position + length;
+        fieldCount = readVarint();
+        if (fieldCount > fieldTypes.length) {
+            int capacity = Math.max(fieldCount, fieldTypes.length * 2);
+            fieldTypes = Arrays.copyOf(fieldTypes, capacity);
+            fieldStarts = Arrays.copyOf(fieldStarts, capacity);
+            fieldInts = Arrays.copyOf(fieldInts, capacity);
+            fieldIds = Arrays.copyOf(fieldIds, capacity);
+        }
+        for (int i = 0; i < fieldCount; i++) {
+            int type = readVarint();
+            fieldTypes[i] = type;
+            switch (type) {
+                case SnapshotWriter.STRING:
+                    fieldStarts[i] = position;
+                    skipText();
+                    break;
+                case SnapshotWriter.INT: {
+                    int value = readVarint();
+                    fieldInts[i] = (value >>> 1) ^ -(value & 1);
+                    break;
+                }
+                case SnapshotWriter.ID_DEFINITION: {
+                    int idLength = readVarint();
+                    String id = decode(position, idLength);
+                    position += idLength;
+                    dictionary.add(id);
+                    fieldIds[i] = id;
+                    break;
+                }
+                case SnapshotWriter.ID_REFERENCE:
+                    fieldIds[i] = dictionary.get(readVarint());
+                    break;
+                case SnapshotWriter.LIST: {
+                    fieldStarts[i] = position;
+                    int entries = readVarint();
+                    for (int entry = 0; entry < entries; entry++) {
+                        skipText();
+                    }
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown field type " + type);
+            }
+        }
+        position = rowEnd;
+        return true;
+    }
+
+    /**
+     * Gets the number of fields in the current row.
+     *
+     * @return The number of fields.
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Gets a field of the current row as a string.
+     *
+     * @param index The index of the field.
+     * @return The field, or an empty string if the row has no such field. List entries are joined with ';'.
+     */
+    public String getString(int index) {
+        if (index >= fieldCount) {
+            return "";
+        }
+        switch (fieldTypes[index]) {
+            case SnapshotWriter.INT:
+                return Integer.toString(fieldInts[index]);
+            case SnapshotWriter.ID_DEFINITION:
+            case SnapshotWriter.ID_REFERENCE:
+                return fieldIds[index];
+            case SnapshotWriter.LIST:
+                return String.join(";", getList(index, ';'));
+            default: {
+                int saved = position;
+                position = fieldStarts[index];
+                int length = readVarint();
+                String value = decode(position, length);
+                position = saved;
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Gets a field of the current row that holds a repeating identifier, such as a foreign-key hospital ID or a
+     * status. Identifiers stored through the dictionary are returned as the same String instance.
+     *
+     * @param index The index of the field.
+     * @return The field, or an empty string if the row has no such field.
+     */
+    public String getId(int index) {
+        if (index >= fieldCount) {
+            return "";
+        }
+        int type = fieldTypes[index];
+        if (type == SnapshotWriter.ID_DEFINITION || type == SnapshotWriter.ID_REFERENCE) {
+            return fieldIds[index];
+        }
+        return getString(index);
+    }
+
+    /**
+     * Gets a field of the current row as an int.
+     *
+     * @param index The index of the field.
+     * @return The value of the field.
+     * @throws NumberFormatException If the field is missing or is not a valid int.
+     */
+    public int getInt(int index) {
+        if (index >= fieldCount) {
+            throw new NumberFormatException("Missing number in field " + index);
+        }
+        if (fieldTypes[index] == SnapshotWriter.INT) {
+            return fieldInts[index];
+        }
+        return Integer.parseInt(getString(index));
+    }
+
+    /**
+     * Gets a field of the current row that holds a list, such as "Diabetes;Hypertension".
+     * Empty entries at the end of the list are dropped, like CsvReader does.
+     *
+     * @param index The index of the field.
+     * @param separator The character separating the entries, used if the field was not stored as a list.
+     * @return A modifiable list of the entries, empty if the field is missing or blank.
+     */
+    public ArrayList<String> getList(int index, char separator) {
+        ArrayList<String> entries = new ArrayList<>();
+        if (index >= fieldCount) {
+            return entries;
+        }
+        if (fieldTypes[index] == SnapshotWriter.LIST) {
+            int saved = position;
+            position = fieldStarts[index];
+            int count = readVarint();
+            for (int entry = 0; entry < count; entry++) {
+                int length = readVarint();
+                entries.add(decode(position, length));
+                position += length;
+            }
+            position = saved;
+        } else {
+            String value = getString(index);
+            int entryStart = 0;
+            for (int i = 0; i <= value.length(); i++) {
+                if (i == value.length() || value.charAt(i) == separator) {
+                    entries.add(value.substring(entryStart, i));
+                    entryStart = i + 1;
+                }
+            }
+        }
+        while (!entries.isEmpty() && entries.get(entries.size() - 1).isEmpty()) {
+            entries.remove(entries.size() - 1);
+        }
+        return entries;
+    }
+
+    /**
+     * Reads an unsigned variable-length integer at the current position.
+     */
+    private int readVarint() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Moves the current position past a length-prefixed text.
+     */
+    private void skipText() {
+        int length = readVarint();
+        position += length;
+    }
+
+    /**
+     * Decodes length bytes starting at start into a string.
+     */
+    private String decode(int start, int length) {
+        if (length == 0) {
+            return "";
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(start, scratch, 0, length);
+        for (int i = 0; i < length; i++) {
+            if (scratch[i] < 0) {
+                return new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+        }
+        return new String(scratch, 0, length, StandardCharsets.ISO_8859_1); // Plain ASCII
+    }
+
+    /**
+     * Closes the snapshot. The snapshot is fully in memory or mapped, so there is nothing left to release.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,247 @@
+package App.container;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the binary snapshot of a data file.
+ *
+ * A snapshot starts with the magic bytes "HMS" and a version byte, and with the size and modification time of the
+ * CSV file it was written with, so a reader can tell whether the CSV file was changed or replaced since. It is
+ * followed by one length-prefixed record per row and a zero length that marks the end. Each record holds the number
+ * of fields and then every field with a type tag: text and list fields are stored as UTF-8 bytes, numbers as
+ * variable-length integers, and identifiers through a dictionary - the first occurrence of an identifier defines the
+ * next dictionary entry and every later occurrence only stores its index. The file ends with a CRC32 checksum of the rows followed by the header; the header is only
+ * known once the CSV file is committed, so it is written last and checksummed last.
+ *
+ * Like CsvWriter, the snapshot is written next to its destination and only replaces it on commit().
+ */
+public class SnapshotWriter implements RowWriter {
+    static final byte[] MAGIC = { 'H', 'M', 'S', 2 };
+    static final int HEADER_LENGTH = MAGIC.length + 16;   // Magic, CSV file size and CSV modification time
+    static final int STRING = 0;
+    static final int INT = 1;
+    static final int ID_DEFINITION = 2;
+    static final int ID_REFERENCE = 3;
+    static final int LIST = 4;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path target;
+    private final Path temp;
+    private final Path source;
+    private final FileChannel channel;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+    private final CRC32 checksum = new CRC32();
+    private final HashMap<String, Integer> dictionary = new HashMap<>();
+    private int count;
+    private byte[] row = new byte[256];
+    private int rowLength;
+    private int rowFieldCount;
+    private int checksumStart = HEADER_LENGTH; // The header is checksummed on commit()
+    private boolean committed;
+
+    /**
+     * Opens a snapshot for writing. The existing snapshot is replaced when the writer is committed.
+     *
+     * @param filePath Path to the snapshot file.
+     * @param sourcePath Path to the CSV file holding the same rows, which must be committed before this writer.
+     * @throws IOException If the file cannot be created.
+     */
+    public SnapshotWriter(String filePath, String sourcePath) throws IOException {
+        target = Paths.get(filePath);
+        temp = Paths.get(filePath + ".tmp");
+        source = Paths.get(sourcePath);
+        channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        for (int i = 0; i < HEADER_LENGTH; i++) {
+            writeByte(0); // Filled in by commit()
+        }
+    }
+
+    /**
+     * Writes a complete line, such as a header, as a row with a single text field.
+     */
+    public SnapshotWriter writeLine(String line) throws IOException {
+        field(line);
+        endRow();
+        return this;
+    }
+
+    /**
+     * Writes a text field of the current row.
+     */
+    public SnapshotWriter field(String value) throws IOException {
+        rowFieldCount++;
+        rowVarint(STRING);
+        rowText(value == null ? "null" : value);
+        return this;
+    }
+
+    /**
+     * Writes an identifier field of the current row through the dictionary.
+     */
+    public SnapshotWriter id(String value) throws IOException {
+        if (value == null) {
+            return field(value);
+        }
+        rowFieldCount++;
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            rowVarint(ID_REFERENCE);
+            rowVarint(index);
+        } else {
+            dictionary.put(value, dictionary.size());
+            rowVarint(ID_DEFINITION);
+            rowText(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a number field of the current row.
+     */
+    public SnapshotWriter field(int value) throws IOException {
+        rowFieldCount++;
+        rowVarint(INT);
+        rowVarint((value << 1) ^ (value >> 31)); // Zigzag, so small negative numbers stay short
+        return this;
+    }
+
+    /**
+     * Writes a list field of the current row, storing every entry separately.
+     */
+    public SnapshotWriter field(List<String> values, char separator) throws IOException {
+        rowFieldCount++;
+        rowVarint(LIST);
+        rowVarint(values.size());
+        for (String value : values) {
+            rowText(value);
+        }
+        return this;
+    }
+
+    /**
+     * Ends the current row and writes it with its length in front.
+     */
+    public void endRow() throws IOException {
+        byte[] fieldCount = new byte[5];
+        int fieldCountLength = varint(fieldCount, 0, rowFieldCount);
+        writeVarint(fieldCountLength + rowLength);
+        for (int i = 0; i < fieldCountLength; i++) {
+            writeByte(fieldCount[i]);
+        }
+        for (int i = 0; i < rowLength; i++) {
+            writeByte(row[i]);
+        }
+        rowLength = 0;
+        rowFieldCount = 0;
+    }
+
+    private void rowText(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        rowVarint(bytes.length);
+        ensureRowCapacity(bytes.length);
+        System.arraycopy(bytes, 0, row, rowLength, bytes.length);
+        rowLength += bytes.length;
+    }
+
+    private void rowVarint(int value) {
+        ensureRowCapacity(5);
+        rowLength = varint(row, rowLength, value);
+    }
+
+    private void ensureRowCapacity(int extra) {
+        if (rowLength + extra > row.length) {
+            row = Arrays.copyOf(row, Math.max(rowLength + extra, row.length * 2));
+        }
+    }
+
+    /**
+     * Stores an unsigned variable-length integer, seven bits per byte.
+     *
+     * @return The position just after the stored integer.
+     */
+    private static int varint(byte[] target, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        checksum.update(buffer, checksumStart, count - checksumStart);
+        checksumStart = 0;
+        wrapped.clear().limit(count);
+        while (wrapped.hasRemaining()) {
+            channel.write(wrapped);
+        }
+        count = 0;
+    }
+
+    /**
+     * Writes the end marker, the header with the size and modification time of the committed CSV file and the
+     * checksum, and makes the written file the new snapshot.
+     */
+    public void commit() throws IOException {
+        writeVarint(0); // End of rows
+        flushBuffer();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH)
+            .put(MAGIC)
+            .putLong(Files.size(source))
+            .putLong(Files.getLastModifiedTime(source).to(TimeUnit.NANOSECONDS));
+        checksum.update(header.array());
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        ByteBuffer crc = ByteBuffer.allocate(4).putInt((int) checksum.getValue());
+        crc.flip();
+        while (crc.hasRemaining()) {
+            channel.write(crc);
+        }
+        channel.force(false);
+        channel.close();
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+    }
+
+    /**
+     * Closes the file. If the writer was not committed, the new snapshot is discarded.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            channel.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+}
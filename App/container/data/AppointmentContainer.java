@@ -1,23 +1,57 @@
 package App.container.data;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 
+import App.container.RowReader;
+import App.container.RowWriter;
+import App.container.Journal;
 import App.record.Appointment;
+import App.record.AppointmentKey;
+import App.record.HospitalIdDictionary;
+import App.record.EpochMinutes;
 import App.record.Record;
 
 
 /**
  * Container class for managing appointment records.
  * Provides functionalities for loading, adding, removing, and exporting appointments.
+ * 
+ * Appointments are also indexed by their unique identifier, as an AppointmentKey, and by (doctor, status), (patient, status) and
+ * (patient, doctor, status), so the queries the menus make on every screen cost time proportional to the number
+ * of appointments they return. These indexes are keyed by the HospitalIdDictionary codes of the hospital IDs and a
+ * small code for the status, packed into a long, so a lookup builds no string. A time index, overall and per doctor
+ * and patient, keeps appointments sorted by their time in epoch minutes for range and "next N" queries. The indexes
+ * are kept up to date by putRecord, removeRecord, updateAppointmentStatus and rescheduleAppointment.
+ *
+ * The indexes are concurrent maps of copy-on-write sets, so queries read them without a lock while another session
+ * changes an appointment. An index set keeps appointments in the order they were added; adding to it copies the
+ * set, which is cheap for the number of appointments per key.
+ *
+ * A change to an appointment that is already in the container also locks the appointment, before the container, so
+ * the changes to one appointment are journaled in the order they are made even when DoctorContainer makes them
+ * together with a change to the slots of a Doctor, under the locks of the Doctor and of the appointment. The
+ * container itself is then only locked while its maps and indexes are updated.
  */
 public class AppointmentContainer extends RecordContainer {
+    private final ConcurrentHashMap<Long, Appointment> byAppointmentKey = new ConcurrentHashMap<>();
+    private final HashMap<Long, ArrayList<Appointment>> sharedAppointmentKeys = new HashMap<>(); // Later appointments with a key already in use; only used by writers
+    private final ConcurrentHashMap<Long, Set<Appointment>> byDoctorAndStatus = new ConcurrentHashMap<>(); // By key(doctor code, status code)
+    private final ConcurrentHashMap<Long, Set<Appointment>> byPatientAndStatus = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<Integer, Set<Appointment>>> byPatientDoctorAndStatus = new ConcurrentHashMap<>(); // By key(patient code, doctor code), then status code
+    private final ConcurrentSkipListMap<Long, Set<Appointment>> byTime = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Integer, ConcurrentSkipListMap<Long, Set<Appointment>>> byDoctorAndTime = new ConcurrentHashMap<>(); // By HospitalIdDictionary.DOCTORS code
+    private final ConcurrentHashMap<Integer, ConcurrentSkipListMap<Long, Set<Appointment>>> byPatientAndTime = new ConcurrentHashMap<>(); // By HospitalIdDictionary.PATIENTS code
+
+    private static final ConcurrentHashMap<String, Integer> statusCodes = new ConcurrentHashMap<>(); // Shared, like HospitalIdDictionary
 
     /**
      * Constructs an AppointmentContainer and loads appointments from the given CSV file.
@@ -38,23 +72,17 @@ public class AppointmentContainer extends RecordContainer {
      */
 
     private void loadAppointmentsFromCSV(String filePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            boolean isHeader = true;
+        try (RowReader reader = RowReader.open(filePath)) {
+            reader.nextRow(); // Skip header line
             
-            while ((line = br.readLine()) != null) {
-                if (isHeader) {
-                    isHeader = false; // Skip header line
-                    continue;
-                }
+            while (reader.nextRow()) {
+                String time = reader.getString(0);
+                String patientHospitalId = reader.getId(1);
+                String doctorHospitalId = reader.getId(2);
+                String status = reader.getId(3);
+                int recordId = reader.getRecordId(4);
                 
-                String[] fields = line.split(",");
-                String time = fields[0].trim();
-                String patientHospitalId = fields[1].trim();
-                String doctorHospitalId = fields[2].trim();
-                String status = fields[3].trim();
-                
-                Appointment appointment = new Appointment(time, patientHospitalId, doctorHospitalId, status);
+                Appointment appointment = new Appointment(recordId, time, patientHospitalId, doctorHospitalId, status);
                 putRecord(appointment);
             }
         } catch (IOException e) {
@@ -70,15 +98,18 @@ public class AppointmentContainer extends RecordContainer {
      */
 
     public Appointment getAppointmentByAppointmentIdentifyId(String appointmentIdentifyId) {
-        for (Record record : getRecords().values()) {
-            if (record instanceof Appointment) {
-                Appointment appointment = (Appointment) record;
-                if (appointment.getAppointmentIdentifyId().equals(appointmentIdentifyId)) {
-                    return appointment;
-                }
-            }
-        }
-        return null;
+        long appointmentKey = AppointmentKey.find(appointmentIdentifyId);
+        return appointmentKey != AppointmentKey.NONE ? byAppointmentKey.get(appointmentKey) : null;
+    }
+
+    /**
+     * Retrieves an appointment by its key.
+     * 
+     * @param appointmentKey The key of the appointment, see Appointment.getAppointmentKey.
+     * @return The Appointment object if found, otherwise null.
+     */
+    public Appointment getAppointmentByKey(long appointmentKey) {
+        return byAppointmentKey.get(appointmentKey);
     }
 
     /**
@@ -90,8 +121,130 @@ public class AppointmentContainer extends RecordContainer {
      */
 
     public void addAppointment(String time, String patientHospitalId,String doctorHospitalId) {
-        Appointment appointment = new Appointment(time,patientHospitalId, doctorHospitalId, "pending");
-        super.putRecord(appointment);
+        addAppointment(Record.NEW_ID, time, patientHospitalId, doctorHospitalId);
+    }
+
+    /**
+     * Adds a new appointment with the given record ID, such as one read back from the journal.
+     * 
+     * @param recordId The record ID, or Record.NEW_ID to have a new one handed out.
+     * @param time The time of the appointment.
+     * @param patientHospitalId The hospital ID of the patient.
+     * @param doctorHospitalId The hospital ID of the doctor.
+     */
+    public void addAppointment(int recordId, String time, String patientHospitalId, String doctorHospitalId) {
+        long lsn;
+        synchronized (this) {
+            Appointment appointment = new Appointment(recordId, time, patientHospitalId, doctorHospitalId, "pending");
+            insertAppointment(appointment);
+            lsn = journal(Journal.APPOINTMENT_ADD, time, patientHospitalId, doctorHospitalId, appointment.getRecordId());
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Adds a new appointment without journaling it, for a change that also changes another container and is
+     * journaled as one entry by the caller. The caller journals it before calling this, so any change made to the
+     * appointment once it can be found is journaled after it.
+     * 
+     * @param appointment The new appointment.
+     */
+    public synchronized void insertAppointment(Appointment appointment) {
+        putRecord(appointment);
+        markChanged(appointment.getAppointmentKey());
+    }
+
+    /**
+     * Moves an appointment to a new time and sets it back to pending without journaling it, for a change that
+     * also changes another container and is journaled as one entry by the caller. The caller must hold the lock
+     * of the appointment.
+     * 
+     * @param appointment The appointment to move.
+     * @param time The new time of the appointment.
+     */
+    public synchronized void moveAppointment(Appointment appointment, String time) {
+        long previousKey = appointment.getAppointmentKey();
+        if (getRecord(appointment.getRecordId()) == appointment) {
+            unindex(appointment);
+            appointment.setTime(time);
+            appointment.setStatus("pending");
+            index(appointment);
+        } else {
+            appointment.setTime(time);
+            appointment.setStatus("pending");
+        }
+        markChanged(previousKey);
+        markChanged(appointment.getAppointmentKey());
+    }
+
+    /**
+     * Removes an appointment without journaling it, for a change that also changes another container and is
+     * journaled as one entry by the caller. The caller must hold the lock of the appointment.
+     * 
+     * @param appointment The appointment to remove.
+     * @return True if the appointment was removed, false if it had already been removed.
+     */
+    public synchronized boolean deleteAppointment(Appointment appointment) {
+        if (getRecord(appointment.getRecordId()) != appointment) {
+            return false;
+        }
+        removeRecord(appointment.getRecordId());
+        markChanged(appointment.getAppointmentKey());
+        return true;
+    }
+
+    /**
+     * Changes the status of an appointment.
+     * 
+     * @param appointment The appointment to update.
+     * @param status The new status (e.g., "confirmed", "completed").
+     */
+    public void updateAppointmentStatus(Appointment appointment, String status) {
+        long lsn;
+        synchronized (appointment) {
+            synchronized (this) {
+                boolean indexed = getRecord(appointment.getRecordId()) == appointment;
+                if (indexed) {
+                    unindex(appointment);
+                }
+                appointment.setStatus(status);
+                if (indexed) {
+                    index(appointment);
+                }
+                markChanged(appointment.getAppointmentKey());
+                lsn = journal(Journal.APPOINTMENT_STATUS, appointment.getAppointmentIdentifyId(), status);
+            }
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Moves an appointment to a new time.
+     * 
+     * @param appointment The appointment to reschedule.
+     * @param time The new time of the appointment.
+     */
+    public void rescheduleAppointment(Appointment appointment, String time) {
+        long lsn;
+        synchronized (appointment) {
+            synchronized (this) {
+                long previousKey = appointment.getAppointmentKey();
+                boolean indexed = getRecord(appointment.getRecordId()) == appointment;
+                if (indexed) {
+                    unindexIdentifyId(appointment);
+                    unindexTime(appointment);
+                }
+                appointment.setTime(time);
+                if (indexed) {
+                    indexIdentifyId(appointment);
+                    indexTime(appointment);
+                }
+                markChanged(previousKey);
+                markChanged(appointment.getAppointmentKey());
+                lsn = journal(Journal.APPOINTMENT_TIME, AppointmentKey.toString(previousKey), time);
+            }
+        }
+        awaitDurable(lsn);
     }
     
 
@@ -105,18 +258,7 @@ public class AppointmentContainer extends RecordContainer {
      */
 
     public List<Appointment> getAllAppointmentsByPatientIdAndStatus(String patientHospitalId, String status) {
-        List<Appointment> patientAppointments = new ArrayList<>();
-        
-        // Iterate through all records and filter by patient ID and status
-        for (Record record : getRecords().values()) {
-            if (record instanceof Appointment) { // Check if it's an Appointment
-                Appointment appointment = (Appointment) record;
-                if (appointment.getpatientHospitalId().equals(patientHospitalId) && appointment.getStatus().equals(status)) {
-                    patientAppointments.add(appointment); // Add matching appointment
-                }
-            }
-        }
-        return patientAppointments;
+        return lookup(byPatientAndStatus.get(key(HospitalIdDictionary.PATIENTS.find(patientHospitalId), findStatus(status))));
     }
 
 
@@ -128,18 +270,7 @@ public class AppointmentContainer extends RecordContainer {
      * @return A list of Appointment objects.
      */
     public List<Appointment> getAllAppointmentsByDoctorIdAndStatus(String doctorHospitalId, String status) {
-        List<Appointment> doctorAppointments = new ArrayList<>();
-        
-        // Iterate through all records and filter by doctor ID and status
-        for (Record record : getRecords().values()) {
-            if (record instanceof Appointment) { // Check if it's an Appointment
-                Appointment appointment = (Appointment) record;
-                if (appointment.getdoctorHospitalId().equals(doctorHospitalId) && appointment.getStatus().equals(status)) {
-                    doctorAppointments.add(appointment); // Add matching appointment
-                }
-            }
-        }
-        return doctorAppointments;
+        return lookup(byDoctorAndStatus.get(key(HospitalIdDictionary.DOCTORS.find(doctorHospitalId), findStatus(status))));
     }
 
     /**
@@ -148,7 +279,22 @@ public class AppointmentContainer extends RecordContainer {
      * @param appointmentRecordId The unique record ID of the appointment to be removed.
      */
     public void removeAppointment(int appointmentRecordId) {
-        super.removeRecord(appointmentRecordId);
+        Appointment appointment = getAppointment(appointmentRecordId);
+        if (appointment == null) {
+            return;
+        }
+        long lsn;
+        synchronized (appointment) {
+            synchronized (this) {
+                if (getRecord(appointmentRecordId) != appointment) { // Removed meanwhile
+                    return;
+                }
+                removeRecord(appointmentRecordId);
+                markChanged(appointment.getAppointmentKey());
+                lsn = journal(Journal.APPOINTMENT_REMOVE, appointment.getAppointmentIdentifyId());
+            }
+        }
+        awaitDurable(lsn);
     }// the appointment record id is the key of the appointment record in the hashmap, found relevant func in Record.java
 
 
@@ -188,32 +334,352 @@ public class AppointmentContainer extends RecordContainer {
      * @return true if the date and time are valid, otherwise false.
      */
     public static boolean isValidDateTime(String dateTime) {
-        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-        format.setLenient(false); // Set to false to ensure strict matching
-        try {
-            format.parse(dateTime);
-            return true;
-        } catch (ParseException e) {
-            return false;
-        }
+        return EpochMinutes.isValid(dateTime);
     }
 
-    // new functions
+    /**
+     * Retrieves all appointments between a specific patient and doctor with a given status.
+     * 
+     * @param patientHospitalId The hospital ID of the patient.
+     * @param doctorHospitalId The hospital ID of the doctor.
+     * @param status The status of the appointment.
+     * @return A list of Appointment objects.
+     */
     public List<Appointment> getAllAppointmentsByPatientIdDoctorIdAndStatus(String patientHospitalId, String doctorHospitalId, String status) {
-        List<Appointment> filteredAppointments = new ArrayList<>();
+        Map<Integer, Set<Appointment>> byStatus = byPatientDoctorAndStatus.get(
+            key(HospitalIdDictionary.PATIENTS.find(patientHospitalId), HospitalIdDictionary.DOCTORS.find(doctorHospitalId)));
+        return lookup(byStatus == null ? null : byStatus.get(findStatus(status)));
+    }
 
-        // Iterate through all records and filter by patient ID, doctor ID, and status
-        for (Record record : getRecords().values()) {
-            if (record instanceof Appointment) { // Check if it's an Appointment
-                Appointment appointment = (Appointment) record;
-                if (appointment.getpatientHospitalId().equals(patientHospitalId) &&
-                    appointment.getdoctorHospitalId().equals(doctorHospitalId) &&
-                    appointment.getStatus().equals(status)) {
-                    filteredAppointments.add(appointment); // Add matching appointment
-                }
+    /**
+     * Retrieves all appointments sorted by time. Appointments whose time cannot be parsed come last.
+     * 
+     * @return A list of all Appointment objects, earliest first.
+     */
+    public List<Appointment> getAllAppointmentsSortedByTime() {
+        return collect(byTime, Long.MIN_VALUE, EpochMinutes.UNKNOWN, true, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves all appointments of a specific patient sorted by time. Appointments whose time cannot be parsed come last.
+     * 
+     * @param patientHospitalId The hospital ID of the patient.
+     * @return A list of Appointment objects, earliest first.
+     */
+    public List<Appointment> getAllAppointmentsByPatientIdSortedByTime(String patientHospitalId) {
+        return collect(byPatientAndTime.get(HospitalIdDictionary.PATIENTS.find(patientHospitalId)), Long.MIN_VALUE, EpochMinutes.UNKNOWN, true, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves all appointments of a specific doctor sorted by time. Appointments whose time cannot be parsed come last.
+     * 
+     * @param doctorHospitalId The hospital ID of the doctor.
+     * @return A list of Appointment objects, earliest first.
+     */
+    public List<Appointment> getAllAppointmentsByDoctorIdSortedByTime(String doctorHospitalId) {
+        return collect(byDoctorAndTime.get(HospitalIdDictionary.DOCTORS.find(doctorHospitalId)), Long.MIN_VALUE, EpochMinutes.UNKNOWN, true, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves the appointments in a time range, such as a day or a week, sorted by time.
+     * 
+     * @param fromMinute The start of the range in epoch minutes, included.
+     * @param toMinute The end of the range in epoch minutes, excluded.
+     * @return A list of Appointment objects, earliest first.
+     */
+    public List<Appointment> getAppointmentsBetween(long fromMinute, long toMinute) {
+        return collect(byTime, fromMinute, toMinute, false, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves the appointments of a specific doctor in a time range, sorted by time.
+     * 
+     * @param doctorHospitalId The hospital ID of the doctor.
+     * @param fromMinute The start of the range in epoch minutes, included.
+     * @param toMinute The end of the range in epoch minutes, excluded.
+     * @return A list of Appointment objects, earliest first.
+     */
+    public List<Appointment> getAppointmentsByDoctorIdBetween(String doctorHospitalId, long fromMinute, long toMinute) {
+        return collect(byDoctorAndTime.get(HospitalIdDictionary.DOCTORS.find(doctorHospitalId)), fromMinute, toMinute, false, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves the appointments of a specific patient in a time range, sorted by time.
+     * 
+     * @param patientHospitalId The hospital ID of the patient.
+     * @param fromMinute The start of the range in epoch minutes, included.
+     * @param toMinute The end of the range in epoch minutes, excluded.
+     * @return A list of Appointment objects, earliest first.
+     */
+    public List<Appointment> getAppointmentsByPatientIdBetween(String patientHospitalId, long fromMinute, long toMinute) {
+        return collect(byPatientAndTime.get(HospitalIdDictionary.PATIENTS.find(patientHospitalId)), fromMinute, toMinute, false, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves the next appointments from a given time on, sorted by time.
+     * All appointments at the time of the last one returned are included, so a following page can start one
+     * minute later without skipping any. Appointments whose time cannot be parsed come last.
+     * 
+     * @param fromMinute The earliest time in epoch minutes.
+     * @param count The number of appointments wanted.
+     * @return A list of at least count Appointment objects if there are that many, earliest first.
+     */
+    public List<Appointment> getNextAppointments(long fromMinute, int count) {
+        return collect(byTime, fromMinute, EpochMinutes.UNKNOWN, true, count);
+    }
+
+    /**
+     * Retrieves the next appointments of a specific doctor from a given time on, sorted by time.
+     * All appointments at the time of the last one returned are included.
+     * 
+     * @param doctorHospitalId The hospital ID of the doctor.
+     * @param fromMinute The earliest time in epoch minutes.
+     * @param count The number of appointments wanted.
+     * @return A list of at least count Appointment objects if there are that many, earliest first.
+     */
+    public List<Appointment> getNextAppointmentsByDoctorId(String doctorHospitalId, long fromMinute, int count) {
+        return collect(byDoctorAndTime.get(HospitalIdDictionary.DOCTORS.find(doctorHospitalId)), fromMinute, EpochMinutes.UNKNOWN, true, count);
+    }
+
+    /**
+     * Retrieves the next appointments of a specific patient from a given time on, sorted by time.
+     * All appointments at the time of the last one returned are included.
+     * 
+     * @param patientHospitalId The hospital ID of the patient.
+     * @param fromMinute The earliest time in epoch minutes.
+     * @param count The number of appointments wanted.
+     * @return A list of at least count Appointment objects if there are that many, earliest first.
+     */
+    public List<Appointment> getNextAppointmentsByPatientId(String patientHospitalId, long fromMinute, int count) {
+        return collect(byPatientAndTime.get(HospitalIdDictionary.PATIENTS.find(patientHospitalId)), fromMinute, EpochMinutes.UNKNOWN, true, count);
+    }
+
+    /**
+     * Collects the appointments of a time index in [fromMinute, toMinute), or up to and including toMinute,
+     * stopping after the minute at which count appointments have been collected.
+     */
+    private static List<Appointment> collect(NavigableMap<Long, Set<Appointment>> index, long fromMinute, long toMinute,
+            boolean toInclusive, int count) {
+        List<Appointment> result = new ArrayList<>();
+        if (index == null || fromMinute > toMinute) {
+            return result;
+        }
+        for (Map.Entry<Long, Set<Appointment>> entry : index.subMap(fromMinute, true, toMinute, toInclusive).entrySet()) {
+            if (result.size() >= count) {
+                break;
+            }
+            result.addAll(entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Adds an appointment to the container and to the indexes, replacing any record with the same record ID.
+     * 
+     * @param record The appointment to be added.
+     */
+    @Override
+    public synchronized void putRecord(Record record) {
+        Record previous = getRecord(record.getRecordId());
+        if (previous instanceof Appointment) {
+            unindex((Appointment) previous);
+        }
+        super.putRecord(record);
+        if (record instanceof Appointment) {
+            index((Appointment) record);
+        }
+    }
+
+    /**
+     * Removes an appointment from the container and from the indexes.
+     * 
+     * @param recordId The record ID of the appointment to be removed.
+     */
+    @Override
+    public synchronized void removeRecord(int recordId) {
+        Record record = getRecord(recordId);
+        super.removeRecord(recordId);
+        if (record instanceof Appointment) {
+            unindex((Appointment) record);
+        }
+    }
+
+    /**
+     * Clears all appointments and indexes.
+     */
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        byAppointmentKey.clear();
+        sharedAppointmentKeys.clear();
+        byDoctorAndStatus.clear();
+        byPatientAndStatus.clear();
+        byPatientDoctorAndStatus.clear();
+        byTime.clear();
+        byDoctorAndTime.clear();
+        byPatientAndTime.clear();
+    }
+
+    /**
+     * Adds an appointment to every index under its current identifier, patient, doctor and status.
+     * If two appointments share an identifier, the one added first is found by it.
+     */
+    private void index(Appointment appointment) {
+        indexIdentifyId(appointment);
+        int patient = appointment.getPatientCode();
+        int doctor = appointment.getDoctorCode();
+        int status = encodeStatus(appointment.getStatus());
+        byDoctorAndStatus.computeIfAbsent(key(doctor, status), k -> new CopyOnWriteArraySet<>()).add(appointment);
+        byPatientAndStatus.computeIfAbsent(key(patient, status), k -> new CopyOnWriteArraySet<>()).add(appointment);
+        byPatientDoctorAndStatus.computeIfAbsent(key(patient, doctor), k -> new ConcurrentHashMap<>())
+            .computeIfAbsent(status, k -> new CopyOnWriteArraySet<>()).add(appointment);
+        indexTime(appointment);
+    }
+
+    /**
+     * Removes an appointment from every index, using its current identifier, patient, doctor and status.
+     */
+    private void unindex(Appointment appointment) {
+        unindexIdentifyId(appointment);
+        int patient = appointment.getPatientCode();
+        int doctor = appointment.getDoctorCode();
+        int status = encodeStatus(appointment.getStatus());
+        removeFromIndex(byDoctorAndStatus, key(doctor, status), appointment);
+        removeFromIndex(byPatientAndStatus, key(patient, status), appointment);
+        Map<Integer, Set<Appointment>> byStatus = byPatientDoctorAndStatus.get(key(patient, doctor));
+        if (byStatus != null) {
+            removeFromIndex(byStatus, status, appointment);
+            if (byStatus.isEmpty()) {
+                byPatientDoctorAndStatus.remove(key(patient, doctor));
+            }
+        }
+        unindexTime(appointment);
+    }
+
+    /**
+     * Adds an appointment to the time indexes under its current time. Appointments at the same minute keep the
+     * order they were added in.
+     */
+    private void indexTime(Appointment appointment) {
+        Long minute = appointment.getTimeMinute();
+        byTime.computeIfAbsent(minute, k -> new CopyOnWriteArraySet<>()).add(appointment);
+        byDoctorAndTime.computeIfAbsent(appointment.getDoctorCode(), k -> new ConcurrentSkipListMap<>())
+            .computeIfAbsent(minute, k -> new CopyOnWriteArraySet<>()).add(appointment);
+        byPatientAndTime.computeIfAbsent(appointment.getPatientCode(), k -> new ConcurrentSkipListMap<>())
+            .computeIfAbsent(minute, k -> new CopyOnWriteArraySet<>()).add(appointment);
+    }
+
+    /**
+     * Removes an appointment from the time indexes, using its current time.
+     */
+    private void unindexTime(Appointment appointment) {
+        Long minute = appointment.getTimeMinute();
+        removeFromTimeIndex(byTime, minute, appointment);
+        NavigableMap<Long, Set<Appointment>> doctorTimes = byDoctorAndTime.get(appointment.getDoctorCode());
+        if (doctorTimes != null) {
+            removeFromTimeIndex(doctorTimes, minute, appointment);
+            if (doctorTimes.isEmpty()) {
+                byDoctorAndTime.remove(appointment.getDoctorCode());
+            }
+        }
+        NavigableMap<Long, Set<Appointment>> patientTimes = byPatientAndTime.get(appointment.getPatientCode());
+        if (patientTimes != null) {
+            removeFromTimeIndex(patientTimes, minute, appointment);
+            if (patientTimes.isEmpty()) {
+                byPatientAndTime.remove(appointment.getPatientCode());
+            }
+        }
+    }
+
+    private static void removeFromTimeIndex(NavigableMap<Long, Set<Appointment>> index, Long minute, Appointment appointment) {
+        Set<Appointment> appointments = index.get(minute);
+        if (appointments != null) {
+            appointments.remove(appointment);
+            if (appointments.isEmpty()) {
+                index.remove(minute);
+            }
+        }
+    }
+
+    /**
+     * Adds an appointment to the identifier index. An appointment whose identifier is already in use is kept aside,
+     * so it can be found once the earlier one is removed.
+     */
+    private void indexIdentifyId(Appointment appointment) {
+        Long appointmentKey = appointment.getAppointmentKey();
+        if (byAppointmentKey.putIfAbsent(appointmentKey, appointment) != null) {
+            sharedAppointmentKeys.computeIfAbsent(appointmentKey, k -> new ArrayList<>()).add(appointment);
+        }
+    }
+
+    /**
+     * Removes an appointment from the identifier index. If it was the one found by its identifier,
+     * the next appointment with the same identifier takes its place.
+     */
+    private void unindexIdentifyId(Appointment appointment) {
+        Long appointmentKey = appointment.getAppointmentKey();
+        ArrayList<Appointment> shared = sharedAppointmentKeys.get(appointmentKey);
+        if (byAppointmentKey.get(appointmentKey) == appointment) {
+            if (shared == null) {
+                byAppointmentKey.remove(appointmentKey);
+                return;
+            }
+            byAppointmentKey.put(appointmentKey, shared.remove(0));
+        } else if (shared != null) {
+            shared.remove(appointment);
+        }
+        if (shared != null && shared.isEmpty()) {
+            sharedAppointmentKeys.remove(appointmentKey);
+        }
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<Appointment>> index, K key, Appointment appointment) {
+        Set<Appointment> appointments = index.get(key);
+        if (appointments != null) {
+            appointments.remove(appointment);
+            if (appointments.isEmpty()) {
+                index.remove(key);
             }
         }
-        return filteredAppointments;
+    }
+
+    /**
+     * Copies the appointments of an index set, in the order they were added.
+     */
+    private static List<Appointment> lookup(Set<Appointment> appointments) {
+        return appointments == null ? new ArrayList<>() : new ArrayList<>(appointments);
+    }
+
+    /**
+     * Builds the index key for a pair of codes. Keys made with a code of NONE match no appointment.
+     */
+    private static long key(int high, int low) {
+        return ((long) high << 32) | (low & 0xffffffffL);
+    }
+
+    /**
+     * Gets the code of a status, giving it the next free code if it has none yet.
+     */
+    private static int encodeStatus(String status) {
+        Integer code = statusCodes.get(status);
+        return code != null ? code : addStatus(status);
+    }
+
+    /**
+     * Gives a status the next free code, unless another thread gave it one first.
+     */
+    private static synchronized int addStatus(String status) {
+        return statusCodes.computeIfAbsent(status, s -> statusCodes.size());
+    }
+
+    /**
+     * Gets the code of a status without giving it one.
+     *
+     * @return The code of the status, or HospitalIdDictionary.NONE if no appointment ever had it.
+     */
+    private static int findStatus(String status) {
+        Integer code = statusCodes.get(status);
+        return code != null ? code : HospitalIdDictionary.NONE;
     }
 
     /**
@@ -222,19 +688,20 @@ public class AppointmentContainer extends RecordContainer {
      * @param filePath The path of the CSV file to write to.
      */
     public void exportAppointmentToCSV(String filePath) {
-        try (FileWriter writer = new FileWriter(filePath)) {
+        try (RowWriter writer = RowWriter.create(filePath)) {
             // Write header
-            writer.write("Time,PatientHospitalId,DoctorHospitalId,Status\n");
+            writer.writeLine("Time,PatientHospitalId,DoctorHospitalId,Status,RecordId");
 
             // Write each appointment's details
             for (Appointment appointment : getAllAppointments()) {
-                writer.write(String.format("%s,%s,%s,%s\n",
-                    appointment.getTime(),
-                    appointment.getpatientHospitalId(),
-                    appointment.getdoctorHospitalId(),
-                    appointment.getStatus()
-                ));
+                writer.field(appointment.getTime())
+                    .id(appointment.getpatientHospitalId())
+                    .id(appointment.getdoctorHospitalId())
+                    .id(appointment.getStatus())
+                    .field(appointment.getRecordId())
+                    .endRow();
             }
+            writer.commit();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -1,14 +1,19 @@
 package App.container.data;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import App.container.RowReader;
+import App.container.RowWriter;
+import App.container.Journal;
 import App.record.Appointment;
+import App.record.AppointmentKey;
 import App.record.AppointmentOutcomeRecord;
+import App.record.HospitalIdDictionary;
 import App.record.Prescription;
 import App.record.Record;
 
@@ -16,51 +21,95 @@ import App.record.Record;
 /**
  * Container class for managing appointment outcome records.
  * Provides functionalities for loading, adding, and exporting appointment outcomes.
+ * Records are also indexed by the key of their appointment (see AppointmentKey), which putRecord and removeRecord
+ * keep up to date. The data files and the journal keep the appointment record ID in its text form.
+ * Changes to the prescriptions of a record are synchronized on the record rather than on the container.
  */
 public class AppointmentOutcomeRecordContainer extends RecordContainer {
+    private final Set<Long> changedPrescriptions = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Long, AppointmentOutcomeRecord> byAppointmentKey = new ConcurrentHashMap<>();
     
     /**
-     * Constructs an AppointmentOutcomeRecordContainer and loads records from the given file.
+     * Constructs an AppointmentOutcomeRecordContainer and loads records from the given files.
+     * The prescriptions file is read once and its rows are handed to the matching records.
      * 
      * @param filePath Path to the CSV file containing appointment outcome records.
+     * @param prescriptionsPath Path to the CSV file containing the prescriptions of each record.
      */
-    public AppointmentOutcomeRecordContainer(String filePath) {
+    public AppointmentOutcomeRecordContainer(String filePath, String prescriptionsPath) {
+        this(filePath, loadPrescriptions(prescriptionsPath));
+    }
+
+    /**
+     * Constructs an AppointmentOutcomeRecordContainer from the given file and an already loaded prescriptions index.
+     * 
+     * @param filePath Path to the CSV file containing appointment outcome records.
+     * @param prescriptionsByRecordId The prescriptions grouped by appointment record ID, as returned by loadPrescriptions.
+     */
+    public AppointmentOutcomeRecordContainer(String filePath, HashMap<String, ArrayList<Prescription>> prescriptionsByRecordId) {
         super();
-        loadAppointmentOutcomeRecords(filePath);
+        loadAppointmentOutcomeRecords(filePath, prescriptionsByRecordId);
+    }
+
+    /**
+     * Reads the prescriptions file in a single pass and groups the prescriptions by appointment record ID.
+     * 
+     * @param filePath Path to the prescriptions CSV file.
+     * @return A HashMap from appointment record ID to the prescriptions of that appointment, in file order.
+     */
+    public static HashMap<String, ArrayList<Prescription>> loadPrescriptions(String filePath) {
+        HashMap<String, ArrayList<Prescription>> prescriptionsByRecordId = new HashMap<>();
+        try (RowReader reader = RowReader.open(filePath)) {
+            reader.nextRow(); // Skip the header line
+            while (reader.nextRow()) {
+                if (reader.getFieldCount() >= 4) {
+                    String appointmentRecordId = reader.getString(0);
+                    String medicine = reader.getId(1);
+                    int amount = reader.getInt(2);
+                    String status = reader.getId(3);
+                    int recordId = reader.getRecordId(4);
+
+                    prescriptionsByRecordId
+                        .computeIfAbsent(appointmentRecordId, id -> new ArrayList<>())
+                        .add(new Prescription(recordId, medicine, amount, status));
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return prescriptionsByRecordId;
     }
 
     /**
      * Loads appointment outcome records from a CSV file into the container.
      * 
      * @param filePath Path to the CSV file.
+     * @param prescriptionsByRecordId The prescriptions grouped by appointment record ID.
      */
-    private void loadAppointmentOutcomeRecords(String filePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            boolean isHeader = true;
-            while ((line = br.readLine()) != null) {
-                if (isHeader) {
-                    isHeader = false;
-                    continue; // Skip the header line
-                }
-                String[] fields = line.split(",");
-                String appointmentRecordId = fields[0].trim();
-                String patientHospitalId = fields[1].trim();
-                String doctorHospitalId = fields[2].trim();
-                String serviceType = fields[3].trim();
-                String consultationNotes = fields[4].trim();
-
-                // Create AppointmentOutcomeRecord object and load prescriptions within the class
+    private void loadAppointmentOutcomeRecords(String filePath, HashMap<String, ArrayList<Prescription>> prescriptionsByRecordId) {
+        try (RowReader reader = RowReader.open(filePath)) {
+            reader.nextRow(); // Skip the header line
+            while (reader.nextRow()) {
+                String appointmentRecordId = reader.getString(0);
+                String patientHospitalId = reader.getId(1);
+                String doctorHospitalId = reader.getId(2);
+                String serviceType = reader.getId(3);
+                String consultationNotes = reader.getString(4);
+                int recordId = reader.getRecordId(5);
+
+                // Hand the record its own prescriptions, or a fresh list if it has none yet
+                ArrayList<Prescription> prescriptions = prescriptionsByRecordId.remove(appointmentRecordId);
                 AppointmentOutcomeRecord record = new AppointmentOutcomeRecord(
+                    recordId,
                     appointmentRecordId,
                     patientHospitalId,
                     doctorHospitalId,
                     serviceType,
-                    consultationNotes
+                    consultationNotes,
+                    prescriptions != null ? prescriptions : new ArrayList<>()
                 );
 
-                // The record itself will load prescriptions from CSV if needed
-                super.putRecord(record);
+                putRecord(record);
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -76,22 +125,119 @@ public class AppointmentOutcomeRecordContainer extends RecordContainer {
      */
     public void addAppointmentOutcomeRecord(Appointment appointment, String serviceType, String consultationNotes) {
         // Extract details from the Appointment object
-        String appointmentRecordId = appointment.getAppointmentIdentifyId();
-        String patientHospitalId = appointment.getpatientHospitalId();
-        String doctorHospitalId = appointment.getdoctorHospitalId();
-    
-        // Create a new AppointmentOutcomeRecord with the extracted information
-        AppointmentOutcomeRecord appointmentOutcomeRecord = new AppointmentOutcomeRecord(
+        addAppointmentOutcomeRecord(new AppointmentOutcomeRecord(
+            appointment.getAppointmentKey(),
+            appointment.getpatientHospitalId(),
+            appointment.getdoctorHospitalId(),
+            serviceType,
+            consultationNotes,
+            new ArrayList<>()
+        ));
+    }
+
+    /**
+     * Adds an appointment outcome record with the given details.
+     * 
+     * @param appointmentRecordId The unique identifier of the appointment the outcome belongs to.
+     * @param patientHospitalId The hospital ID of the patient.
+     * @param doctorHospitalId The hospital ID of the doctor.
+     * @param serviceType The type of service provided during the appointment.
+     * @param consultationNotes The consultation notes.
+     */
+    public void addAppointmentOutcomeRecord(String appointmentRecordId, String patientHospitalId, String doctorHospitalId, String serviceType, String consultationNotes) {
+        addAppointmentOutcomeRecord(Record.NEW_ID, appointmentRecordId, patientHospitalId, doctorHospitalId, serviceType, consultationNotes);
+    }
+
+    /**
+     * Adds an appointment outcome record with the given record ID and details, such as one read back from the journal.
+     * 
+     * @param recordId The record ID, or Record.NEW_ID to have a new one handed out.
+     * @param appointmentRecordId The unique identifier of the appointment the outcome belongs to.
+     * @param patientHospitalId The hospital ID of the patient.
+     * @param doctorHospitalId The hospital ID of the doctor.
+     * @param serviceType The type of service provided during the appointment.
+     * @param consultationNotes The consultation notes.
+     */
+    public void addAppointmentOutcomeRecord(int recordId, String appointmentRecordId, String patientHospitalId, String doctorHospitalId, String serviceType, String consultationNotes) {
+        // Create a new AppointmentOutcomeRecord with the given information
+        addAppointmentOutcomeRecord(new AppointmentOutcomeRecord(
+            recordId,
             appointmentRecordId,
             patientHospitalId,
             doctorHospitalId,
             serviceType,
-            consultationNotes
-        );
-    
-        // Add the AppointmentOutcomeRecord to the container
-        super.putRecord(appointmentOutcomeRecord);
-    }  
+            consultationNotes,
+            new ArrayList<>()
+        ));
+    }
+
+    /**
+     * Adds a new appointment outcome record to the container and journals it.
+     * 
+     * @param appointmentOutcomeRecord The record to be added.
+     */
+    private void addAppointmentOutcomeRecord(AppointmentOutcomeRecord appointmentOutcomeRecord) {
+        long lsn;
+        synchronized (this) {
+            putRecord(appointmentOutcomeRecord);
+            markChanged(appointmentOutcomeRecord.getAppointmentKey());
+            lsn = journal(Journal.OUTCOME_ADD,
+                appointmentOutcomeRecord.getAppointmentRecordId(),
+                appointmentOutcomeRecord.getPatientHospitalId(),
+                appointmentOutcomeRecord.getDoctorHospitalId(),
+                appointmentOutcomeRecord.getServiceType(),
+                appointmentOutcomeRecord.getConsultationNotes(),
+                appointmentOutcomeRecord.getRecordId());
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Adds a pending prescription to an appointment outcome record.
+     * 
+     * @param record The appointment outcome record.
+     * @param medicineName The name of the prescribed medicine.
+     * @param amount The prescribed amount.
+     */
+    public void addPrescription(AppointmentOutcomeRecord record, String medicineName, int amount) {
+        addPrescription(record, Record.NEW_ID, medicineName, amount);
+    }
+
+    /**
+     * Adds a pending prescription with the given record ID to an appointment outcome record, such as one read back
+     * from the journal.
+     * 
+     * @param record The appointment outcome record.
+     * @param recordId The record ID of the prescription, or Record.NEW_ID to have a new one handed out.
+     * @param medicineName The name of the prescribed medicine.
+     * @param amount The prescribed amount.
+     */
+    public void addPrescription(AppointmentOutcomeRecord record, int recordId, String medicineName, int amount) {
+        long lsn;
+        synchronized (record) {
+            Prescription prescription = record.addPrescription(recordId, medicineName, amount);
+            changedPrescriptions.add(record.getAppointmentKey());
+            lsn = journal(Journal.PRESCRIPTION_ADD, record.getAppointmentRecordId(), medicineName, amount, prescription.getRecordId());
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Changes the status of one prescription of an appointment outcome record.
+     * 
+     * @param record The appointment outcome record.
+     * @param prescriptionIndex The position of the prescription in the record.
+     * @param status The new status (e.g., "dispensed").
+     */
+    public void updatePrescriptionStatus(AppointmentOutcomeRecord record, int prescriptionIndex, String status) {
+        long lsn;
+        synchronized (record) {
+            record.setStatus(prescriptionIndex, status);
+            changedPrescriptions.add(record.getAppointmentKey());
+            lsn = journal(Journal.PRESCRIPTION_STATUS, record.getAppointmentRecordId(), prescriptionIndex, status);
+        }
+        awaitDurable(lsn);
+    }
     
     /**
      * Retrieves an appointment outcome record by its appointment record ID.
@@ -100,16 +246,62 @@ public class AppointmentOutcomeRecordContainer extends RecordContainer {
      * @return The AppointmentOutcomeRecord object if found, otherwise null.
      */
     public AppointmentOutcomeRecord getAppointmentOutcomeRecordById(String appointmentRecordId) {
-        // Iterate through all records in the container
-        for (Record record : getRecords().values()) {
-            if (record instanceof AppointmentOutcomeRecord) {
-                AppointmentOutcomeRecord outcomeRecord = (AppointmentOutcomeRecord) record;
-                if (outcomeRecord.getAppointmentRecordId().equals(appointmentRecordId)) {
-                    return outcomeRecord; // Return the matching record
-                }
-            }
+        long appointmentKey = AppointmentKey.find(appointmentRecordId);
+        return appointmentKey != AppointmentKey.NONE ? byAppointmentKey.get(appointmentKey) : null;
+    }
+
+    /**
+     * Retrieves the appointment outcome record of an appointment by the key of the appointment.
+     * 
+     * @param appointmentKey The key of the appointment, see Appointment.getAppointmentKey.
+     * @return The AppointmentOutcomeRecord object if found, otherwise null.
+     */
+    public AppointmentOutcomeRecord getAppointmentOutcomeRecordByKey(long appointmentKey) {
+        return byAppointmentKey.get(appointmentKey);
+    }
+
+    /**
+     * Adds a record to the container and indexes it by the key of its appointment, replacing any record with the same
+     * record ID. If two records share an appointment, the one added first is found by it.
+     * 
+     * @param record The record to be added.
+     */
+    @Override
+    public synchronized void putRecord(Record record) {
+        Record previous = getRecord(record.getRecordId());
+        if (previous instanceof AppointmentOutcomeRecord) {
+            AppointmentOutcomeRecord outcomeRecord = (AppointmentOutcomeRecord) previous;
+            byAppointmentKey.remove(outcomeRecord.getAppointmentKey(), outcomeRecord);
+        }
+        super.putRecord(record);
+        if (record instanceof AppointmentOutcomeRecord) {
+            AppointmentOutcomeRecord outcomeRecord = (AppointmentOutcomeRecord) record;
+            byAppointmentKey.putIfAbsent(outcomeRecord.getAppointmentKey(), outcomeRecord);
         }
-        return null; // Return null if no matching record is found
+    }
+
+    /**
+     * Removes a record from the container and from the appointment key index.
+     * 
+     * @param recordId The record ID of the record to be removed.
+     */
+    @Override
+    public synchronized void removeRecord(int recordId) {
+        Record record = getRecord(recordId);
+        super.removeRecord(recordId);
+        if (record instanceof AppointmentOutcomeRecord) {
+            AppointmentOutcomeRecord outcomeRecord = (AppointmentOutcomeRecord) record;
+            byAppointmentKey.remove(outcomeRecord.getAppointmentKey(), outcomeRecord);
+        }
+    }
+
+    /**
+     * Clears all records and the appointment key index.
+     */
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        byAppointmentKey.clear();
     }
 
     /**
@@ -120,12 +312,16 @@ public class AppointmentOutcomeRecordContainer extends RecordContainer {
      */
     public List<AppointmentOutcomeRecord> getAppointmentOutcomeRecordsByPatientId(String patientHospitalId) {
         List<AppointmentOutcomeRecord> outcomeRecords = new ArrayList<>();
+        int patientCode = HospitalIdDictionary.PATIENTS.find(patientHospitalId);
+        if (patientCode == HospitalIdDictionary.NONE) {
+            return outcomeRecords; // No record can belong to an ID that was never seen
+        }
 
         // Iterate through all records in the container
         for (Record record : getRecords().values()) {
             if (record instanceof AppointmentOutcomeRecord) {
                 AppointmentOutcomeRecord outcomeRecord = (AppointmentOutcomeRecord) record;
-                if (outcomeRecord.getPatientHospitalId().equals(patientHospitalId)) {
+                if (outcomeRecord.getPatientCode() == patientCode) {
                     outcomeRecords.add(outcomeRecord); // Add matching record to the list
                 }
             }
@@ -151,26 +347,45 @@ public class AppointmentOutcomeRecordContainer extends RecordContainer {
         return outcomeRecords; // Return the list of records
     }
 
+    /**
+     * Checks whether any prescription changed since the container was loaded or last exported.
+     * 
+     * @return True if the prescriptions CSV file needs to be rewritten, otherwise false.
+     */
+    public boolean hasPrescriptionChanges() {
+        return !changedPrescriptions.isEmpty();
+    }
+
+    /**
+     * Forgets all recorded changes to records and prescriptions, after the container has been exported.
+     */
+    @Override
+    public void clearChanges() {
+        super.clearChanges();
+        changedPrescriptions.clear();
+    }
+
     /**
      * Exports all appointment outcome records to a CSV file.
      * 
      * @param filePath The path of the CSV file to write to.
      */
     public void exportAppointmentOutcomeRecordToCSV(String filePath) {
-        try (FileWriter writer = new FileWriter(filePath)) {
+        try (RowWriter writer = RowWriter.create(filePath)) {
             // Write header
-            writer.write("AppointmentRecordId,PatientHospitalId,DoctorHospitalId,ServiceType,ConsultationNotes\n");
+            writer.writeLine("AppointmentRecordId,PatientHospitalId,DoctorHospitalId,ServiceType,ConsultationNotes,RecordId");
 
             // Write each AppointmentOutcomeRecord's details
             for (AppointmentOutcomeRecord record : getAllAppointmentOutcomeRecords()) {
-                writer.write(String.format("%s,%s,%s,%s,%s\n",
-                    record.getAppointmentRecordId(),
-                    record.getPatientHospitalId(),
-                    record.getDoctorHospitalId(),
-                    record.getServiceType(),
-                    record.getConsultationNotes()
-                ));
+                writer.field(record.getAppointmentRecordId())
+                    .id(record.getPatientHospitalId())
+                    .id(record.getDoctorHospitalId())
+                    .id(record.getServiceType())
+                    .field(record.getConsultationNotes())
+                    .field(record.getRecordId())
+                    .endRow();
             }
+            writer.commit();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -182,23 +397,24 @@ public class AppointmentOutcomeRecordContainer extends RecordContainer {
      * @param prescriptions_list The path of the CSV file to write prescriptions to.
      */
     public void exportPrescriptionsToCSV(String prescriptions_list) {
-        try (FileWriter writer = new FileWriter(prescriptions_list)) {
+        try (RowWriter writer = RowWriter.create(prescriptions_list)) {
             // Write header
-            writer.write("AppointmentRecordId,Medicine,Amount,Status\n");
+            writer.writeLine("AppointmentRecordId,Medicine,Amount,Status,RecordId");
 
             // Write each prescription for each AppointmentOutcomeRecord
             for (AppointmentOutcomeRecord record : getAllAppointmentOutcomeRecords()) {
                 String appointmentRecordId = record.getAppointmentRecordId();
 
                 for (Prescription prescription : record.getPrescriptions()) {
-                    writer.write(String.format("%s,%s,%d,%s\n",
-                        appointmentRecordId,
-                        prescription.getMedicine(),
-                        prescription.getAmount(),
-                        prescription.getStatus()
-                    ));
+                    writer.field(appointmentRecordId)
+                        .id(prescription.getMedicine())
+                        .field(prescription.getAmount())
+                        .id(prescription.getStatus())
+                        .field(prescription.getRecordId())
+                        .endRow();
                 }
             }
+            writer.commit();
         } catch (IOException e) {
             e.printStackTrace();
         }
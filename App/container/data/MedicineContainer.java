@@ -1,12 +1,12 @@
 package App.container.data;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import App.container.RowReader;
+import App.container.RowWriter;
+import App.container.Journal;
 import App.record.Medicine;
 import App.record.Record;
 
@@ -14,6 +14,9 @@ import App.record.Record;
 /**
  * Container class for managing medicine records.
  * Provides functionalities to load, retrieve, and export medicine data.
+ *
+ * Changes to the stock or threshold of a medicine are synchronized on the medicine rather than on the container,
+ * as changes to different medicines are independent.
  */
 public class MedicineContainer extends RecordContainer {
 
@@ -25,22 +28,16 @@ public class MedicineContainer extends RecordContainer {
      */
     public MedicineContainer(String filePath) {
         super();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            boolean isHeader = true; // Flag to skip the header line
+        try (RowReader reader = RowReader.open(filePath)) {
+            reader.nextRow(); // Skip the first line (header)
 
-            while ((line = br.readLine()) != null) {
-                if (isHeader) {
-                    isHeader = false; // Skip the first line (header)
-                    continue;
-                }
-
-                String[] fields = line.split(",");
-                String medicineName = fields[0].trim();            // "Medicine Name"
-                int currentStock = Integer.parseInt(fields[1].trim()); // "Initial Stock"
-                int alertThreshold = Integer.parseInt(fields[2].trim()); // "Low Stock Level Alert"
+            while (reader.nextRow()) {
+                String medicineName = reader.getString(0);     // "Medicine Name"
+                int currentStock = reader.getInt(1);           // "Initial Stock"
+                int alertThreshold = reader.getInt(2);         // "Low Stock Level Alert"
+                int recordId = reader.getRecordId(3);          // "Record ID"
 
-                Medicine Medicine = new Medicine(medicineName, currentStock, alertThreshold);
+                Medicine Medicine = new Medicine(recordId, medicineName, currentStock, alertThreshold);
                 putRecord(Medicine);
             }
         } catch (IOException e) {
@@ -81,24 +78,85 @@ public class MedicineContainer extends RecordContainer {
         return null;
     }
 
+    /**
+     * Changes the current stock of a medicine.
+     * 
+     * @param medicine The medicine to update.
+     * @param currentStock The new stock level.
+     */
+    public void updateStock(Medicine medicine, int currentStock) {
+        long lsn;
+        synchronized (medicine) {
+            lsn = setStock(medicine, currentStock);
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Adds to or takes from the current stock of a medicine. Unlike reading the stock and calling updateStock,
+     * no change made by another session in between is lost.
+     * 
+     * @param medicine The medicine to update.
+     * @param change The amount to add, or a negative amount to take.
+     * @return The new stock level.
+     */
+    public int adjustStock(Medicine medicine, int change) {
+        int currentStock;
+        long lsn;
+        synchronized (medicine) {
+            currentStock = medicine.getCurrentStock() + change;
+            lsn = setStock(medicine, currentStock);
+        }
+        awaitDurable(lsn);
+        return currentStock;
+    }
+
+    /**
+     * Sets and journals the stock of a medicine. Called while synchronized on the medicine.
+     * 
+     * @return The log sequence number of the journal entry.
+     */
+    private long setStock(Medicine medicine, int currentStock) {
+        medicine.setCurrentStock(currentStock);
+        markChanged(medicine.getMedicineName());
+        return journal(Journal.MEDICINE_STOCK, medicine.getMedicineName(), currentStock);
+    }
+
+    /**
+     * Changes the low stock alert threshold of a medicine.
+     * 
+     * @param medicine The medicine to update.
+     * @param alertThreshold The new alert threshold.
+     */
+    public void updateAlertThreshold(Medicine medicine, int alertThreshold) {
+        long lsn;
+        synchronized (medicine) {
+            medicine.setAlertThreshold(alertThreshold);
+            markChanged(medicine.getMedicineName());
+            lsn = journal(Journal.MEDICINE_THRESHOLD, medicine.getMedicineName(), alertThreshold);
+        }
+        awaitDurable(lsn);
+    }
+
     /**
      * Exports all medicines in the container to a CSV file.
      * 
      * @param filePath The path of the CSV file to write to.
      */
     public void exportMedicineToCSV(String filePath) {
-        try (FileWriter writer = new FileWriter(filePath)) {
+        try (RowWriter writer = RowWriter.create(filePath)) {
             // Write the CSV header
-            writer.write("Medicine Name,Initial Stock,Low Stock Level Alert\n");
+            writer.writeLine("Medicine Name,Initial Stock,Low Stock Level Alert,Record ID");
 
             // Write each medicine's details to the CSV file
             for (Medicine medicine : getAllMedicines()) {
-                writer.write(String.format("%s,%d,%d\n",
-                    medicine.getMedicineName(),
-                    medicine.getCurrentStock(),
-                    medicine.getAlertThreshold()
-                ));
+                writer.field(medicine.getMedicineName())
+                    .field(medicine.getCurrentStock())
+                    .field(medicine.getAlertThreshold())
+                    .field(medicine.getRecordId())
+                    .endRow();
             }
+            writer.commit();
         } catch (IOException e) {
             e.printStackTrace();
         }
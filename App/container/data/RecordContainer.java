@@ -1,32 +1,108 @@
 package App.container.data;
 
-import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import App.container.Container;
+import App.container.Journal;
 import App.record.Record;
 
 /**
  * Container class for managing general records.
- * Provides functionalities to add, remove, retrieve, and manage records in a HashMap.
+ * Provides functionalities to add, remove, retrieve, and manage records in a RecordMap, keyed by record ID.
+ *
+ * Containers can be used by several sessions at once. Reads never take a lock. Every method that adds or removes
+ * records or changes what a subclass indexes them by is synchronized on the container, including those of
+ * subclasses, so those changes happen one at a time and the indexes always agree with the records. Changes to
+ * a single record that no index depends on may be synchronized on the record instead.
+ *
+ * A change is journaled while its lock is held and waited for on disk only after the lock is released, so the
+ * journal has the changes in the order they were made, and sessions changing the container at the same time do
+ * not wait for each other's syncs.
  */
 public class RecordContainer implements Container {
-    private final HashMap<Integer,Record> records;
+    protected static final long NOT_JOURNALED = -1; // Returned by journal when no journal is attached
+
+    private final RecordMap records;
+    private volatile Journal journal;
+    private final Set<Object> changedKeys = ConcurrentHashMap.newKeySet();
     
 
     /**
      * Constructs a new RecordContainer to manage records.
      */
     public RecordContainer() {
-        records = new HashMap<>();
+        records = new RecordMap();
+    }
+
+    /**
+     * Attaches the journal that changes made through this container are written to.
+     * Containers are loaded and replayed without a journal, so those changes are not written again.
+     * 
+     * @param journal The journal, or null to stop journaling.
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Writes a change to the journal, if one is attached, without waiting for it to be on disk.
+     * Called while holding the lock the change is made under, so the journal has changes in the order they were made.
+     * 
+     * @param operation The operation, one of the constants of Journal.
+     * @param fields The values needed to replay the change.
+     * @return The log sequence number to pass to awaitDurable, or NOT_JOURNALED if no journal is attached.
+     */
+    protected long journal(String operation, Object... fields) {
+        Journal current = journal;
+        return current != null ? current.enqueue(operation, fields) : NOT_JOURNALED;
+    }
+
+    /**
+     * Waits until a change written by journal is on disk. Called after releasing the lock the change was made
+     * under, so other changes are not held up behind the sync and share it instead.
+     * 
+     * @param lsn The log sequence number returned by journal.
+     */
+    protected void awaitDurable(long lsn) {
+        Journal current = journal;
+        if (current != null && lsn != NOT_JOURNALED) {
+            current.awaitDurable(lsn);
+        }
+    }
+
+    /**
+     * Records that an entry of this container changed since it was loaded or last exported.
+     * 
+     * @param key The key of the changed entry.
+     */
+    protected void markChanged(Object key) {
+        changedKeys.add(key);
+    }
+
+    /**
+     * Checks whether any entry of this container changed since it was loaded or last exported.
+     * 
+     * @return True if the CSV file of this container needs to be rewritten, otherwise false.
+     */
+    public boolean hasChanges() {
+        return !changedKeys.isEmpty();
+    }
+
+    /**
+     * Forgets all recorded changes, after the container has been exported.
+     */
+    public void clearChanges() {
+        changedKeys.clear();
     }
 
 
     /**
      * Retrieves all records in the container.
      * 
-     * @return A HashMap containing all records.
+     * @return The RecordMap containing all records.
      */
-    public HashMap<Integer,Record> getRecords() {
+    public RecordMap getRecords() {
         return records;
     }
 
@@ -35,7 +111,7 @@ public class RecordContainer implements Container {
      * 
      * @param record The record to be added.
      */
-    public void putRecord(Record record) {
+    public synchronized void putRecord(Record record) {
         records.put(record.getRecordId(), record);
     }
 
@@ -44,9 +120,8 @@ public class RecordContainer implements Container {
      * 
      * @param recordId The ID of the record to be removed.
      */
-    public void removeRecord(int recordId) {
-        if (records.containsKey(recordId))
-            records.remove(recordId);
+    public synchronized void removeRecord(int recordId) {
+        records.remove(recordId);
     }
 
     /**
@@ -56,8 +131,6 @@ public class RecordContainer implements Container {
      * @return The Record object if found, otherwise null.
      */
     public Record getRecord(int recordId) {
-        if (!records.containsKey(recordId))
-            return null;
         return records.get(recordId);
     }
 
@@ -75,7 +148,7 @@ public class RecordContainer implements Container {
     /**
      * Clears all records from the container.
      */
-    public void clear() {
+    public synchronized void clear() {
         records.clear();
     }
 
@@ -86,10 +159,8 @@ public class RecordContainer implements Container {
      */
     @Override
     public String toString() {
-        String result = "";
-        for (int i:records.keySet()) {
-            result+=i+": "+records.get(i).toString()+"\n";
-        }
-        return result;
+        StringBuilder result = new StringBuilder();
+        records.forEach((recordId, record) -> result.append(recordId).append(": ").append(record).append("\n"));
+        return result.toString();
     }
 }
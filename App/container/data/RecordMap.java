@@ -0,0 +1,300 @@
+package App.container.data;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import App.record.Record;
+
+/**
+ * Holds the records of a RecordContainer by record ID, without boxing the IDs.
+ *
+ * Record IDs are small non-negative ints handed out in blocks by RecordIdAllocator, so the map is an open-addressing
+ * table that places each record at its ID modulo the table size and probes linearly on collisions. Consecutive IDs
+ * fill consecutive slots, so a lookup usually reads one entry of an int array and one of a Record array, and no
+ * entry objects are created.
+ *
+ * Any number of threads can read the map while one thread at a time changes it; RecordContainer makes sure of the
+ * latter. Reads take no lock. A new entry is published by writing its record before its key, and a slot, once used,
+ * is never given to another key: removed entries become tombstones, which are dropped when the table is rebuilt. A
+ * rebuilt table is filled completely before it replaces the old one, so a reader always sees a whole table.
+ * Iteration is weakly consistent, like that of the concurrent collections: it never fails, and sees the records
+ * present when it started unless they were removed in the meantime.
+ *
+ * Records are visited in slot order, which for the IDs of one container is mostly ascending ID order.
+ */
+public class RecordMap {
+    private static final int FREE = -1;      // Record IDs are never negative
+    private static final int REMOVED = -2;
+    private static final int MIN_CAPACITY = 16;
+
+    private volatile Table table = new Table(MIN_CAPACITY);
+    private volatile int size;
+    private int used; // Slots holding an entry or a tombstone; only touched by the writing thread
+    private final Collection<Record> valuesView = new Values();
+
+    /**
+     * Receives the entries of a RecordMap, one at a time.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * Receives one entry.
+         *
+         * @param recordId The record ID.
+         * @param record The record.
+         */
+        void visit(int recordId, Record record);
+    }
+
+    /**
+     * The slots of the map. Keys and records are read and written with volatile semantics.
+     */
+    private static class Table {
+        final AtomicIntegerArray keys;
+        final AtomicReferenceArray<Record> values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new AtomicIntegerArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                keys.lazySet(i, FREE); // Published with the table itself
+            }
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        /**
+         * Finds the slot of a record ID.
+         *
+         * @return The slot, or -1 if the record ID is not in the table.
+         */
+        int find(int recordId) {
+            int slot = recordId & mask;
+            int key;
+            while ((key = keys.get(slot)) != FREE) {
+                if (key == recordId) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the record with a record ID.
+     *
+     * @param recordId The record ID.
+     * @return The record, or null if there is none.
+     */
+    public Record get(int recordId) {
+        if (recordId < 0) {
+            return null;
+        }
+        Table current = table;
+        int slot = current.find(recordId);
+        return slot >= 0 ? current.values.get(slot) : null; // Null as well if it was removed meanwhile
+    }
+
+    /**
+     * Checks whether there is a record with a record ID.
+     *
+     * @param recordId The record ID.
+     * @return True if there is such a record, otherwise false.
+     */
+    public boolean containsKey(int recordId) {
+        return get(recordId) != null;
+    }
+
+    /**
+     * Stores a record under a record ID, replacing the record stored under it before.
+     * Only one thread at a time may change the map.
+     *
+     * @param recordId The record ID, not negative.
+     * @param record The record, not null.
+     * @return The record stored under the record ID before, or null if there was none.
+     */
+    public Record put(int recordId, Record record) {
+        if (recordId < 0) {
+            throw new IllegalArgumentException("Record IDs cannot be negative: " + recordId);
+        }
+        if (record == null) {
+            throw new IllegalArgumentException("Records cannot be null");
+        }
+        Table current = table;
+        int slot = current.find(recordId);
+        if (slot >= 0) {
+            return current.values.getAndSet(slot, record);
+        }
+        if ((used + 1) * 4 > current.capacity() * 3) {
+            current = rebuild(size + 1);
+        }
+        slot = recordId & current.mask;
+        while (current.keys.get(slot) != FREE) {
+            slot = (slot + 1) & current.mask;
+        }
+        current.values.set(slot, record); // The record first, so a reader that finds the key also finds the record
+        current.keys.set(slot, recordId);
+        used++;
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes the record stored under a record ID.
+     * Only one thread at a time may change the map.
+     *
+     * @param recordId The record ID.
+     * @return The record that was removed, or null if there was none.
+     */
+    public Record remove(int recordId) {
+        if (recordId < 0) {
+            return null;
+        }
+        Table current = table;
+        int slot = current.find(recordId);
+        if (slot < 0) {
+            return null;
+        }
+        Record removed = current.values.getAndSet(slot, null);
+        current.keys.set(slot, REMOVED);
+        size--;
+        return removed;
+    }
+
+    /**
+     * Gets the number of records.
+     *
+     * @return The number of records.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether there are no records.
+     *
+     * @return True if there are no records, otherwise false.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all records and gives back the memory of a large table.
+     * Only one thread at a time may change the map.
+     */
+    public void clear() {
+        table = new Table(MIN_CAPACITY);
+        used = 0;
+        size = 0;
+    }
+
+    /**
+     * Visits every record with its record ID, without boxing the IDs or creating an iterator.
+     *
+     * @param visitor Receives each record ID and record.
+     */
+    public void forEach(Visitor visitor) {
+        Table current = table;
+        for (int slot = 0; slot < current.capacity(); slot++) {
+            int key = current.keys.get(slot);
+            if (key >= 0) {
+                Record record = current.values.get(slot);
+                if (record != null) {
+                    visitor.visit(key, record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the records as a read-only, live collection, for loops over all records.
+     *
+     * @return The records.
+     */
+    public Collection<Record> values() {
+        return valuesView;
+    }
+
+    /**
+     * Moves all entries to a new table with room for the given number of entries, dropping the tombstones,
+     * and publishes it.
+     */
+    private Table rebuild(int entries) {
+        int capacity = MIN_CAPACITY;
+        while (entries * 2 > capacity) {
+            capacity *= 2;
+        }
+        Table old = table;
+        Table rebuilt = new Table(capacity);
+        for (int i = 0; i < old.capacity(); i++) {
+            int key = old.keys.get(i);
+            if (key >= 0) {
+                int slot = key & rebuilt.mask;
+                while (rebuilt.keys.get(slot) != FREE) {
+                    slot = (slot + 1) & rebuilt.mask;
+                }
+                rebuilt.keys.lazySet(slot, key);
+                rebuilt.values.lazySet(slot, old.values.get(i));
+            }
+        }
+        table = rebuilt; // Publishes every entry written above
+        used = size;
+        return rebuilt;
+    }
+
+    /**
+     * The records of the map, in slot order.
+     */
+    private class Values extends AbstractCollection<Record> {
+        @Override
+        public Iterator<Record> iterator() {
+            Table current = table;
+            return new Iterator<Record>() {
+                private int slot = -1;
+                private Record next = advance();
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Record next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    Record record = next;
+                    next = advance();
+                    return record;
+                }
+
+                private Record advance() {
+                    while (++slot < current.capacity()) {
+                        if (current.keys.get(slot) >= 0) {
+                            Record record = current.values.get(slot);
+                            if (record != null) {
+                                return record;
+                            }
+                        }
+                    }
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
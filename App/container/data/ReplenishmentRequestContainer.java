@@ -1,12 +1,12 @@
 package App.container.data;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import App.container.RowReader;
+import App.container.RowWriter;
+import App.container.Journal;
 import App.record.Record;
 import App.record.ReplenishmentRequest;
 
@@ -35,22 +35,16 @@ public class ReplenishmentRequestContainer extends RecordContainer {
      * @param filePath Path to the CSV file.
      */
     private void loadReplenishmentRequests(String filePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            boolean isHeader = true;
-
-            while ((line = br.readLine()) != null) {
-                if (isHeader) {
-                    isHeader = false; // Skip the header line
-                    continue;
-                }
-
-                String[] fields = line.split(",");
-                String medicineName = fields[0].trim();
-                int quantity = Integer.parseInt(fields[1].trim());
-                String status = fields[2].trim();
-
-                ReplenishmentRequest request = new ReplenishmentRequest(medicineName, quantity, status);
+        try (RowReader reader = RowReader.open(filePath)) {
+            reader.nextRow(); // Skip the header line
+
+            while (reader.nextRow()) {
+                String medicineName = reader.getId(0);
+                int quantity = reader.getInt(1);
+                String status = reader.getId(2);
+                int recordId = reader.getRecordId(3);
+
+                ReplenishmentRequest request = new ReplenishmentRequest(recordId, medicineName, quantity, status);
                 super.putRecord(request); // Add to container
             }
         } catch (IOException e) {
@@ -65,8 +59,25 @@ public class ReplenishmentRequestContainer extends RecordContainer {
      * @param quantity Quantity of the medicine requested.
      */
     public void addReplenishmentRequest(String medicineName, int quantity) {
-        ReplenishmentRequest replenishmentRequest = new ReplenishmentRequest(medicineName, quantity, "Pending");
-        super.putRecord(replenishmentRequest);
+        addReplenishmentRequest(Record.NEW_ID, medicineName, quantity);
+    }
+
+    /**
+     * Adds a new replenishment request with the given record ID, such as one read back from the journal.
+     *
+     * @param recordId The record ID, or Record.NEW_ID to have a new one handed out.
+     * @param medicineName Name of the medicine.
+     * @param quantity Quantity of the medicine requested.
+     */
+    public void addReplenishmentRequest(int recordId, String medicineName, int quantity) {
+        long lsn;
+        synchronized (this) {
+            ReplenishmentRequest replenishmentRequest = new ReplenishmentRequest(recordId, medicineName, quantity, "Pending");
+            super.putRecord(replenishmentRequest);
+            markChanged(replenishmentRequest.getRecordId());
+            lsn = journal(Journal.REPLENISHMENT_ADD, medicineName, quantity, replenishmentRequest.getRecordId());
+        }
+        awaitDurable(lsn);
     }
 
 
@@ -88,8 +99,16 @@ public class ReplenishmentRequestContainer extends RecordContainer {
      * @param status The new status to set for the replenishment request.
      */
     public void updateReplenishmentRequestStatus(int recordId, String status) {
-        ReplenishmentRequest replenishmentRequest = getReplenishmentRequestById(recordId);
-        replenishmentRequest.setStatus(status);
+        long lsn;
+        // Requests are journaled by their contents, so changes stay ordered on the container, not on the request
+        synchronized (this) {
+            ReplenishmentRequest replenishmentRequest = getReplenishmentRequestById(recordId);
+            String oldStatus = replenishmentRequest.getStatus();
+            replenishmentRequest.setStatus(status);
+            markChanged(recordId);
+            lsn = journal(Journal.REPLENISHMENT_STATUS, replenishmentRequest.getMedicineName(), replenishmentRequest.getQuantity(), oldStatus, status);
+        }
+        awaitDurable(lsn);
     }
 
     /**
@@ -98,7 +117,34 @@ public class ReplenishmentRequestContainer extends RecordContainer {
      * @param recordId The ID of the replenishment request to be removed.
      */
     public void removeReplenishmentRequest(int recordId) {
-        super.removeRecord(recordId);
+        long lsn = NOT_JOURNALED;
+        synchronized (this) {
+            ReplenishmentRequest replenishmentRequest = getReplenishmentRequestById(recordId);
+            super.removeRecord(recordId);
+            if (replenishmentRequest != null) {
+                markChanged(recordId);
+                lsn = journal(Journal.REPLENISHMENT_REMOVE, replenishmentRequest.getMedicineName(), replenishmentRequest.getQuantity(), replenishmentRequest.getStatus());
+            }
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Finds a replenishment request by its contents. Requests have no identifier that survives a restart,
+     * so requests with the same medicine, quantity and status are interchangeable.
+     *
+     * @param medicineName Name of the medicine.
+     * @param quantity Quantity of the medicine requested.
+     * @param status Status of the request.
+     * @return The first matching ReplenishmentRequest, or null if there is none.
+     */
+    public ReplenishmentRequest findReplenishmentRequest(String medicineName, int quantity, String status) {
+        for (ReplenishmentRequest request : getAllReplenishmentRequests()) {
+            if (request.getMedicineName().equals(medicineName) && request.getQuantity() == quantity && request.getStatus().equals(status)) {
+                return request;
+            }
+        }
+        return null;
     }
 
     /**
@@ -122,18 +168,19 @@ public class ReplenishmentRequestContainer extends RecordContainer {
      * @param filePath The path to the CSV file to which the replenishment requests will be exported.
      */
     public void exportReplenishmentRequestToCSV(String filePath) {
-        try (FileWriter writer = new FileWriter(filePath)) {
+        try (RowWriter writer = RowWriter.create(filePath)) {
             // Write header
-            writer.write("MedicineName,Quantity,Status\n");
+            writer.writeLine("MedicineName,Quantity,Status,RecordId");
 
             // Write each replenishment request's details
             for (ReplenishmentRequest request : getAllReplenishmentRequests()) {
-                writer.write(String.format("%s,%d,%s\n",
-                    request.getMedicineName(),
-                    request.getQuantity(),
-                    request.getStatus()
-                ));
+                writer.id(request.getMedicineName())
+                    .field(request.getQuantity())
+                    .id(request.getStatus())
+                    .field(request.getRecordId())
+                    .endRow();
             }
+            writer.commit();
         } catch (IOException e) {
             e.printStackTrace();
         }
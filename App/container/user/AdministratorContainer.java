@@ -1,6 +1,6 @@
 package App.container.user;
 
-import java.util.HashMap;
+import java.util.Map;
 
 import App.user.Administrator;
 import App.user.User;
@@ -12,12 +12,11 @@ import App.user.User;
 public class AdministratorContainer extends StaffContainer {
 
     /**
-     * Constructs an AdministratorContainer and loads administrators from the given CSV file.
-     * 
-     * @param filePath Path to the CSV file containing Administrator data.
+     * Constructs an empty AdministratorContainer.
+     * Administrators are loaded from the staff CSV file by StaffLoader.
      */
-    public AdministratorContainer(String filePath) {
-        super(filePath, "Administrator"); // Only import rows with userType "Administrator"
+    public AdministratorContainer() {
+        super();
     }
 
     /**
@@ -32,9 +31,9 @@ public class AdministratorContainer extends StaffContainer {
     /**
      * Retrieves all Administrators in the container.
      * 
-     * @return A HashMap containing all Administrator objects, where the key is the hospital ID and the value is the User object.
+     * @return A read-only, live view of all Administrator objects, where the key is the hospital ID and the value is the User object.
      */
-    public HashMap <String, User> getAllAdministrators(){
+    public Map<String, User> getAllAdministrators(){
         return this.getAllUsersByUserType("Administrator");
     }
 
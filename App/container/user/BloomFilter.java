@@ -0,0 +1,80 @@
+package App.container.user;
+
+/**
+ * A Bloom filter of strings, used to turn away keys that were never added without looking them up.
+ *
+ * The filter may answer "maybe" for a key that was not added, but never "no" for a key that was. Keys cannot be
+ * taken out again, so the owner rebuilds the filter once too many removed keys linger in it.
+ */
+class BloomFilter {
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+    private static final int MIN_BITS = 1 << 10;
+
+    private final long[] bits;
+    private final int mask;
+
+    /**
+     * Constructs an empty filter sized for the given number of keys, with a false positive rate of about 1%.
+     *
+     * @param expectedKeys The number of keys the filter is expected to hold.
+     */
+    BloomFilter(int expectedKeys) {
+        int size = Integer.highestOneBit(Math.max(MIN_BITS, expectedKeys * BITS_PER_KEY - 1)) << 1;
+        bits = new long[size >>> 6];
+        mask = size - 1;
+    }
+
+    /**
+     * Adds a key to the filter.
+     *
+     * @param key The key to add.
+     */
+    void add(String key) {
+        int hash1 = key.hashCode();
+        int hash2 = mix(hash1);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (hash1 + i * hash2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks whether a key may have been added to the filter.
+     *
+     * @param key The key to check.
+     * @return False if the key was certainly never added, true if it may have been.
+     */
+    boolean mightContain(String key) {
+        int hash1 = key.hashCode();
+        int hash2 = mix(hash1);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (hash1 + i * hash2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of keys the filter can hold before its false positive rate grows.
+     *
+     * @return The capacity of the filter.
+     */
+    int capacity() {
+        return (mask + 1) / BITS_PER_KEY;
+    }
+
+    /**
+     * Derives a second, independent hash from the first, kept odd so every probe lands on a different bit.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash | 1;
+    }
+}
@@ -0,0 +1,217 @@
+package App.container.user;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ConcurrentHashMap;
+
+import App.user.PasswordHasher;
+import App.user.User;
+
+/**
+ * Finds the user behind a hospital ID at login, whatever their role.
+ *
+ * The directory maps every hospital ID to a Credential holding the user, their user type and the container they
+ * belong to, so a login needs one lookup instead of asking every user container in turn. A Bloom filter in front of
+ * the map turns away unknown hospital IDs without a lookup.
+ *
+ * Passwords are checked with PasswordHasher, which is slow on purpose. Plain text and outdated hashes are replaced
+ * by a new hash when the user logs in, and logins verified in the last few minutes are remembered, so a user who
+ * logs in again soon after does not pay for the hash again. Whether the user still has the default password is
+ * worked out from the password entered at login, so it costs no second hash either.
+ *
+ * The containers given to the directory report every user they add or remove, so the directory stays in step with
+ * staff added or removed by administrators, and with journal replay.
+ *
+ * Lookups take no lock, so logins of several sessions do not wait for each other; changes are synchronized on the
+ * directory. The filter field is written again after every change to the filter, so a lookup that reads it also
+ * sees the bits set before.
+ */
+public class CredentialDirectory {
+    /**
+     * The password new users are given, which they are asked to change at their first login.
+     */
+    public static final String DEFAULT_PASSWORD = "password";
+    private static final byte[] DEFAULT_PASSWORD_BYTES = DEFAULT_PASSWORD.getBytes(StandardCharsets.UTF_8);
+
+    private final ConcurrentHashMap<String, Credential> credentials = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter = new BloomFilter(0);
+    private int removedSinceRebuild;
+    private final VerifiedSessionCache verifiedSessions = new VerifiedSessionCache();
+
+    /**
+     * The login details of one user.
+     */
+    public static class Credential {
+        private final User user;
+        private final UserContainer container;
+        private final boolean defaultPassword;
+
+        private Credential(User user, UserContainer container, boolean defaultPassword) {
+            this.user = user;
+            this.container = container;
+            this.defaultPassword = defaultPassword;
+        }
+
+        /**
+         * Gets the user.
+         *
+         * @return The user.
+         */
+        public User getUser() {
+            return user;
+        }
+
+        /**
+         * Gets the user type of the user, such as "Patient" or "Doctor".
+         *
+         * @return The user type.
+         */
+        public String getUserType() {
+            return user.getUserType();
+        }
+
+        /**
+         * Gets the container the user belongs to, through which their details are changed.
+         *
+         * @return The container of the user.
+         */
+        public UserContainer getContainer() {
+            return container;
+        }
+
+        /**
+         * Checks whether the user logged in with the default password. Only the credential returned by login
+         * knows this; the one returned by find always answers false.
+         *
+         * @return True if the password entered at login was the default password, otherwise false.
+         */
+        public boolean usesDefaultPassword() {
+            return defaultPassword;
+        }
+    }
+
+    /**
+     * Constructs a CredentialDirectory of all users in the given containers and keeps it in step with them.
+     * If a hospital ID already appears in several containers, the first container wins, like the login always did.
+     *
+     * @param containers The user containers, in the order they are searched.
+     */
+    public CredentialDirectory(UserContainer... containers) {
+        for (int i = containers.length - 1; i >= 0; i--) {
+            containers[i].setCredentialDirectory(this);
+        }
+    }
+
+    /**
+     * Finds the credential of a hospital ID.
+     *
+     * @param hospitalId The hospital ID entered at login.
+     * @return The credential, or null if no user has this hospital ID.
+     */
+    public Credential find(String hospitalId) {
+        if (hospitalId == null || !filter.mightContain(hospitalId)) {
+            return null;
+        }
+        return credentials.get(hospitalId);
+    }
+
+    /**
+     * Logs a user in: finds their credential and checks their password.
+     * A password stored as plain text or with an outdated hash is hashed again through the user's container,
+     * so the new hash is journaled and saved.
+     *
+     * @param hospitalId The hospital ID entered at login.
+     * @param password The password entered at login.
+     * @return The credential of the user, which tells whether the default password was used, or null if the
+     *         hospital ID is unknown or the password is wrong.
+     */
+    public Credential login(String hospitalId, String password) {
+        Credential credential = find(hospitalId);
+        if (credential == null || password == null) {
+            return null;
+        }
+        User user = credential.getUser();
+        String stored = user.getPassword();
+        if (verifiedSessions.contains(hospitalId, password, stored)) {
+            return loggedIn(credential, password);
+        }
+        if (!PasswordHasher.verify(password, stored)) {
+            return null;
+        }
+        if (PasswordHasher.needsRehash(stored)) {
+            credential.getContainer().updatePassword(user, password);
+            stored = user.getPassword();
+        }
+        verifiedSessions.put(hospitalId, password, stored);
+        return loggedIn(credential, password);
+    }
+
+    /**
+     * Gets the credential to return for a successful login. The entered password was just verified, so it is the
+     * user's password, and comparing it to the default password in constant time tells whether the user still has
+     * the default password.
+     */
+    private static Credential loggedIn(Credential credential, String password) {
+        if (MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), DEFAULT_PASSWORD_BYTES)) {
+            return new Credential(credential.user, credential.container, true);
+        }
+        return credential;
+    }
+
+    /**
+     * Gets the number of users in the directory.
+     *
+     * @return The number of users.
+     */
+    public int size() {
+        return credentials.size();
+    }
+
+    /**
+     * Records a user added to one of the containers.
+     *
+     * @param user The user that was added.
+     * @param container The container the user was added to.
+     */
+    synchronized void add(User user, UserContainer container) {
+        credentials.put(user.getHospitalId(), new Credential(user, container, false));
+        if (credentials.size() > filter.capacity()) {
+            rebuildFilter();
+        } else {
+            BloomFilter current = filter;
+            current.add(user.getHospitalId());
+            filter = current; // Publishes the new bits to lookups
+        }
+    }
+
+    /**
+     * Records a user removed from one of the containers. Entries that belong to another container are kept.
+     *
+     * @param hospitalId The hospital ID of the removed user.
+     * @param container The container the user was removed from.
+     */
+    synchronized void remove(String hospitalId, UserContainer container) {
+        Credential credential = credentials.get(hospitalId);
+        if (credential == null || credential.container != container) {
+            return;
+        }
+        credentials.remove(hospitalId);
+        verifiedSessions.remove(hospitalId);
+        // Removed IDs stay in the filter until it is rebuilt; they only cost a map lookup meanwhile
+        if (++removedSinceRebuild > credentials.size()) {
+            rebuildFilter();
+        }
+    }
+
+    /**
+     * Builds a new filter of the current hospital IDs, with room for the directory to double.
+     */
+    private void rebuildFilter() {
+        BloomFilter rebuilt = new BloomFilter(credentials.size() * 2);
+        for (String hospitalId : credentials.keySet()) {
+            rebuilt.add(hospitalId);
+        }
+        filter = rebuilt;
+        removedSinceRebuild = 0;
+    }
+}
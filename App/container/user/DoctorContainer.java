@@ -1,10 +1,20 @@
 package App.container.user;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
+import App.container.RowWriter;
+import App.container.Journal;
+import App.container.data.AppointmentContainer;
+import App.record.Appointment;
+import App.record.EpochMinutes;
+import App.record.Record;
 import App.user.Doctor;
 import App.user.User;
 
@@ -12,16 +22,35 @@ import App.user.User;
 /**
  * Container class for managing Doctor records.
  * Provides functionalities to load, retrieve, append, and export Doctor data.
+ *
+ * Besides the slots each Doctor keeps, the container indexes every available slot of every Doctor by its start
+ * time, so the earliest slot with any Doctor and the Doctors free at a given time are found in O(log n) of the
+ * number of distinct slot times. The index is kept up to date by the methods of this container, so slots must be
+ * added and removed through them. The index is a skip list of sorted arrays of hospital IDs; an array is never
+ * changed, but replaced by compare-and-set, so the index is searched without locking and Doctors changing their
+ * slots at the same time do not wait for each other.
+ *
+ * Changes to the slots of a Doctor are synchronized on the Doctor, not on the container, so bookings with different
+ * Doctors do not wait for each other. Patients book through holdSlot, bookSlot and rescheduleToSlot, and cancel
+ * through cancelBooking. A slot is held while the patient confirms, and is then claimed and turned into an
+ * appointment in one call. Claiming takes no lock, so of many patients booking at once, the one who claims a slot
+ * first gets it and the others are told at once that it is gone. Taking the slot and adding, moving or removing the
+ * appointment is then done as one step under the lock of the Doctor, and of the appointment if it already exists, and
+ * journaled as one entry (APPOINTMENT_BOOK, APPOINTMENT_RESCHEDULE or APPOINTMENT_CANCEL), so a crash never keeps one
+ * without the other. The entry is journaled before anything is changed: if the journal cannot take it, the claimed
+ * slot is given back and nothing else is undone. The AppointmentContainer is only locked for the short update of its
+ * maps. The journal sync is waited for after the locks are released.
  */
 public class DoctorContainer extends StaffContainer {
+    private final Set<String> changedAdditionals = ConcurrentHashMap.newKeySet();
+    private final ConcurrentSkipListMap<Long, String[]> doctorsBySlot = new ConcurrentSkipListMap<>(); // Sorted hospital IDs by slot start
 
     /**
-     * Constructs a DoctorContainer and loads doctors from the given CSV file.
-     * 
-     * @param filePath Path to the CSV file containing Doctor data.
+     * Constructs an empty DoctorContainer.
+     * Doctors are loaded from the staff CSV file by StaffLoader.
      */
-    public DoctorContainer(String filePath) {
-        super(filePath, "Doctor"); // Only import rows with userType "Doctor"
+    public DoctorContainer() {
+        super();
     }
 
     /**
@@ -36,9 +65,9 @@ public class DoctorContainer extends StaffContainer {
     /**
      * Retrieves all Doctors in the container.
      * 
-     * @return A HashMap containing all Doctor objects, where the key is the hospital ID and the value is the User object.
+     * @return A read-only, live view of all Doctor objects, where the key is the hospital ID and the value is the User object.
      */
-    public HashMap <String, User> getAllDoctors(){
+    public Map<String, User> getAllDoctors(){
         return this.getAllUsersByUserType("Doctor");
     }
 
@@ -52,24 +81,460 @@ public class DoctorContainer extends StaffContainer {
         return (Doctor) this.getUserByHospitalId(hospitalId);
     }
 
+    /**
+     * Adds an available slot to a Doctor.
+     * 
+     * @param doctor The Doctor to update.
+     * @param slot The slot to add, in the format "YYYY-MM-DD HH:MM".
+     * @return True if the slot was added, false if the Doctor already had it.
+     */
+    public boolean addAvailableSlot(Doctor doctor, String slot) {
+        long lsn;
+        synchronized (doctor) {
+            if (!doctor.addAvailableSlot(slot)) {
+                return false;
+            }
+            indexSlot(doctor, EpochMinutes.parse(slot));
+            changedAdditionals.add(doctor.getHospitalId());
+            lsn = journal(Journal.SLOT_ADD, doctor.getHospitalId(), slot);
+        }
+        awaitDurable(lsn);
+        return true;
+    }
+
+    /**
+     * Removes an available slot from a Doctor.
+     * 
+     * @param doctor The Doctor to update.
+     * @param slot The slot to remove.
+     * @return True if the slot was removed, false if the Doctor did not have it, for example because it was
+     *         booked in the meantime.
+     */
+    public boolean removeAvailableSlot(Doctor doctor, String slot) {
+        long lsn;
+        synchronized (doctor) {
+            if (!doctor.removeAvailableSlot(slot)) {
+                return false;
+            }
+            unindexSlot(doctor, EpochMinutes.parse(slot));
+            changedAdditionals.add(doctor.getHospitalId());
+            lsn = journal(Journal.SLOT_REMOVE, doctor.getHospitalId(), slot);
+        }
+        awaitDurable(lsn);
+        return true;
+    }
+
+    /**
+     * Holds an available slot of a Doctor for a patient while they confirm the booking.
+     * Other patients cannot book the slot until the hold is released or runs out after Availability.HOLD_SECONDS.
+     * 
+     * @param doctor The Doctor.
+     * @param slot The slot, in the format "YYYY-MM-DD HH:MM".
+     * @param patientHospitalId The hospital ID of the patient.
+     * @return True if the slot is now held for the patient, false if it is gone or held by someone else.
+     */
+    public boolean holdSlot(Doctor doctor, String slot, String patientHospitalId) {
+        return doctor.holdSlot(slot, patientHospitalId);
+    }
+
+    /**
+     * Releases the hold a patient has on a slot of a Doctor, for example because they did not confirm the booking.
+     * 
+     * @param doctor The Doctor.
+     * @param slot The slot that is held.
+     * @param patientHospitalId The hospital ID of the patient.
+     */
+    public void releaseSlotHold(Doctor doctor, String slot, String patientHospitalId) {
+        doctor.releaseSlotHold(slot, patientHospitalId);
+    }
+
+    /**
+     * Books a slot of a Doctor for a patient: claims the slot and creates a pending appointment for it.
+     * 
+     * @param doctor The Doctor.
+     * @param slot The slot, in the format "YYYY-MM-DD HH:MM".
+     * @param patientHospitalId The hospital ID of the patient.
+     * @param appointmentContainer The container the appointment is added to.
+     * @return True if the appointment was booked, false if the slot is gone or held by another patient.
+     */
+    public boolean bookSlot(Doctor doctor, String slot, String patientHospitalId, AppointmentContainer appointmentContainer) {
+        if (!doctor.claimSlot(slot, patientHospitalId)) { // Without a lock; of several patients, one gets the slot
+            return false;
+        }
+        long lsn;
+        try {
+            lsn = book(doctor, slot, patientHospitalId, Record.NEW_ID, appointmentContainer);
+        } catch (RuntimeException e) {
+            doctor.addAvailableSlot(slot); // The booking was not journaled, so only the claim is undone
+            throw e;
+        }
+        awaitDurable(lsn);
+        return true;
+    }
+
+    /**
+     * Takes a slot from a Doctor and creates a pending appointment for it, whether or not the slot is available,
+     * for example to replay a booking read back from the journal. Both are changed and journaled as one step.
+     * 
+     * @param doctor The Doctor.
+     * @param slot The slot, in the format "YYYY-MM-DD HH:MM".
+     * @param patientHospitalId The hospital ID of the patient.
+     * @param recordId The record ID of the appointment, or Record.NEW_ID to have a new one handed out.
+     * @param appointmentContainer The container the appointment is added to.
+     */
+    public void restoreBooking(Doctor doctor, String slot, String patientHospitalId, int recordId, AppointmentContainer appointmentContainer) {
+        awaitDurable(book(doctor, slot, patientHospitalId, recordId, appointmentContainer));
+    }
+
+    /**
+     * Moves an appointment to another slot of its Doctor: claims the new slot, reschedules the appointment, sets it
+     * back to pending and gives the old slot back to the Doctor.
+     * 
+     * @param doctor The Doctor of the appointment.
+     * @param appointment The appointment to move.
+     * @param slot The new slot, in the format "YYYY-MM-DD HH:MM".
+     * @param appointmentContainer The container of the appointment.
+     * @return True if the appointment was moved, false if the slot is gone or held by another patient, or the
+     *         appointment was cancelled in the meantime.
+     */
+    public boolean rescheduleToSlot(Doctor doctor, Appointment appointment, String slot, AppointmentContainer appointmentContainer) {
+        if (!doctor.claimSlot(slot, appointment.getpatientHospitalId())) {
+            return false;
+        }
+        long lsn;
+        try {
+            synchronized (doctor) {
+                synchronized (appointment) {
+                    if (appointmentContainer.getAppointment(appointment.getRecordId()) != appointment) {
+                        doctor.addAvailableSlot(slot); // Cancelled meanwhile; the claim was not journaled, so just undo it
+                        return false;
+                    }
+                    lsn = moveBooking(doctor, appointment, slot, appointmentContainer);
+                }
+            }
+        } catch (RuntimeException e) {
+            doctor.addAvailableSlot(slot); // The move was not journaled, so only the claim is undone
+            throw e;
+        }
+        awaitDurable(lsn);
+        return true;
+    }
+
+    /**
+     * Moves an appointment to another slot of its Doctor, whether or not the slot is available, for example to
+     * replay a rescheduling read back from the journal. The appointment and both slots are changed and journaled
+     * as one step.
+     * 
+     * @param doctor The Doctor of the appointment.
+     * @param appointment The appointment to move.
+     * @param slot The new slot, in the format "YYYY-MM-DD HH:MM".
+     * @param appointmentContainer The container of the appointment.
+     */
+    public void restoreReschedule(Doctor doctor, Appointment appointment, String slot, AppointmentContainer appointmentContainer) {
+        long lsn;
+        synchronized (doctor) {
+            synchronized (appointment) {
+                lsn = moveBooking(doctor, appointment, slot, appointmentContainer);
+            }
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Cancels an appointment and gives its slot back to the Doctor, as one step.
+     * 
+     * @param doctor The Doctor of the appointment.
+     * @param appointment The appointment to cancel.
+     * @param appointmentContainer The container of the appointment.
+     * @return True if the appointment was cancelled, false if it had already been removed.
+     */
+    public boolean cancelBooking(Doctor doctor, Appointment appointment, AppointmentContainer appointmentContainer) {
+        long lsn;
+        synchronized (doctor) {
+            synchronized (appointment) {
+                if (appointmentContainer.getAppointment(appointment.getRecordId()) != appointment) {
+                    return false;
+                }
+                lsn = journal(Journal.APPOINTMENT_CANCEL, appointment.getAppointmentIdentifyId());
+                appointmentContainer.deleteAppointment(appointment);
+                giveSlot(doctor, appointment.getTime());
+            }
+        }
+        awaitDurable(lsn);
+        return true;
+    }
+
+    /**
+     * Journals a booking, then takes the slot from the Doctor and adds the appointment. The appointment is journaled
+     * before it is added, so any change another session makes to it is journaled after the booking.
+     * 
+     * @return The log sequence number of the journal entry.
+     */
+    private long book(Doctor doctor, String slot, String patientHospitalId, int recordId, AppointmentContainer appointmentContainer) {
+        Appointment appointment = new Appointment(recordId, slot, patientHospitalId, doctor.getHospitalId(), "pending");
+        synchronized (doctor) {
+            long lsn = journal(Journal.APPOINTMENT_BOOK, doctor.getHospitalId(), slot, patientHospitalId, appointment.getRecordId());
+            takeSlot(doctor, slot);
+            appointmentContainer.insertAppointment(appointment);
+            return lsn;
+        }
+    }
+
+    /**
+     * Journals the move of an appointment to a slot as one entry, then moves it, takes the slot from the Doctor and
+     * gives the old slot back. Called while synchronized on the Doctor and on the appointment.
+     * 
+     * @return The log sequence number of the journal entry.
+     */
+    private long moveBooking(Doctor doctor, Appointment appointment, String slot, AppointmentContainer appointmentContainer) {
+        String previousSlot = appointment.getTime();
+        long lsn = journal(Journal.APPOINTMENT_RESCHEDULE, appointment.getAppointmentIdentifyId(), slot);
+        takeSlot(doctor, slot);
+        appointmentContainer.moveAppointment(appointment, slot);
+        giveSlot(doctor, previousSlot);
+        return lsn;
+    }
+
+    /**
+     * Removes a slot from a Doctor, if they still have it, and from the slot index. A slot claimed by a patient is
+     * already gone from the Doctor but still indexed until this is called. Called while synchronized on the Doctor.
+     */
+    private void takeSlot(Doctor doctor, String slot) {
+        doctor.removeAvailableSlot(slot);
+        unindexSlot(doctor, EpochMinutes.parse(slot));
+        changedAdditionals.add(doctor.getHospitalId());
+    }
+
+    /**
+     * Gives a slot back to a Doctor and indexes it, unless they already have it. Called while synchronized on the
+     * Doctor.
+     */
+    private void giveSlot(Doctor doctor, String slot) {
+        if (doctor.addAvailableSlot(slot)) {
+            indexSlot(doctor, EpochMinutes.parse(slot));
+            changedAdditionals.add(doctor.getHospitalId());
+        }
+    }
+
+    /**
+     * Puts a patient under the care of a Doctor.
+     * 
+     * @param doctor The Doctor to update.
+     * @param patientHospitalId The hospital ID of the patient.
+     */
+    public void addPatientUnderCare(Doctor doctor, String patientHospitalId) {
+        long lsn;
+        synchronized (doctor) {
+            doctor.addPatientUnderCare(patientHospitalId);
+            changedAdditionals.add(doctor.getHospitalId());
+            lsn = journal(Journal.PATIENT_UNDER_CARE_ADD, doctor.getHospitalId(), patientHospitalId);
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Adds a new Doctor with their stored password. The Doctor also gets a row of additional data.
+     * 
+     * @param staffId        The hospital ID of the Doctor.
+     * @param storedPassword The stored password of the Doctor.
+     * @param name           The name of the Doctor.
+     * @param gender         The gender of the Doctor.
+     * @param userType       The type of user.
+     * @param email          The email of the Doctor.
+     * @param age            The age of the Doctor.
+     * @return The log sequence number of the journal entry.
+     */
+    @Override
+    protected synchronized long putStaff(String staffId, String storedPassword, String name, String gender, String userType, String email, int age) {
+        long lsn = super.putStaff(staffId, storedPassword, name, gender, userType, email, age);
+        changedAdditionals.add(staffId);
+        return lsn;
+    }
+
+    /**
+     * Removes a Doctor, together with their additional data.
+     * 
+     * @param hospitalId The hospital ID of the Doctor to be removed.
+     * @return The log sequence number of the journal entry, or NOT_JOURNALED if no Doctor was removed.
+     */
+    @Override
+    protected synchronized long deleteUser(String hospitalId) {
+        User user = getUserByHospitalId(hospitalId);
+        if (user == null) {
+            return NOT_JOURNALED;
+        }
+        if (user instanceof Doctor) {
+            unindexSlots((Doctor) user);
+        }
+        long lsn = super.deleteUser(hospitalId);
+        changedAdditionals.add(hospitalId);
+        return lsn;
+    }
+
+    /**
+     * Adds a Doctor to the container and indexes their available slots.
+     * 
+     * @param user The Doctor to be added.
+     */
+    @Override
+    public synchronized void putUser(User user) {
+        User previous = getUserByHospitalId(user.getHospitalId());
+        if (previous instanceof Doctor) {
+            unindexSlots((Doctor) previous);
+        }
+        super.putUser(user);
+        if (user instanceof Doctor) {
+            for (long start : ((Doctor) user).getAvailability().getSlotsFrom(Long.MIN_VALUE)) {
+                indexSlot((Doctor) user, start);
+            }
+        }
+    }
+
+    /**
+     * Clears all Doctors and the slot index.
+     */
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        doctorsBySlot.clear();
+    }
+
+    /**
+     * Finds the earliest time at or after the given time at which any Doctor has an available slot.
+     * 
+     * @param fromMinute The earliest start, in minutes since 1970-01-01 00:00.
+     * @return The start of the slot, or EpochMinutes.UNKNOWN if no Doctor has a slot from then on.
+     */
+    public long getEarliestAvailableSlot(long fromMinute) {
+        Long start = doctorsBySlot.ceilingKey(fromMinute);
+        return start != null ? start : EpochMinutes.UNKNOWN;
+    }
+
+    /**
+     * Retrieves the Doctors that have an available slot starting at the given time.
+     * 
+     * @param startMinute The start of the slot, in minutes since 1970-01-01 00:00.
+     * @return A list of Doctors, ordered by hospital ID, empty if no Doctor is free at that time.
+     */
+    public List<Doctor> getDoctorsAvailableAt(long startMinute) {
+        List<Doctor> doctors = new ArrayList<>();
+        String[] hospitalIds = doctorsBySlot.get(startMinute);
+        if (hospitalIds != null) {
+            for (String hospitalId : hospitalIds) {
+                Doctor doctor = getDoctorByHospitalId(hospitalId);
+                if (doctor != null) { // Removed since the index was read
+                    doctors.add(doctor);
+                }
+            }
+        }
+        return doctors;
+    }
+
+    /**
+     * Records in the slot index that a Doctor is free at the given time. Slots that are not valid times are skipped.
+     * The array of the time is replaced by a copy with the Doctor added, retrying if another Doctor replaced it first.
+     */
+    private void indexSlot(Doctor doctor, long start) {
+        if (start == EpochMinutes.UNKNOWN) {
+            return;
+        }
+        String hospitalId = doctor.getHospitalId();
+        while (true) {
+            String[] hospitalIds = doctorsBySlot.get(start);
+            if (hospitalIds == null) {
+                if (doctorsBySlot.putIfAbsent(start, new String[] {hospitalId}) == null) {
+                    return;
+                }
+                continue;
+            }
+            int index = Arrays.binarySearch(hospitalIds, hospitalId);
+            if (index >= 0) {
+                return;
+            }
+            int at = -index - 1;
+            String[] added = new String[hospitalIds.length + 1];
+            System.arraycopy(hospitalIds, 0, added, 0, at);
+            added[at] = hospitalId;
+            System.arraycopy(hospitalIds, at, added, at + 1, hospitalIds.length - at);
+            if (doctorsBySlot.replace(start, hospitalIds, added)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes a Doctor from the slot index at the given time, dropping the time once no Doctor is free then.
+     * The array of the time is replaced by a copy without the Doctor, retrying if another Doctor replaced it first.
+     */
+    private void unindexSlot(Doctor doctor, long start) {
+        String hospitalId = doctor.getHospitalId();
+        while (true) {
+            String[] hospitalIds = doctorsBySlot.get(start);
+            int index = hospitalIds != null ? Arrays.binarySearch(hospitalIds, hospitalId) : -1;
+            if (index < 0) {
+                return;
+            }
+            if (hospitalIds.length == 1) {
+                if (doctorsBySlot.remove(start, hospitalIds)) {
+                    return;
+                }
+                continue;
+            }
+            String[] removed = new String[hospitalIds.length - 1];
+            System.arraycopy(hospitalIds, 0, removed, 0, index);
+            System.arraycopy(hospitalIds, index + 1, removed, index, removed.length - index);
+            if (doctorsBySlot.replace(start, hospitalIds, removed)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes all slots of a Doctor from the slot index.
+     */
+    private void unindexSlots(Doctor doctor) {
+        for (long start : doctor.getAvailability().getSlotsFrom(Long.MIN_VALUE)) {
+            unindexSlot(doctor, start);
+        }
+    }
+
+    /**
+     * Checks whether the additional data of any Doctor changed since the container was loaded or last exported.
+     * 
+     * @return True if the doctor additionals CSV file needs to be rewritten, otherwise false.
+     */
+    public boolean hasAdditionalChanges() {
+        return !changedAdditionals.isEmpty();
+    }
+
+    /**
+     * Forgets all recorded changes to doctors and their additional data, after the container has been exported.
+     */
+    @Override
+    public void clearChanges() {
+        super.clearChanges();
+        changedAdditionals.clear();
+    }
+
     /**
      * Exports additional information for each doctor, such as available slots and patients under care, to a CSV file.
      * 
      * @param doctorAdditionalPath Path to the CSV file where the additional data for doctors will be exported.
      */
     public void exportDoctorAdditionalsToCSV(String Doctor_Additional_Path) {
-        try (FileWriter writer = new FileWriter(Doctor_Additional_Path)) {
+        try (RowWriter writer = RowWriter.create(Doctor_Additional_Path)) {
             // Write header
-            writer.write("DoctorHospitalId,AvailableSlots,PatientsUnderCare\n");
+            writer.writeLine("DoctorHospitalId,AvailableSlots,PatientsUnderCare");
 
             // Write each doctor's additional data
-            for (Doctor doctor : getAllDoctors().values().stream().map(d -> (Doctor) d).collect(Collectors.toList())) {
-                String doctorId = doctor.getHospitalId();
-                String availableSlots = String.join(";", doctor.getAvailableSlots());
-                String patientsUnderCare = String.join(";", doctor.getAllPatientsUnderCare());
-
-                writer.write(String.format("%s,%s,%s\n", doctorId, availableSlots, patientsUnderCare));
+            for (User user : getAllDoctors().values()) {
+                Doctor doctor = (Doctor) user;
+                writer.field(doctor.getHospitalId())
+                    .field(doctor.getAvailableSlots(), ';')
+                    .field(doctor.getAllPatientsUnderCare(), ';')
+                    .endRow();
             }
+            writer.commit();
         } catch (IOException e) {
             e.printStackTrace();
         }
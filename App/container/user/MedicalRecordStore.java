@@ -0,0 +1,351 @@
+package App.container.user;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import App.container.CsvReader;
+import App.container.CsvWriter;
+import App.record.HospitalIdDictionary;
+import App.record.MedicalRecord;
+import App.record.Record;
+import App.record.RecordIdAllocator;
+
+/**
+ * Loads medical records from the medical record CSV file only when they are needed.
+ *
+ * On start only the position of each patient's row is read, not the diagnoses and treatments themselves. The
+ * positions are kept in a long array indexed by the HospitalIdDictionary.PATIENTS code of the patient, so the index holds no
+ * boxed values or keys. A record is built from its row the first time it is asked for and kept in a cache of limited
+ * size, where the least recently used records make room for new ones. Records that were changed are kept by their
+ * Patient instead, so they are never lost to the cache.
+ *
+ * The cache is split into STRIPES parts by hospital ID, each with its own lock and its own share of the size, so
+ * sessions looking up different patients rarely wait for each other. A record is read from the file outside any
+ * lock; if two sessions load the same record at once, both get the one that was cached first. A row is read with
+ * a single positional read into a small buffer of the reading thread, which only grows as far as the longest row
+ * read, so a miss never copies or maps more of the file than that row.
+ *
+ * The file stays open together with the row positions read from it, so the positions always match the file being
+ * read. The CSV file can be replaced while the store is in use, for example by a journal checkpoint. Rows of records
+ * that were not changed keep their contents, but they can move. Every row read is checked to belong to the patient
+ * asked for, and if it does not, the file is opened and its row positions are read again.
+ */
+class MedicalRecordStore {
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+    private static final int STRIPES = 16;
+    private static final long NO_ROW = -1;
+    private static final ThreadLocal<ByteBuffer> rowBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(256));
+
+    private final String filePath;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private volatile Index index = new Index(null, new long[0]); // Replaced as a whole, never changed
+    private final Object indexLock = new Object();
+
+    /**
+     * The row positions of one version of the file, together with the open file they were read from.
+     */
+    private static final class Index {
+        final FileChannel channel;  // null if the file does not exist
+        final long[] rowOffsets;    // By patient code; NO_ROW for patients without a row
+
+        Index(FileChannel channel, long[] rowOffsets) {
+            this.channel = channel;
+            this.rowOffsets = rowOffsets;
+        }
+
+        long offsetOf(String hospitalId) {
+            int code = HospitalIdDictionary.PATIENTS.find(hospitalId);
+            return code >= 0 && code < rowOffsets.length ? rowOffsets[code] : NO_ROW;
+        }
+    }
+
+    /**
+     * One part of the cache, holding the least recently used records of its hospital IDs.
+     */
+    private static final class Stripe {
+        private final LinkedHashMap<String, MedicalRecord> records;
+
+        Stripe(int capacity) {
+            records = new LinkedHashMap<String, MedicalRecord>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, MedicalRecord> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+
+    /**
+     * Constructs a MedicalRecordStore and reads the row position of every patient in the given file.
+     *
+     * @param filePath Path to the CSV file containing Medical Record data.
+     */
+    MedicalRecordStore(String filePath) {
+        this(filePath, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a MedicalRecordStore with a cache of the given size.
+     *
+     * @param filePath Path to the CSV file containing Medical Record data.
+     * @param cacheSize The largest number of loaded records kept in memory.
+     */
+    MedicalRecordStore(String filePath, int cacheSize) {
+        this.filePath = filePath;
+        int stripeCapacity = Math.max(1, (cacheSize + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+        buildIndex();
+    }
+
+    /**
+     * Opens the file and reads it once to record where the row of each patient starts.
+     * If a patient has several rows, the first one is used, as writeRows does. The file read before is closed;
+     * a thread still reading a row from it reads the row again from the new file. The high-water mark of medical
+     * record IDs is raised past the IDs stored in the file, so no record built later is handed one of them.
+     */
+    private void buildIndex() {
+        RecordIdAllocator recordIds = RecordIdAllocator.forType(MedicalRecord.class);
+        long[] offsets = new long[Math.max(16, HospitalIdDictionary.PATIENTS.size())];
+        Arrays.fill(offsets, NO_ROW);
+        FileChannel channel = null;
+        if (Files.exists(Paths.get(filePath))) {
+            try {
+                channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+                try (CsvReader reader = new CsvReader(filePath)) {
+                    reader.nextRow(); // Skip header line
+
+                    while (reader.nextRow()) {
+                        int code = HospitalIdDictionary.PATIENTS.encode(reader.getString(0));
+                        if (code >= offsets.length) {
+                            int length = offsets.length;
+                            offsets = Arrays.copyOf(offsets, Math.max(code + 1, length * 2));
+                            Arrays.fill(offsets, length, offsets.length, NO_ROW);
+                        }
+                        if (offsets[code] == NO_ROW) {
+                            offsets[code] = reader.getRowOffset();
+                        }
+                        recordIds.raiseHighWaterMark(reader.getRecordId(3) + 1L);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        Index old = index;
+        index = new Index(channel, offsets);
+        close(old);
+    }
+
+    /**
+     * Opens the file and reads the row positions again, unless another thread already did since the given
+     * positions were read.
+     */
+    private void rebuildIndex(Index stale) {
+        synchronized (indexLock) {
+            if (index == stale) {
+                buildIndex();
+            }
+        }
+    }
+
+    /**
+     * Gets the medical record of a patient, loading it from the file if it is not in the cache.
+     *
+     * @param hospitalId The hospital ID of the patient.
+     * @return The medical record, or an empty one if the file has no row for the patient.
+     */
+    MedicalRecord get(String hospitalId) {
+        Stripe stripe = stripes[(hospitalId.hashCode() & 0x7fffffff) % STRIPES];
+        synchronized (stripe) {
+            MedicalRecord record = stripe.records.get(hospitalId);
+            if (record != null) {
+                return record;
+            }
+        }
+        MedicalRecord loaded = load(hospitalId);
+        synchronized (stripe) {
+            MedicalRecord cached = stripe.records.putIfAbsent(hospitalId, loaded);
+            return cached != null ? cached : loaded;
+        }
+    }
+
+    /**
+     * Builds the medical record of a patient from their row in the file.
+     */
+    private MedicalRecord load(String hospitalId) {
+        Index current = index;
+        MedicalRecord record = readRow(current, hospitalId);
+        if (record == null && current.offsetOf(hospitalId) != NO_ROW) {
+            rebuildIndex(current); // The file was replaced and the row moved, so look it up again
+            record = readRow(index, hospitalId);
+        }
+        return record != null ? record : new MedicalRecord(hospitalId);
+    }
+
+    /**
+     * Reads the row recorded for a patient with positional reads into the buffer of the calling thread.
+     *
+     * @return The medical record, or null if there is no row at the recorded position that belongs to the patient.
+     */
+    private MedicalRecord readRow(Index current, String hospitalId) {
+        long offset = current.offsetOf(hospitalId);
+        if (offset == NO_ROW || current.channel == null) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = rowBuffer.get();
+            buffer.clear();
+            int end;
+            while (true) {
+                int scanned = buffer.position();
+                int read = current.channel.read(buffer, offset + scanned);
+                end = indexOf(buffer, scanned, '\n');
+                if (end >= 0 || read < 0) {
+                    end = end >= 0 ? end : buffer.position();
+                    break;
+                }
+                if (!buffer.hasRemaining()) {
+                    // The row is longer than the buffer, so keep what was read in a buffer twice the size
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                    rowBuffer.set(buffer);
+                }
+            }
+            if (end > 0 && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            String[] fields = splitFields(new String(buffer.array(), 0, end, StandardCharsets.UTF_8));
+            if (!fields[0].equals(hospitalId)) {
+                return null;
+            }
+            int recordId = fields[3].isEmpty() ? Record.NEW_ID : Integer.parseInt(fields[3]);
+            return new MedicalRecord(recordId, hospitalId, splitList(fields[1]), splitList(fields[2]));
+        } catch (ClosedChannelException e) {
+            return null; // The index was rebuilt while reading, so the caller reads the row from the new file
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds a byte among the bytes already read into a buffer.
+     *
+     * @return The index of the first such byte at or after from, or -1 if there is none.
+     */
+    private static int indexOf(ByteBuffer buffer, int from, char b) {
+        byte[] bytes = buffer.array();
+        for (int i = from; i < buffer.position(); i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Splits a row into its first four fields, trimmed of spaces and tabs like CsvReader does.
+     * Missing fields are empty, such as the record ID of a row written before record IDs were stored.
+     */
+    private static String[] splitFields(String row) {
+        String[] fields = { "", "", "", "" };
+        int fieldStart = 0;
+        for (int field = 0; field < fields.length && fieldStart <= row.length(); field++) {
+            int fieldEnd = row.indexOf(',', fieldStart);
+            if (fieldEnd < 0) {
+                fieldEnd = row.length();
+            }
+            fields[field] = trim(row, fieldStart, fieldEnd);
+            fieldStart = fieldEnd + 1;
+        }
+        return fields;
+    }
+
+    private static String trim(String row, int start, int end) {
+        while (start < end && (row.charAt(start) == ' ' || row.charAt(start) == '\t')) start++;
+        while (end > start && (row.charAt(end - 1) == ' ' || row.charAt(end - 1) == '\t')) end--;
+        return row.substring(start, end);
+    }
+
+    /**
+     * Splits a field holding a semicolon-separated list. Empty entries at the end of the list are dropped,
+     * as CsvReader.getList does.
+     */
+    private static ArrayList<String> splitList(String field) {
+        ArrayList<String> entries = new ArrayList<>();
+        int entryStart = 0;
+        for (int i = 0; i <= field.length(); i++) {
+            if (i == field.length() || field.charAt(i) == ';') {
+                entries.add(field.substring(entryStart, i));
+                entryStart = i + 1;
+            }
+        }
+        while (!entries.isEmpty() && entries.get(entries.size() - 1).isEmpty()) {
+            entries.remove(entries.size() - 1);
+        }
+        return entries;
+    }
+
+    /**
+     * Closes the file of an index that was replaced.
+     */
+    private static void close(Index replaced) {
+        if (replaced.channel != null) {
+            try {
+                replaced.channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Copies the rows of the given patients from the file to a writer, without building their records.
+     * Patients without a row in the file are written with an empty record. Rows without a record ID, and empty
+     * records, are written with the ID of the record this store hands out for the patient.
+     *
+     * @param hospitalIds The hospital IDs of the patients to write.
+     * @param writer The writer of the new medical record file.
+     * @throws IOException If the file cannot be read or the new file cannot be written.
+     */
+    void writeRows(HashSet<String> hospitalIds, CsvWriter writer) throws IOException {
+        HashSet<String> remaining = new HashSet<>(hospitalIds);
+        if (Files.exists(Paths.get(filePath))) {
+            try (CsvReader reader = new CsvReader(filePath)) {
+                reader.nextRow(); // Skip header line
+
+                while (reader.nextRow()) {
+                    String hospitalId = reader.getString(0);
+                    if (remaining.remove(hospitalId)) {
+                        int recordId = reader.getRecordId(3);
+                        writer.field(hospitalId)
+                            .field(reader.getList(1, ';'), ';')
+                            .field(reader.getList(2, ';'), ';')
+                            .field(recordId != Record.NEW_ID ? recordId : get(hospitalId).getRecordId())
+                            .endRow();
+                    }
+                }
+            }
+        }
+        for (String hospitalId : remaining) {
+            writer.field(hospitalId).field("").field("").field(get(hospitalId).getRecordId()).endRow();
+        }
+    }
+}
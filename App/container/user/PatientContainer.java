@@ -1,11 +1,15 @@
 package App.container.user;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import App.container.CsvWriter;
+import App.container.RowReader;
+import App.container.RowWriter;
+import App.container.Journal;
 import App.user.Patient;
 import App.user.User;
 
@@ -14,34 +18,31 @@ import App.user.User;
  * Provides functionalities to load, retrieve, and export Patient data.
  */
 public class PatientContainer extends UserContainer {
+    private final Set<String> changedMedicalRecords = ConcurrentHashMap.newKeySet();
+    private final MedicalRecordStore medicalRecordStore;
 
     /**
      * Constructs a PatientContainer and loads patients from the given CSV file.
+     * Medical records are not loaded here; each one is read from its file when it is first needed.
      * 
      * @param filePath Path to the CSV file containing Patient data.
      * @param medicalRecordPath Path to the CSV file containing Medical Record data.
      */
     public PatientContainer(String filePath, String medicalRecordPath) {
         super();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            boolean isHeader = true; // Flag to skip the header line
+        medicalRecordStore = new MedicalRecordStore(medicalRecordPath);
+        try (RowReader reader = RowReader.open(filePath)) {
+            reader.nextRow(); // Skip the first line (header)
             
-            while ((line = br.readLine()) != null) {
-                if (isHeader) {
-                    isHeader = false; // Skip the first line (header)
-                    continue;
-                }
+            while (reader.nextRow()) {
+                String hospitalId = reader.getString(0);      // "Patient ID"
+                String password = reader.getString(1);        // "Password"
+                String name = reader.getString(2);            // "Name"
+                String dateOfBirth = reader.getString(3);     // "Date of Birth"
+                String gender = reader.getId(4);              // "Gender"
+                String bloodType = reader.getId(5);           // "Blood Type"
+                String email = reader.getString(6);           // "Contact Information"
 
-                String[] fields = line.split(",");
-                String hospitalId = fields[0].trim();         // "Patient ID"
-                String password = fields[1].trim();           // "Password"
-                String name = fields[2].trim();               // "Name"
-                String dateOfBirth = fields[3].trim();        // "Date of Birth"
-                String gender = fields[4].trim();             // "Gender"
-                String bloodType = fields[5].trim();          // "Blood Type"
-                String email = fields[6].trim();              // "Contact Information"
-                
                 Patient patient = new Patient(
                     hospitalId,
                     password,           // Use password from CSV
@@ -52,7 +53,7 @@ public class PatientContainer extends UserContainer {
                     dateOfBirth,
                     "",                 // Phone number (not provided in the CSV)
                     bloodType,
-                    medicalRecordPath
+                    medicalRecordStore::get
                 );
                 
                 putUser(patient);
@@ -66,9 +67,9 @@ public class PatientContainer extends UserContainer {
     /**
      * Retrieves all Patients in the container.
      * 
-     * @return A HashMap containing all Patient objects, where the key is the hospital ID and the value is the User object.
+     * @return A read-only, live view of all Patient objects, where the key is the hospital ID and the value is the User object.
      */
-    public HashMap <String, User> getAllPatients(){
+    public Map<String, User> getAllPatients(){
         return this.getAllUsersByUserType("Patient");
     }
 
@@ -82,6 +83,88 @@ public class PatientContainer extends UserContainer {
         return (Patient) this.getUserByHospitalId(hospitalId);
     }
 
+    /**
+     * Changes the contact email of a Patient.
+     * 
+     * @param patient The Patient to update.
+     * @param email The new email.
+     */
+    public void updateEmail(Patient patient, String email) {
+        long lsn;
+        synchronized (patient) {
+            patient.setEmail(email);
+            markChanged(patient.getHospitalId());
+            lsn = journal(Journal.PATIENT_EMAIL, patient.getHospitalId(), email);
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Adds a diagnosis to the medical record of a Patient.
+     * 
+     * @param patient The Patient to update.
+     * @param diagnosis The diagnosis to add.
+     */
+    public void addDiagnosis(Patient patient, String diagnosis) {
+        long lsn;
+        synchronized (patient) {
+            patient.addDiagnose(diagnosis);
+            changedMedicalRecords.add(patient.getHospitalId());
+            lsn = journal(Journal.DIAGNOSIS_ADD, patient.getHospitalId(), diagnosis);
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Adds a treatment to the medical record of a Patient.
+     * 
+     * @param patient The Patient to update.
+     * @param treatment The treatment to add.
+     */
+    public void addTreatment(Patient patient, String treatment) {
+        long lsn;
+        synchronized (patient) {
+            patient.addTreatment(treatment);
+            changedMedicalRecords.add(patient.getHospitalId());
+            lsn = journal(Journal.TREATMENT_ADD, patient.getHospitalId(), treatment);
+        }
+        awaitDurable(lsn);
+    }
+
+
+    /**
+     * Removes a Patient, together with their medical record.
+     * 
+     * @param hospitalId The hospital ID of the Patient to be removed.
+     * @return The log sequence number of the journal entry, or NOT_JOURNALED if no Patient was removed.
+     */
+    @Override
+    protected synchronized long deleteUser(String hospitalId) {
+        if (getUserByHospitalId(hospitalId) == null) {
+            return NOT_JOURNALED;
+        }
+        long lsn = super.deleteUser(hospitalId);
+        changedMedicalRecords.add(hospitalId);
+        return lsn;
+    }
+
+    /**
+     * Checks whether any medical record changed since the container was loaded or last exported.
+     * 
+     * @return True if the medical record CSV file needs to be rewritten, otherwise false.
+     */
+    public boolean hasMedicalRecordChanges() {
+        return !changedMedicalRecords.isEmpty();
+    }
+
+    /**
+     * Forgets all recorded changes to patients and medical records, after the container has been exported.
+     */
+    @Override
+    public void clearChanges() {
+        super.clearChanges();
+        changedMedicalRecords.clear();
+    }
 
     /**
      * Exports all patient data to a CSV file.
@@ -89,25 +172,26 @@ public class PatientContainer extends UserContainer {
      * @param outputFilePath Path to the CSV file where the patient data will be exported.
      */
     public void exportPatientsToCSV(String output_filePath) {
-        try (FileWriter writer = new FileWriter(output_filePath)) {
+        try (RowWriter writer = RowWriter.create(output_filePath)) {
             // Write the header
-            writer.write("Patient ID,Password,Name,Date of Birth,Gender,Blood Type,Contact Information\n");
+            writer.writeLine("Patient ID,Password,Name,Date of Birth,Gender,Blood Type,Contact Information");
 
             // Get all patients
-            HashMap<String, User> patients = getAllPatients();
+            Map<String, User> patients = getAllPatients();
             for (User user : patients.values()) {
                 if (user instanceof Patient) {
                     Patient patient = (Patient) user;
-                    writer.write(String.format("%s,%s,%s,%s,%s,%s,%s\n",
-                        patient.getHospitalId(),
-                        patient.getPassword(),
-                        patient.getName(),
-                        patient.getDateOfBirth(),
-                        patient.getGender(),
-                        patient.getBloodType(),
-                        patient.getEmail()));
+                    writer.field(patient.getHospitalId())
+                        .field(patient.getPassword())
+                        .field(patient.getName())
+                        .field(patient.getDateOfBirth())
+                        .id(patient.getGender())
+                        .id(patient.getBloodType())
+                        .field(patient.getEmail())
+                        .endRow();
                 }
             }
+            writer.commit();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -115,25 +199,32 @@ public class PatientContainer extends UserContainer {
 
     /**
      * Exports all medical records for patients to a CSV file.
+     * Records that were changed are written from memory; all others are copied from the current file,
+     * so exporting does not load every record. The file has no binary snapshot, as records are read from it by position.
      * 
      * @param medicalRecordPath Path to the CSV file where the medical record data will be exported.
      */
     public void exportMedicalRecordsToCSV(String medicalRecordPath) {
-        try (FileWriter writer = new FileWriter(medicalRecordPath)) {
+        try (CsvWriter writer = new CsvWriter(medicalRecordPath)) {
             // Write header
-            writer.write("PatientHospitalId,Diagnoses,Treatments\n");
+            writer.writeLine("PatientHospitalId,Diagnoses,Treatments,RecordId");
 
-            // Write each patient's medical record
+            // Write each changed medical record, with diagnoses and treatments as semicolon-separated lists
+            HashSet<String> unchanged = new HashSet<>();
             for (User user : getAllPatients().values()) {
                 Patient patient = (Patient) user;
-                String patientId = patient.getHospitalId();
-                
-                // Join diagnoses and treatments into comma-separated lists
-                String diagnoses = String.join(";", patient.getDiagnoses());
-                String treatments = String.join(";", patient.getTreatments());
-                
-                writer.write(String.format("%s,%s,%s\n", patientId, diagnoses, treatments));
+                if (!patient.isMedicalRecordPinned()) {
+                    unchanged.add(patient.getHospitalId());
+                    continue;
+                }
+                writer.field(patient.getHospitalId())
+                    .field(patient.getDiagnoses(), ';')
+                    .field(patient.getTreatments(), ';')
+                    .field(patient.getMedicalRecord().getRecordId())
+                    .endRow();
             }
+            medicalRecordStore.writeRows(unchanged, writer);
+            writer.commit();
         } catch (IOException e) {
             e.printStackTrace();
         }
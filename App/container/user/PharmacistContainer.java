@@ -1,6 +1,6 @@
 package App.container.user;
 
-import java.util.HashMap;
+import java.util.Map;
 
 import App.user.Pharmacist;
 import App.user.User;
@@ -12,12 +12,11 @@ import App.user.User;
 public class PharmacistContainer extends StaffContainer {
 
     /**
-     * Constructs a PharmacistContainer and loads Pharmacists from the given CSV file.
-     * 
-     * @param filePath Path to the CSV file containing Pharmacist data.
+     * Constructs an empty PharmacistContainer.
+     * Pharmacists are loaded from the staff CSV file by StaffLoader.
      */
-    public PharmacistContainer(String filePath) {
-        super(filePath, "Pharmacist"); // Only import rows with userType "Pharmacist"
+    public PharmacistContainer() {
+        super();
     }
 
     /**
@@ -32,9 +31,9 @@ public class PharmacistContainer extends StaffContainer {
     /**
      * Retrieves all Pharmacists in the container.
      * 
-     * @return A HashMap containing all Pharmacist objects, where the key is the hospital ID and the value is the User object.
+     * @return A read-only, live view of all Pharmacist objects, where the key is the hospital ID and the value is the User object.
      */
-    public HashMap <String, User> getAllPharmacists(){
+    public Map<String, User> getAllPharmacists(){
         return this.getAllUsersByUserType("Pharmacist");
     }
 
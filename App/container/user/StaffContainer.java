@@ -1,16 +1,16 @@
 package App.container.user;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.List;
-import java.util.stream.Collectors;
 
+import App.container.CsvWriter;
+import App.container.Journal;
+import App.container.RowWriter;
 import App.user.Administrator;
 import App.user.Doctor;
+import App.user.PasswordHasher;
 import App.user.Pharmacist;
 import App.user.Staff;
+import App.user.User;
 
 
 /**
@@ -18,54 +18,21 @@ import App.user.Staff;
  * Provides functionalities to load, retrieve, add, and export Staff data.
  */
 public class StaffContainer extends UserContainer {
+    private static final String STAFF_HEADER = "Staff ID,Password,Name,Role,Gender,Age";
 
     /**
-     * Constructs a StaffContainer and loads staff from the given CSV file.
-     * 
-     * @param filePath Path to the CSV file containing staff data.
-     * @param userType The type of user to be loaded (e.g., "Doctor", "Pharmacist", "Administrator").
+     * Constructs an empty StaffContainer.
+     * Staff rows are loaded into the containers of each role by StaffLoader.
      */
-    public StaffContainer(String filePath, String userType) {
+    public StaffContainer() {
         super();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            boolean isHeader = true; // Flag to skip the header line
-
-            while ((line = br.readLine()) != null) {
-                if (isHeader) {
-                    isHeader = false; // Skip the first line (header)
-                    continue;
-                }
-
-                String[] fields = line.split(",");
-                String staffId = fields[0].trim();       // "Staff ID"
-                String password = fields[1].trim();      // "Password"
-                String name = fields[2].trim();          // "Name"
-                String rowUserType = fields[3].trim();   // "Role"
-                String gender = fields[4].trim();        // "Gender"
-                int age = Integer.parseInt(fields[5].trim()); // "Age"
-                
-                // Create and add the correct subclass based on role type
-                if (rowUserType.equalsIgnoreCase("Doctor")) {
-                    putUser(new Doctor(staffId, password, name, gender, rowUserType, "", age));
-                } else if (rowUserType.equalsIgnoreCase("Pharmacist")) {
-                    putUser(new Pharmacist(staffId, password, name, gender, rowUserType, "", age));
-                } else if (rowUserType.equalsIgnoreCase("Administrator")) {
-                    putUser(new Administrator(staffId, password, name, gender, rowUserType, "", age));
-                } else {
-                    System.out.println("Skipping unrecognized role: " + rowUserType);
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
     }
 
     /**
-     * Adds a new staff member to the container.
+     * Adds a new staff member to the container. Only a salted hash of the password is kept, saved and journaled.
      * 
      * @param staffId  The hospital ID of the staff.
-     * @param password The password of the staff.
+     * @param password The password of the staff, in plain text.
      * @param name     The name of the staff.
      * @param gender   The gender of the staff.
      * @param userType The type of user (e.g., Doctor, Pharmacist, Administrator).
@@ -73,14 +40,59 @@ public class StaffContainer extends UserContainer {
      * @param age      The age of the staff.
      */
     public void addStaff(String staffId, String password, String name, String gender, String userType, String email, int age) {
+        // Hashing is slow on purpose, so it is done before the container is locked
+        restoreStaff(staffId, PasswordHasher.hash(password), name, gender, userType, email, age);
+    }
+
+    /**
+     * Adds a staff member with their stored password as it is, for example a hash read back from the journal.
+     * 
+     * @param staffId        The hospital ID of the staff.
+     * @param storedPassword The stored password, as returned by User.getPassword().
+     * @param name           The name of the staff.
+     * @param gender         The gender of the staff.
+     * @param userType       The type of user (e.g., Doctor, Pharmacist, Administrator).
+     * @param email          The email of the staff.
+     * @param age            The age of the staff.
+     */
+    public void restoreStaff(String staffId, String storedPassword, String name, String gender, String userType, String email, int age) {
+        awaitDurable(putStaff(staffId, storedPassword, name, gender, userType, email, age));
+    }
+
+    /**
+     * Adds a staff member and journals the addition, without waiting for the entry to be on disk.
+     * The parameters are those of restoreStaff.
+     * 
+     * @return The log sequence number of the journal entry, or NOT_JOURNALED if the user type is not a staff type.
+     */
+    protected synchronized long putStaff(String staffId, String storedPassword, String name, String gender, String userType, String email, int age) {
         if (userType.equalsIgnoreCase("Doctor")) {
-            putUser(new Doctor(staffId, password, name, gender, userType, email, age));
+            putUser(new Doctor(staffId, storedPassword, name, gender, userType, email, age));
         } else if (userType.equalsIgnoreCase("Pharmacist")) {
-            putUser(new Pharmacist(staffId, password, name, gender, userType, email, age));
+            putUser(new Pharmacist(staffId, storedPassword, name, gender, userType, email, age));
         } else if (userType.equalsIgnoreCase("Administrator")) {
-            putUser(new Administrator(staffId, password, name, gender, userType, email, age));
+            putUser(new Administrator(staffId, storedPassword, name, gender, userType, email, age));
         } else {
+            return NOT_JOURNALED;
         }
+        markChanged(staffId);
+        return journal(Journal.STAFF_ADD, staffId, storedPassword, name, gender, userType, email, age);
+    }
+
+    /**
+     * Changes the age of a staff member.
+     * 
+     * @param staff The staff member to update.
+     * @param age The new age.
+     */
+    public void updateAge(Staff staff, int age) {
+        long lsn;
+        synchronized (staff) {
+            staff.setAge(age);
+            markChanged(staff.getHospitalId());
+            lsn = journal(Journal.STAFF_AGE, staff.getHospitalId(), age);
+        }
+        awaitDurable(lsn);
     }
 
     /**
@@ -89,9 +101,10 @@ public class StaffContainer extends UserContainer {
      * @param filePath Path to the CSV file that will be initialized.
      */
     public void initializeStaffCSV(String filePath) {
-        try (FileWriter writer = new FileWriter(filePath)) {
+        try (CsvWriter writer = new CsvWriter(filePath)) {
             // Write the header
-            writer.write("Staff ID,Password,Name,Role,Gender,Age\n");
+            writer.writeLine(STAFF_HEADER);
+            writer.commit();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -104,40 +117,55 @@ public class StaffContainer extends UserContainer {
      * @param staffType The type of staff to be appended (e.g., "doctor", "pharmacist").
      */
     public void appendStaffToCSVByStaffType(String filePath, String staffType) {
-        try (FileWriter writer = new FileWriter(filePath, true)) { // `true` enables appending mode
-            List<Staff> staffList = getAllUsersByUserType(staffType).values().stream()
-                .map(user -> (Staff) user)
-                .collect(Collectors.toList());
-
-            for (Staff staff : staffList) {
-                writeStaffToCSV(writer, staff, staffType);
-            }
+        try (CsvWriter writer = new CsvWriter(filePath, true)) {
+            writeStaffToCSV(writer, staffType);
+            writer.commit();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Exports all doctors, pharmacists and administrators to the staff CSV file in a single pass.
+     * 
+     * @param filePath Path to the staff CSV file.
+     * @param doctorContainer The container holding all doctors.
+     * @param pharmacistContainer The container holding all pharmacists.
+     * @param administratorContainer The container holding all administrators.
+     */
+    public static void exportStaffToCSV(String filePath, DoctorContainer doctorContainer,
+            PharmacistContainer pharmacistContainer, AdministratorContainer administratorContainer) {
+        try (RowWriter writer = RowWriter.create(filePath)) {
+            // Write the header
+            writer.writeLine(STAFF_HEADER);
+
+            doctorContainer.writeStaffToCSV(writer, "Doctor");
+            pharmacistContainer.writeStaffToCSV(writer, "Pharmacist");
+            administratorContainer.writeStaffToCSV(writer, "Administrator");
+            writer.commit();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
     /**
-     * Helper method to write individual staff entries to a CSV file.
+     * Helper method to write the entries of all staff of one type to a CSV file.
      * 
-     * @param writer The FileWriter to write the data to the CSV file.
-     * @param staff The Staff object containing the staff's information.
+     * @param writer The writer to write the data to the CSV file.
      * @param role The role of the staff (e.g., Doctor, Pharmacist).
      * @throws IOException If there is an error writing to the file.
      */
-    private void writeStaffToCSV(FileWriter writer, Staff staff, String role) throws IOException {
-        writer.write(
-            String.format(
-                "%s,%s,%s,%s,%s,%d\n",
-                staff.getHospitalId(),
-                staff.getPassword(),
-                staff.getName(),
-                role,
-                staff.getGender(),
-                staff.getAge()
-            )
-        );
+    void writeStaffToCSV(RowWriter writer, String role) throws IOException {
+        for (User user : getAllUsersByUserType(role).values()) {
+            Staff staff = (Staff) user;
+            writer.field(staff.getHospitalId())
+                .field(staff.getPassword())
+                .field(staff.getName())
+                .id(role)
+                .id(staff.getGender())
+                .field(staff.getAge())
+                .endRow();
+        }
     }
 
 }
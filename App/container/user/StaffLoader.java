@@ -0,0 +1,122 @@
+package App.container.user;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import App.container.RowReader;
+import App.user.Administrator;
+import App.user.Doctor;
+import App.user.Pharmacist;
+
+
+/**
+ * Loads the staff CSV file once and partitions its rows into the Doctor, Pharmacist and Administrator containers.
+ * Doctor-specific data (available slots and patients under care) is read once into maps before the staff rows are parsed.
+ */
+public class StaffLoader {
+    private final DoctorContainer doctorContainer;
+    private final PharmacistContainer pharmacistContainer;
+    private final AdministratorContainer administratorContainer;
+    private final HashMap<String, List<String>> availableSlots = new HashMap<>();
+    private final HashMap<String, List<String>> patientsUnderCare = new HashMap<>();
+
+    /**
+     * Constructs a StaffLoader and loads every staff member into the container for their role.
+     *
+     * @param staffPath Path to the CSV file containing staff data.
+     * @param doctorAdditionalsPath Path to the CSV file containing the available slots and patients under care of each doctor.
+     */
+    public StaffLoader(String staffPath, String doctorAdditionalsPath) {
+        doctorContainer = new DoctorContainer();
+        pharmacistContainer = new PharmacistContainer();
+        administratorContainer = new AdministratorContainer();
+        loadDoctorAdditionals(doctorAdditionalsPath);
+        loadStaff(staffPath);
+    }
+
+    /**
+     * Reads the doctor additionals CSV file in a single pass.
+     *
+     * @param filePath Path to the doctor additionals CSV file.
+     */
+    private void loadDoctorAdditionals(String filePath) {
+        try (RowReader reader = RowReader.open(filePath)) {
+            reader.nextRow(); // Skip header
+
+            while (reader.nextRow()) {
+                String hospitalId = reader.getString(0);
+                if (!availableSlots.containsKey(hospitalId)) { // Keep the first row of each doctor
+                    availableSlots.put(hospitalId, reader.getList(1, ';'));
+                    patientsUnderCare.put(hospitalId, reader.getList(2, ';'));
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads the staff CSV file in a single pass and puts each row only into the container for its role.
+     *
+     * @param filePath Path to the staff CSV file.
+     */
+    private void loadStaff(String filePath) {
+        try (RowReader reader = RowReader.open(filePath)) {
+            reader.nextRow(); // Skip the first line (header)
+
+            while (reader.nextRow()) {
+                String staffId = reader.getString(0);     // "Staff ID"
+                String password = reader.getString(1);    // "Password"
+                String name = reader.getString(2);        // "Name"
+                String rowUserType = reader.getId(3);     // "Role"
+                String gender = reader.getId(4);          // "Gender"
+                int age = reader.getInt(5);               // "Age"
+
+                // Create the correct subclass and route it to the container for its role
+                if (rowUserType.equalsIgnoreCase("Doctor")) {
+                    List<String> slots = availableSlots.remove(staffId);
+                    List<String> patients = patientsUnderCare.remove(staffId);
+                    doctorContainer.putUser(new Doctor(staffId, password, name, gender, rowUserType, "", age,
+                        slots != null ? slots : new ArrayList<>(), patients != null ? patients : new ArrayList<>()));
+                } else if (rowUserType.equalsIgnoreCase("Pharmacist")) {
+                    pharmacistContainer.putUser(new Pharmacist(staffId, password, name, gender, rowUserType, "", age));
+                } else if (rowUserType.equalsIgnoreCase("Administrator")) {
+                    administratorContainer.putUser(new Administrator(staffId, password, name, gender, rowUserType, "", age));
+                } else {
+                    System.out.println("Skipping unrecognized role: " + rowUserType);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the container holding all loaded doctors.
+     *
+     * @return The DoctorContainer.
+     */
+    public DoctorContainer getDoctorContainer() {
+        return doctorContainer;
+    }
+
+    /**
+     * Gets the container holding all loaded pharmacists.
+     *
+     * @return The PharmacistContainer.
+     */
+    public PharmacistContainer getPharmacistContainer() {
+        return pharmacistContainer;
+    }
+
+    /**
+     * Gets the container holding all loaded administrators.
+     *
+     * @return The AdministratorContainer.
+     */
+    public AdministratorContainer getAdministratorContainer() {
+        return administratorContainer;
+    }
+}
@@ -1,22 +1,116 @@
 package App.container.user;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import App.container.Container;
+import App.container.Journal;
+import App.user.PasswordHasher;
 import App.user.User;
 
 /**
  * Container class for managing User records.
  * Provides functionalities to add, retrieve, and manage user data.
+ *
+ * Besides the map of all users by hospital ID, users are kept in one map per user type, so the users of a type
+ * and their number are available without going through everyone else. A user is filed under the user type they
+ * have when they are put into the container.
+ *
+ * The maps are concurrent, so sessions can look users up without locking. Every method that adds or removes users
+ * is synchronized on the container, including those of subclasses, so the map of all users and the maps per type
+ * always agree. Changes to the details of one user are synchronized on the user instead.
  */
 public class UserContainer implements Container {
-    private final HashMap<String, User> users;
+    protected static final long NOT_JOURNALED = -1; // Returned when no journal is attached or nothing was changed
+
+    private final ConcurrentHashMap<String, User> users;
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, User>> usersByType = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Map<String, User>> usersByTypeViews = new ConcurrentHashMap<>();
+    private volatile Journal journal;
+    private volatile CredentialDirectory credentialDirectory;
+    private final Set<Object> changedKeys = ConcurrentHashMap.newKeySet();
 
     /**
      * Constructs a UserContainer to manage user records.
      */
     public UserContainer() {
-        users = new HashMap<>();
+        users = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Attaches the journal that changes made through this container are written to.
+     * Containers are loaded and replayed without a journal, so those changes are not written again.
+     * 
+     * @param journal The journal, or null to stop journaling.
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Attaches the credential directory that users added to or removed from this container are reported to.
+     * The users already in the container are added to it.
+     * 
+     * @param credentialDirectory The credential directory.
+     */
+    synchronized void setCredentialDirectory(CredentialDirectory credentialDirectory) {
+        this.credentialDirectory = credentialDirectory;
+        for (User user : users.values()) {
+            credentialDirectory.add(user, this);
+        }
+    }
+
+    /**
+     * Writes a change to the journal, if one is attached, without waiting for it to be on disk.
+     * Called while holding the lock the change is made under, so the journal has changes in the order they were made.
+     * 
+     * @param operation The operation, one of the constants of Journal.
+     * @param fields The values needed to replay the change.
+     * @return The log sequence number to pass to awaitDurable, or NOT_JOURNALED if no journal is attached.
+     */
+    protected long journal(String operation, Object... fields) {
+        Journal current = journal;
+        return current != null ? current.enqueue(operation, fields) : NOT_JOURNALED;
+    }
+
+    /**
+     * Waits until a change written by journal is on disk. Called after releasing the lock the change was made
+     * under, so other changes are not held up behind the sync and share it instead.
+     * 
+     * @param lsn The log sequence number returned by journal.
+     */
+    protected void awaitDurable(long lsn) {
+        Journal current = journal;
+        if (current != null && lsn != NOT_JOURNALED) {
+            current.awaitDurable(lsn);
+        }
+    }
+
+    /**
+     * Records that an entry of this container changed since it was loaded or last exported.
+     * 
+     * @param key The key of the changed entry.
+     */
+    protected void markChanged(Object key) {
+        changedKeys.add(key);
+    }
+
+    /**
+     * Checks whether any entry of this container changed since it was loaded or last exported.
+     * 
+     * @return True if the CSV file of this container needs to be rewritten, otherwise false.
+     */
+    public boolean hasChanges() {
+        return !changedKeys.isEmpty();
+    }
+
+    /**
+     * Forgets all recorded changes, after the container has been exported.
+     */
+    public void clearChanges() {
+        changedKeys.clear();
     }
 
     /**
@@ -24,8 +118,15 @@ public class UserContainer implements Container {
      * 
      * @param user The User object to be added.
      */
-    public void putUser(User user) {
-        users.put(user.getHospitalId(), user);
+    public synchronized void putUser(User user) {
+        User previous = users.put(user.getHospitalId(), user);
+        if (previous != null) {
+            removeFromType(previous);
+        }
+        usersByType.computeIfAbsent(user.getUserType(), type -> new ConcurrentHashMap<>()).put(user.getHospitalId(), user);
+        if (credentialDirectory != null) {
+            credentialDirectory.add(user, this);
+        }
     }
 
     /**
@@ -54,7 +155,85 @@ public class UserContainer implements Container {
      * @param hospitalId The hospital ID of the user to be removed.
      */
     public void removeUser(String hospitalId) {
-        users.remove(hospitalId);
+        awaitDurable(deleteUser(hospitalId));
+    }
+
+    /**
+     * Removes a user and journals the removal, without waiting for the entry to be on disk.
+     * Nothing is journaled or marked as changed if there is no user with the given hospital ID.
+     * 
+     * @param hospitalId The hospital ID of the user to be removed.
+     * @return The log sequence number of the journal entry, or NOT_JOURNALED if no user was removed.
+     */
+    protected synchronized long deleteUser(String hospitalId) {
+        User removed = users.remove(hospitalId);
+        if (removed == null) {
+            return NOT_JOURNALED;
+        }
+        removeFromType(removed);
+        if (credentialDirectory != null) {
+            credentialDirectory.remove(hospitalId, this);
+        }
+        markChanged(hospitalId);
+        return journal(Journal.USER_REMOVE, hospitalId);
+    }
+
+    /**
+     * Changes the password of a user. Only a salted hash of the password is kept, saved and journaled.
+     * 
+     * @param user The user whose password is changed.
+     * @param password The new password, in plain text.
+     */
+    public void updatePassword(User user, String password) {
+        restorePassword(user, PasswordHasher.hash(password));
+    }
+
+    /**
+     * Sets the stored password of a user as it is, for example a hash read back from the journal.
+     * 
+     * @param user The user whose password is set.
+     * @param storedPassword The stored password, as returned by User.getPassword().
+     */
+    public void restorePassword(User user, String storedPassword) {
+        long lsn;
+        synchronized (user) {
+            user.setPassword(storedPassword);
+            markChanged(user.getHospitalId());
+            lsn = journal(Journal.USER_PASSWORD, user.getHospitalId(), storedPassword);
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Changes the name of a user.
+     * 
+     * @param user The user whose name is changed.
+     * @param name The new name.
+     */
+    public void updateName(User user, String name) {
+        long lsn;
+        synchronized (user) {
+            user.setName(name);
+            markChanged(user.getHospitalId());
+            lsn = journal(Journal.USER_NAME, user.getHospitalId(), name);
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Changes the gender of a user.
+     * 
+     * @param user The user whose gender is changed.
+     * @param gender The new gender.
+     */
+    public void updateGender(User user, String gender) {
+        long lsn;
+        synchronized (user) {
+            user.setGender(gender);
+            markChanged(user.getHospitalId());
+            lsn = journal(Journal.USER_GENDER, user.getHospitalId(), gender);
+        }
+        awaitDurable(lsn);
     }
 
     /**
@@ -70,27 +249,59 @@ public class UserContainer implements Container {
     /**
      * Clears all users from the container.
      */
-    public void clear() {
+    public synchronized void clear() {
+        if (credentialDirectory != null) {
+            for (String hospitalId : users.keySet()) {
+                credentialDirectory.remove(hospitalId, this);
+            }
+        }
         users.clear();
+        for (ConcurrentHashMap<String, User> usersOfType : usersByType.values()) {
+            usersOfType.clear(); // Keep the maps, so views handed out earlier stay live
+        }
     }
 
     /**
      * Retrieves all users of a specific user type.
      * 
      * @param userType The type of user to retrieve.
-     * @return A HashMap containing all users of the specified type.
+     * @return A read-only view of the users of the specified type, by hospital ID. The view follows later changes
+     *         to the container.
      */
-    public HashMap<String, User> getAllUsersByUserType(String userType) {
-        HashMap<String, User> result = new HashMap<>();
-        for (User user : users.values()) {
-            if (user.getUserType().equals(userType)) {
-                result.put(user.getHospitalId(), user);
-            }
-        }
-        return result;
+    public Map<String, User> getAllUsersByUserType(String userType) {
+        return usersByTypeViews.computeIfAbsent(userType, type ->
+            Collections.unmodifiableMap(usersByType.computeIfAbsent(type, t -> new ConcurrentHashMap<>())));
+    }
+
+    /**
+     * Counts the users of a specific user type.
+     * 
+     * @param userType The type of user to count.
+     * @return The number of users of the specified type.
+     */
+    public int getUserCount(String userType) {
+        ConcurrentHashMap<String, User> usersOfType = usersByType.get(userType);
+        return usersOfType != null ? usersOfType.size() : 0;
     }
 
+    /**
+     * Counts all users in the container.
+     * 
+     * @return The number of users.
+     */
+    public int getUserCount() {
+        return users.size();
+    }
 
+    /**
+     * Removes a user from the map of their user type.
+     */
+    private void removeFromType(User user) {
+        ConcurrentHashMap<String, User> usersOfType = usersByType.get(user.getUserType());
+        if (usersOfType != null) {
+            usersOfType.remove(user.getHospitalId());
+        }
+    }
 
     /**
      * Returns a string representation of all users in the container.
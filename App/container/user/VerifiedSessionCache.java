@@ -0,0 +1,118 @@
+package App.container.user;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the logins that were verified recently, so a user who logs in again shortly after does not pay for the
+ * slow password hash a second time.
+ *
+ * The cache never holds a password. For each user it keeps a SHA-256 digest of the password mixed with a random key
+ * made when the program starts, together with the stored password it was verified against. An entry is only used
+ * while it is younger than its time to live and the stored password has not changed since. The cache holds a
+ * limited number of users, and the least recently used make room for new ones.
+ */
+class VerifiedSessionCache {
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final long DEFAULT_TIME_TO_LIVE_MILLIS = 10 * 60 * 1000;
+
+    private final byte[] key = new byte[32];
+    private final long timeToLiveNanos;
+    private final LinkedHashMap<String, Session> sessions;
+
+    /**
+     * A verified login of one user.
+     */
+    private static class Session {
+        final String storedPassword;
+        final byte[] digest;
+        final long verifiedAt;
+
+        Session(String storedPassword, byte[] digest, long verifiedAt) {
+            this.storedPassword = storedPassword;
+            this.digest = digest;
+            this.verifiedAt = verifiedAt;
+        }
+    }
+
+    /**
+     * Constructs a VerifiedSessionCache with the default size and time to live.
+     */
+    VerifiedSessionCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE_MILLIS);
+    }
+
+    /**
+     * Constructs a VerifiedSessionCache.
+     *
+     * @param capacity The largest number of users kept.
+     * @param timeToLiveMillis How long a verified login is remembered, in milliseconds.
+     */
+    VerifiedSessionCache(int capacity, long timeToLiveMillis) {
+        new SecureRandom().nextBytes(key);
+        this.timeToLiveNanos = timeToLiveMillis * 1_000_000;
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Checks whether a login was verified recently against the same stored password.
+     *
+     * @param hospitalId The hospital ID of the user.
+     * @param password The password entered by the user.
+     * @param storedPassword The current stored password of the user.
+     * @return True if the same login was verified recently, otherwise false.
+     */
+    synchronized boolean contains(String hospitalId, String password, String storedPassword) {
+        Session session = sessions.get(hospitalId);
+        if (session == null) {
+            return false;
+        }
+        if (System.nanoTime() - session.verifiedAt > timeToLiveNanos || !session.storedPassword.equals(storedPassword)) {
+            sessions.remove(hospitalId);
+            return false;
+        }
+        return MessageDigest.isEqual(session.digest, digest(password));
+    }
+
+    /**
+     * Remembers a verified login.
+     *
+     * @param hospitalId The hospital ID of the user.
+     * @param password The password entered by the user.
+     * @param storedPassword The stored password it was verified against.
+     */
+    synchronized void put(String hospitalId, String password, String storedPassword) {
+        sessions.put(hospitalId, new Session(storedPassword, digest(password), System.nanoTime()));
+    }
+
+    /**
+     * Forgets the verified login of a user, for example because they were removed.
+     *
+     * @param hospitalId The hospital ID of the user.
+     */
+    synchronized void remove(String hospitalId) {
+        sessions.remove(hospitalId);
+    }
+
+    /**
+     * Mixes a password with the key of this cache.
+     */
+    private byte[] digest(String password) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(key);
+            return sha256.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -12,6 +12,7 @@ import App.container.user.PatientContainer;
 import App.container.user.PharmacistContainer;
 import App.container.user.StaffContainer;
 import App.record.Appointment;
+import App.record.EpochMinutes;
 import App.record.Medicine;
 import App.record.ReplenishmentRequest;
 import App.user.Administrator;
@@ -26,6 +27,7 @@ import App.user.User;
  * Allows the administrator to manage appointments, staff, medicines, replenishment requests, and alert levels.
  */
 public class AdministratorMenu extends Menu {
+    private static final int APPOINTMENT_PAGE_SIZE = 20;
     private String adminHospitalId;
     private Administrator administrator;
     private PatientContainer patientContainer;
@@ -175,7 +177,7 @@ public class AdministratorMenu extends Menu {
             }
     
             // Update the stock level
-            selectedMedicine.setAlertThreshold(newAlertLevel);
+            medicineContainer.updateAlertThreshold(selectedMedicine, newAlertLevel);
             System.out.println("Alert stock level for " + selectedMedicine.getMedicineName() + " updated to " + newAlertLevel + ".");
         }
     }
@@ -256,7 +258,7 @@ public class AdministratorMenu extends Menu {
             }
     
             // Update the stock level
-            selectedMedicine.setCurrentStock(newStock);
+            medicineContainer.updateStock(selectedMedicine, newStock);
             System.out.println("Stock level for " + selectedMedicine.getMedicineName() + " updated to " + newStock + ".");
         }
     }
@@ -341,11 +343,10 @@ public class AdministratorMenu extends Menu {
     
             if (action == 1) {
                 // Approve: update status and inventory
-                selectedRequest.setStatus("approved");
+                replenishmentRequestContainer.updateReplenishmentRequestStatus(selectedRequest.getRecordId(), "approved");
                 Medicine medicine = medicineContainer.getMedicineByName(selectedRequest.getMedicineName());
                 if (medicine != null) {
-                    int newStock = medicine.getCurrentStock() + selectedRequest.getQuantity();
-                    medicine.setCurrentStock(newStock);
+                    medicineContainer.adjustStock(medicine, selectedRequest.getQuantity());
                     System.out.println("Request approved. Inventory updated for " + selectedRequest.getMedicineName() + ".");
                 } else {
                     System.out.println("Error: Medicine not found in inventory.");
@@ -360,30 +361,44 @@ public class AdministratorMenu extends Menu {
     
 
     /**
-     * Displays all the appointments in the system.
+     * Displays all the appointments in the system, earliest first, one page at a time.
      * Provides an overview of appointments including their status and the associated doctor and patient.
      */
     public void viewAppointment() {
+        Scanner sc = new Scanner(System.in);
         System.out.println("----------------------------------------");
         System.out.println("All Appointments:");
         System.out.printf("%-5s %-15s %-15s %-15s %-15s%n", "No.", "Date & Time", "Patient ID", "Doctor ID", "Status");
         System.out.println("------------------------------------------------------------");
 
-        List<Appointment> appointments = appointmentContainer.getAllAppointments();
-
-        if (appointments.isEmpty()) {
-            System.out.println("No appointments found.");
-        } else {
-            for (int i = 0; i < appointments.size(); i++) {
-                Appointment appointment = appointments.get(i);
+        int number = 0;
+        long fromMinute = Long.MIN_VALUE;
+        while (true) {
+            // Each page starts one minute after the last appointment shown
+            List<Appointment> appointments = appointmentContainer.getNextAppointments(fromMinute, APPOINTMENT_PAGE_SIZE);
+            for (Appointment appointment : appointments) {
+                number++;
                 System.out.printf("%-5d %-15s %-15s %-15s %-15s%n",
-                    (i + 1),
+                    number,
                     appointment.getTime(),
                     appointment.getpatientHospitalId(),
                     appointment.getdoctorHospitalId(),
                     appointment.getStatus()
                 );
             }
+            if (number == 0) {
+                System.out.println("No appointments found.");
+                return;
+            }
+            long lastMinute = appointments.isEmpty() ? EpochMinutes.UNKNOWN : appointments.get(appointments.size() - 1).getTimeMinute();
+            if (appointments.size() < APPOINTMENT_PAGE_SIZE || lastMinute == EpochMinutes.UNKNOWN) {
+                return;
+            }
+            System.out.print("Press Enter to see more appointments, or 0 to go back: ");
+            if (!sc.hasNextLine() || sc.nextLine().trim().equals("0")) {
+                return;
+            }
+            fromMinute = lastMinute + 1;
         }
     }
 
@@ -484,21 +499,25 @@ public class AdministratorMenu extends Menu {
         System.out.print("Enter staff type to edit (Doctor/Pharmacist/Administrator): ");
         String userType = sc.nextLine().trim();
         Staff staff = null;
+        StaffContainer staffContainer = null;
 
         if (userType.equalsIgnoreCase("Doctor")) {
             System.out.print("Enter Doctor's Hospital ID: ");
             String hospitalId = sc.nextLine().trim();
             staff = doctorContainer.getDoctorByHospitalId(hospitalId);
+            staffContainer = doctorContainer;
 
         } else if (userType.equalsIgnoreCase("Pharmacist")) {
             System.out.print("Enter Pharmacist's Hospital ID: ");
             String hospitalId = sc.nextLine().trim();
             staff = pharmacistContainer.getPharmacistByHospitalId(hospitalId);
+            staffContainer = pharmacistContainer;
 
         } else if (userType.equalsIgnoreCase("Administrator")) {
             System.out.print("Enter Administrator's Hospital ID: ");
             String hospitalId = sc.nextLine().trim();
             staff = administratorContainer.getAdministratorByHospitalId(hospitalId);
+            staffContainer = administratorContainer;
 
         } else {
             System.out.println("Invalid staff type entered.");
@@ -517,14 +536,14 @@ public class AdministratorMenu extends Menu {
         System.out.print("Enter new Name (or press Enter to keep current): ");
         String newName = sc.nextLine().trim();
         if (!newName.isEmpty()) {
-            staff.setName(newName);
+            staffContainer.updateName(staff, newName);
         }
 
         System.out.println("Current Gender: " + staff.getGender());
         System.out.print("Enter new Gender (or press Enter to keep current): ");
         String newGender = sc.nextLine().trim();
         if (!newGender.isEmpty()) {
-            staff.setGender(newGender);
+            staffContainer.updateGender(staff, newGender);
         }
 
         System.out.println("Current Email: " + staff.getEmail());
@@ -540,7 +559,7 @@ public class AdministratorMenu extends Menu {
         if (!ageInput.isEmpty()) {
             try {
                 int newAge = Integer.parseInt(ageInput);
-                staff.setAge(newAge);
+                staffContainer.updateAge(staff, newAge);
             } catch (NumberFormatException e) {
                 System.out.println("Invalid age entered. Age not updated.");
             }
@@ -786,32 +805,30 @@ public class AdministratorMenu extends Menu {
         int choice = sc.nextInt();
         sc.nextLine();
 
+        int counter = 1;
         switch (choice) {
             case 1:
                 System.out.printf("%-5s %-15s %-20s %-15s %-10s %-5s%n", "No.", "Hospital ID", "Name", "Role", "Gender", "Age");
                 System.out.println("-----------------------------------------------------------------------");
-                List<User> doctors = doctorContainer.getAllDoctors().values().stream().toList();
-                for (int i = 0; i < doctors.size(); i++) {
-                    Doctor doctor = (Doctor) doctors.get(i);
-                    System.out.printf("%-5d %-15s %-20s %-15s %-10s %-5d%n", (i + 1), doctor.getHospitalId(), doctor.getName(), "Doctor", doctor.getGender(), doctor.getAge());
+                for (User user : doctorContainer.getAllDoctors().values()) {
+                    Doctor doctor = (Doctor) user;
+                    System.out.printf("%-5d %-15s %-20s %-15s %-10s %-5d%n", counter++, doctor.getHospitalId(), doctor.getName(), "Doctor", doctor.getGender(), doctor.getAge());
                 }
                 break;
             case 2:
                 System.out.printf("%-5s %-15s %-20s %-15s %-10s %-5s%n", "No.", "Hospital ID", "Name", "Role", "Gender", "Age");
                 System.out.println("-----------------------------------------------------------------------");
-                List<User> pharmacists = pharmacistContainer.getAllPharmacists().values().stream().toList();
-                for (int i = 0; i < pharmacists.size(); i++) {
-                    Pharmacist pharmacist = (Pharmacist) pharmacists.get(i);
-                    System.out.printf("%-5d %-15s %-20s %-15s %-10s %-5d%n", (i + 1), pharmacist.getHospitalId(), pharmacist.getName(), "Pharmacist", pharmacist.getGender(), pharmacist.getAge());
+                for (User user : pharmacistContainer.getAllPharmacists().values()) {
+                    Pharmacist pharmacist = (Pharmacist) user;
+                    System.out.printf("%-5d %-15s %-20s %-15s %-10s %-5d%n", counter++, pharmacist.getHospitalId(), pharmacist.getName(), "Pharmacist", pharmacist.getGender(), pharmacist.getAge());
                 }
                 break;
             case 3:
                 System.out.printf("%-5s %-15s %-20s %-15s %-10s %-5s%n", "No.", "Hospital ID", "Name", "Role", "Gender", "Age");
                 System.out.println("-----------------------------------------------------------------------");
-                List<User> admins = administratorContainer.getAllAdministrators().values().stream().toList();
-                for (int i = 0; i < admins.size(); i++) {
-                    Administrator admin = (Administrator) admins.get(i);
-                    System.out.printf("%-5d %-15s %-20s %-15s %-10s %-5d%n", (i + 1), admin.getHospitalId(), admin.getName(), "Administrator", admin.getGender(), admin.getAge());
+                for (User user : administratorContainer.getAllAdministrators().values()) {
+                    Administrator admin = (Administrator) user;
+                    System.out.printf("%-5d %-15s %-20s %-15s %-10s %-5d%n", counter++, admin.getHospitalId(), admin.getName(), "Administrator", admin.getGender(), admin.getAge());
                 }
                 break;
             default:
@@ -828,22 +845,22 @@ public class AdministratorMenu extends Menu {
         System.out.printf("%-5s %-15s %-20s %-15s %-10s %-5s%n", "No.", "Hospital ID", "Name", "Role", "Gender", "Age");
         System.out.println("-----------------------------------------------------------------------");
         // Display Doctors
-        List<User> doctors = doctorContainer.getAllDoctors().values().stream().toList();
-        for (int i = 0; i < doctors.size(); i++) {
-            Doctor doctor = (Doctor) doctors.get(i);
-            System.out.printf("%-5d %-15s %-20s %-15s %-10s %-5d%n", (i + 1), doctor.getHospitalId(), doctor.getName(), "Doctor", doctor.getGender(), doctor.getAge());
+        int counter = 1;
+        for (User user : doctorContainer.getAllDoctors().values()) {
+            Doctor doctor = (Doctor) user;
+            System.out.printf("%-5d %-15s %-20s %-15s %-10s %-5d%n", counter++, doctor.getHospitalId(), doctor.getName(), "Doctor", doctor.getGender(), doctor.getAge());
         }
         // Display Pharmacists
-        List<User> pharmacists = pharmacistContainer.getAllPharmacists().values().stream().toList();
-        for (int i = 0; i < pharmacists.size(); i++) {
-            Pharmacist pharmacist = (Pharmacist) pharmacists.get(i);
-            System.out.printf("%-5d %-15s %-20s %-15s %-10s %-5d%n", (i + 1), pharmacist.getHospitalId(), pharmacist.getName(), "Pharmacist", pharmacist.getGender(), pharmacist.getAge());
+        counter = 1;
+        for (User user : pharmacistContainer.getAllPharmacists().values()) {
+            Pharmacist pharmacist = (Pharmacist) user;
+            System.out.printf("%-5d %-15s %-20s %-15s %-10s %-5d%n", counter++, pharmacist.getHospitalId(), pharmacist.getName(), "Pharmacist", pharmacist.getGender(), pharmacist.getAge());
         }
         // Display Administrators
-        List<User> admins = administratorContainer.getAllAdministrators().values().stream().toList();
-        for (int i = 0; i < admins.size(); i++) {
-            Administrator admin = (Administrator) admins.get(i);
-            System.out.printf("%-5d %-15s %-20s %-15s %-10s %-5d%n", (i + 1), admin.getHospitalId(), admin.getName(), "Administrator", admin.getGender(), admin.getAge());
+        counter = 1;
+        for (User user : administratorContainer.getAllAdministrators().values()) {
+            Administrator admin = (Administrator) user;
+            System.out.printf("%-5d %-15s %-20s %-15s %-10s %-5d%n", counter++, admin.getHospitalId(), admin.getName(), "Administrator", admin.getGender(), admin.getAge());
         }
     }
 }
\ No newline at end of file
@@ -10,8 +10,10 @@ import App.container.user.DoctorContainer;
 import App.container.user.PatientContainer;
 import App.record.Appointment;
 import App.record.AppointmentOutcomeRecord;
+import App.record.EpochMinutes;
 import App.record.Medicine;
 import App.record.Prescription;
+import App.user.Availability;
 import App.user.Doctor;
 
 /**
@@ -22,6 +24,7 @@ import App.user.Doctor;
 public class DoctorMenu extends Menu {
     private String doctorHospitalId;
     private Doctor doctor;
+    private DoctorContainer doctorContainer;
     private PatientContainer patientContainer;
     private AppointmentContainer appointmentContainer;
     private AppointmentOutcomeRecordContainer appointmentOutcomeRecordContainer;
@@ -41,6 +44,7 @@ public class DoctorMenu extends Menu {
     public DoctorMenu(String hospitalId, DoctorContainer doctorContainer, PatientContainer patientContainer, AppointmentContainer appointmentContainer, AppointmentOutcomeRecordContainer appointmentOutcomeRecordContainer, MedicineContainer medicineContainer) {
         this.doctorHospitalId = hospitalId;
         doctor = (Doctor) doctorContainer.getUserByHospitalId(doctorHospitalId);//here dont need this keyword because the parameter name is different
+        this.doctorContainer = doctorContainer;
         this.patientContainer = patientContainer;
         this.appointmentContainer = appointmentContainer;
         this.appointmentOutcomeRecordContainer = appointmentOutcomeRecordContainer;
@@ -191,13 +195,15 @@ public class DoctorMenu extends Menu {
             String action = sc.nextLine().trim().toUpperCase();
     
             if (action.equals("1")) {
-                selectedAppointment.setStatus("confirmed");
+                appointmentContainer.updateAppointmentStatus(selectedAppointment, "confirmed");
                 System.out.println("Appointment confirmed.");
             } else if (action.equals("0")) {
                 // Cancel the appointment: remove from container and add time slot back
-                appointmentContainer.removeAppointment(selectedAppointment.getRecordId());
-                doctor.addAvailableSlot(selectedAppointment.getTime());
-                System.out.println("Appointment canceled, and the time slot is now available.");
+                if (doctorContainer.cancelBooking(doctor, selectedAppointment, appointmentContainer)) {
+                    System.out.println("Appointment canceled, and the time slot is now available.");
+                } else {
+                    System.out.println("The appointment has already been cancelled.");
+                }
             } else {
                 System.out.println("Invalid choice.");
             }
@@ -260,7 +266,7 @@ public class DoctorMenu extends Menu {
             String action = sc.nextLine().trim().toUpperCase();
     
             if (action.equals("0")) {
-                selectedAppointment.setStatus("completed");
+                appointmentContainer.updateAppointmentStatus(selectedAppointment, "completed");
                 System.out.println("Appointment completed.");
                 System.out.println("----------------------------------------");
 
@@ -334,7 +340,7 @@ public class DoctorMenu extends Menu {
                         sc.nextLine(); // Clear the buffer
 
                         // Create and add Prescription to the outcome record
-                        appointmentOutcomeRecordContainer.getAppointmentOutcomeRecordById(selectedAppointment.getAppointmentIdentifyId()).addPrescription(selectedMedicine.getMedicineName(), amount);
+                        appointmentOutcomeRecordContainer.addPrescription(appointmentOutcomeRecordContainer.getAppointmentOutcomeRecordByKey(selectedAppointment.getAppointmentKey()), selectedMedicine.getMedicineName(), amount);
                         System.out.println("Prescription added.");
                         System.out.println("----------------------------------------");
 
@@ -403,7 +409,7 @@ public class DoctorMenu extends Menu {
 
             // Fetch and display the Appointment Outcome Record
             Appointment selectedAppointment = appointments.get(choice - 1);
-            AppointmentOutcomeRecord outcomeRecord = appointmentOutcomeRecordContainer.getAppointmentOutcomeRecordById(selectedAppointment.getAppointmentIdentifyId());
+            AppointmentOutcomeRecord outcomeRecord = appointmentOutcomeRecordContainer.getAppointmentOutcomeRecordByKey(selectedAppointment.getAppointmentKey());
 
             if (outcomeRecord != null) {
                 System.out.println("----------------------------------------");
@@ -458,8 +464,14 @@ public class DoctorMenu extends Menu {
                     System.out.print("Enter available slot (YYYY-MM-DD HH:MM): ");
                     String slot = sc.nextLine(); // Use nextLine to capture the full slot input
                     if (App.container.data.AppointmentContainer.isValidDateTime(slot)) {
-                        doctor.addAvailableSlot(slot);
-                        System.out.println("Slot added successfully. :)");
+                        String conflict = findSlotConflict(EpochMinutes.parse(slot));
+                        if (conflict != null) {
+                            System.out.println(conflict);
+                        } else if (doctorContainer.addAvailableSlot(doctor, slot)) {
+                            System.out.println("Slot added successfully. :)");
+                        } else {
+                            System.out.println("You already have this slot.");
+                        }
                     } else {
                         System.out.println("Invalid date and time format. Please use the format YYYY-MM-DD HH:MM.");
                     }
@@ -477,6 +489,34 @@ public class DoctorMenu extends Menu {
     }
     
 
+    /**
+     * Checks whether a new slot would clash with the doctor's schedule.
+     * A slot clashes if it is already available, overlaps another available slot, or overlaps a pending or
+     * confirmed appointment.
+     *
+     * @param start The start of the new slot, in minutes since 1970-01-01 00:00.
+     * @return A message describing the clash, or null if the slot can be added.
+     */
+    private String findSlotConflict(long start) {
+        Availability availability = doctor.getAvailability();
+        if (availability.contains(start)) {
+            return "You already have this slot.";
+        }
+        long overlap = availability.findOverlap(start);
+        if (overlap != EpochMinutes.UNKNOWN) {
+            return "This slot overlaps your available slot at " + EpochMinutes.format(overlap) + ".";
+        }
+        long from = start - Availability.SLOT_MINUTES + 1;
+        long to = start + Availability.SLOT_MINUTES;
+        for (Appointment appointment : appointmentContainer.getAppointmentsByDoctorIdBetween(doctorHospitalId, from, to)) {
+            if (appointment.getStatus().equals("pending") || appointment.getStatus().equals("confirmed")) {
+                return "This slot overlaps your appointment at " + appointment.getTime() + ".";
+            }
+        }
+        return null;
+    }
+
+
     /**
      * Displays the medical records of patients under the care of the doctor.
      */
@@ -544,7 +584,7 @@ public class DoctorMenu extends Menu {
         String patientHospitalId = scMedical.next();
         scMedical.nextLine(); // Clear buffer after reading hospital ID
     
-        if (doctor.getAllPatientsUnderCare().contains(patientHospitalId)) {
+        if (doctor.isPatientUnderCare(patientHospitalId)) {
             int editMedicalRecordChoice;
             do {
                 System.out.println("----------------------------------------");
@@ -568,13 +608,13 @@ public class DoctorMenu extends Menu {
                     case 1:
                         System.out.print("Enter diagnosis: ");
                         String diagnosis = scMedical.nextLine(); // Use nextLine to capture full diagnosis input
-                        patientContainer.getPatientByHospitalId(patientHospitalId).getMedicalRecord().addDiagnose(diagnosis);
+                        patientContainer.addDiagnosis(patientContainer.getPatientByHospitalId(patientHospitalId), diagnosis);
                         System.out.println("Diagnosis added successfully.");
                         break;
                     case 2:
                         System.out.print("Enter treatment: ");
                         String treatment = scMedical.nextLine(); // Use nextLine to capture full treatment input
-                        patientContainer.getPatientByHospitalId(patientHospitalId).getMedicalRecord().addTreatment(treatment);
+                        patientContainer.addTreatment(patientContainer.getPatientByHospitalId(patientHospitalId), treatment);
                         System.out.println("Treatment added successfully.");
                         break;
                     default:
@@ -596,11 +636,11 @@ public class DoctorMenu extends Menu {
         if (patientContainer.getUserByHospitalId(patientHospitalId) != null) {
 
             //first check if the patient is already under the care of this doctor
-            if (doctor.getAllPatientsUnderCare().contains(patientHospitalId)) {
+            if (doctor.isPatientUnderCare(patientHospitalId)) {
                 System.out.println("Patient is already under your care.");
             }
             else{
-                doctor.addPatientUnderCare(patientHospitalId);
+                doctorContainer.addPatientUnderCare(doctor, patientHospitalId);
                 String patientName = patientContainer.getUserByHospitalId(patientHospitalId).getName(); 
                 System.out.println("Patient " + patientName + " added to your care");   
             }
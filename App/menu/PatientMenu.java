@@ -1,4 +1,5 @@
 package App.menu;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 
@@ -8,8 +9,10 @@ import App.container.user.DoctorContainer;
 import App.container.user.PatientContainer;
 import App.record.Appointment;
 import App.record.AppointmentOutcomeRecord;
+import App.record.EpochMinutes;
 import App.record.MedicalRecord;
 import App.record.Prescription;
+import App.user.Availability;
 import App.user.Doctor;
 import App.user.Patient;
 
@@ -21,6 +24,7 @@ import App.user.Patient;
 public class PatientMenu extends Menu {
     private String patientHospitalId;
     private Patient patient;
+    private PatientContainer patientContainer;
     private DoctorContainer doctorContainer;
     private AppointmentContainer appointmentContainer;
     private AppointmentOutcomeRecordContainer appointmentOutcomeRecordContainer;
@@ -40,6 +44,7 @@ public class PatientMenu extends Menu {
     {
         this.patientHospitalId = hospitalId;
         patient=(Patient)patientContainer.getUserByHospitalId(patientHospitalId);
+        this.patientContainer=patientContainer;
         this.doctorContainer=doctorContainer;
         this.appointmentContainer=appointmentContainer;
         this.appointmentOutcomeRecordContainer=appointmentOutcomeRecordContainer;
@@ -119,9 +124,11 @@ public class PatientMenu extends Menu {
             case 2: // Filter by date (YYYY-MM-DD only)
                 System.out.print("Enter Date (YYYY-MM-DD): ");
                 String date = sc.nextLine();
-                // Filter appointments by date part only (YYYY-MM-DD)
-                appointments = appointmentContainer.getAllAppointmentsByPatientIdAndStatus(patientHospitalId, "completed").stream()
-                        .filter(appointment -> appointment.getTime().substring(0, 10).equals(date))
+                // Look up the appointments on that day by time, then keep the completed ones
+                long dayStart = EpochMinutes.parse(date + " 00:00");
+                appointments = dayStart == EpochMinutes.UNKNOWN ? new ArrayList<>()
+                    : appointmentContainer.getAppointmentsByPatientIdBetween(patientHospitalId, dayStart, dayStart + EpochMinutes.MINUTES_PER_DAY).stream()
+                        .filter(appointment -> appointment.getStatus().equals("completed"))
                         .toList();
                 break;
             default:
@@ -168,7 +175,7 @@ public class PatientMenu extends Menu {
     
             // Fetch and display the Appointment Outcome Record
             Appointment selectedAppointment = appointments.get(choice - 1);
-            AppointmentOutcomeRecord outcomeRecord = appointmentOutcomeRecordContainer.getAppointmentOutcomeRecordById(selectedAppointment.getAppointmentIdentifyId());
+            AppointmentOutcomeRecord outcomeRecord = appointmentOutcomeRecordContainer.getAppointmentOutcomeRecordByKey(selectedAppointment.getAppointmentKey());
     
             if (outcomeRecord != null) {
                 System.out.println("----------------------------------------");
@@ -233,7 +240,7 @@ public class PatientMenu extends Menu {
                 case 1:
                     System.out.print("Enter new email: ");
                     String newEmail = sc.nextLine();
-                    patient.setEmail(newEmail);
+                    patientContainer.updateEmail(patient, newEmail);
                     System.out.println("Email changed to " + newEmail);
                     break;
                     
@@ -263,6 +270,7 @@ public class PatientMenu extends Menu {
             System.out.println("0. Back");
             System.out.println("1. Schedule an Appointment");
             System.out.println("2. Upcoming Appointments");
+            System.out.println("3. Book the Earliest Available Appointment");
     
             System.out.print("Enter your choice: ");
             choice = sc.nextInt();
@@ -278,6 +286,9 @@ public class PatientMenu extends Menu {
                 case 2:
                     UpcomingAppointments();
                     break;
+                case 3:
+                    bookEarliestAppointment();
+                    break;
                 default:
                     System.out.println("Invalid choice");
             }
@@ -309,45 +320,187 @@ public class PatientMenu extends Menu {
             return;
         }
     
-        // Display available slots for the chosen doctor
-        List<String> availableSlots = doctor.getAvailableSlots();
-        if (availableSlots.isEmpty()) {
+        // Let the patient pick one of the doctor's available slots, which is held for them while they confirm
+        String chosenSlot = chooseSlot(sc, doctor, "Enter the number of the slot you want to book");
+        if (chosenSlot == null) {
             System.out.println("No available slots for this doctor.");
             return;
         }
-    
+        if (!confirmSlot(sc, doctor, chosenSlot, "Book")) {
+            return;
+        }
+
+        // Book the selected slot, unless the hold ran out and someone else booked it first
+        if (!doctorContainer.bookSlot(doctor, chosenSlot, patientHospitalId, appointmentContainer)) {
+            System.out.println("The slot " + chosenSlot + " is no longer available.");
+            return;
+        }
+        System.out.println("Appointment scheduled successfully with " + doctor.getName() + " for " + chosenSlot + ".");
+    }
+
+    /**
+     * Allows the patient to book the earliest available slot with any doctor, from a time of their choice.
+     * The patient picks one of the doctors free at that slot, or moves on to the next slot at which any doctor is free.
+     */
+    private void bookEarliestAppointment() {
+        Scanner sc = new Scanner(System.in);
+
+        System.out.print("Enter the earliest date and time you can come (YYYY-MM-DD HH:MM), or press Enter for any time from now: ");
+        String input = sc.nextLine().trim();
+        long from = EpochMinutes.now(); // Slots in the past cannot be booked
+        if (!input.isEmpty()) {
+            long entered = EpochMinutes.parse(input);
+            if (entered == EpochMinutes.UNKNOWN) {
+                System.out.println("Invalid date and time format. Please use the format YYYY-MM-DD HH:MM.");
+                return;
+            }
+            from = Math.max(from, entered);
+        }
+
+        while (true) {
+            long slot = doctorContainer.getEarliestAvailableSlot(from);
+            if (slot == EpochMinutes.UNKNOWN) {
+                System.out.println("No doctor has an available slot from then on.");
+                return;
+            }
+            String slotTime = EpochMinutes.format(slot);
+            List<Doctor> doctors = new ArrayList<>();
+            for (Doctor doctor : doctorContainer.getDoctorsAvailableAt(slot)) {
+                if (!doctor.getAvailability().isHeldByOther(slot, patientHospitalId)) {
+                    doctors.add(doctor);
+                }
+            }
+            if (doctors.isEmpty()) { // Every doctor free then is being booked by someone else
+                from = slot + 1;
+                continue;
+            }
+
+            System.out.println("\nEarliest available slot: " + slotTime);
+            System.out.printf("%-5s %-15s %-20s%n", "No.", "Hospital ID", "Doctor Name");
+            System.out.println("----------------------------------------");
+            for (int i = 0; i < doctors.size(); i++) {
+                System.out.printf("%-5d %-15s %-20s%n", i + 1, doctors.get(i).getHospitalId(), doctors.get(i).getName());
+            }
+            System.out.println("----------------------------------------");
+            System.out.print("Enter the number of the doctor to book with, 0 for the next available slot, or press Enter to go back: ");
+
+            String choice = sc.nextLine().trim();
+            if (choice.isEmpty()) {
+                System.out.println("Returning to previous menu...");
+                return;
+            }
+            int doctorChoice;
+            try {
+                doctorChoice = Integer.parseInt(choice);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input. Please enter a number.");
+                continue;
+            }
+            if (doctorChoice == 0) {
+                from = slot + 1;
+                continue;
+            }
+            if (doctorChoice < 1 || doctorChoice > doctors.size()) {
+                System.out.println("Invalid choice. Please enter a number between 0 and " + doctors.size());
+                continue;
+            }
+
+            Doctor doctor = doctors.get(doctorChoice - 1);
+            if (!doctorContainer.holdSlot(doctor, slotTime, patientHospitalId)) {
+                System.out.println("The slot " + slotTime + " was just taken by someone else.");
+                continue;
+            }
+            if (!confirmSlot(sc, doctor, slotTime, "Book")) {
+                return;
+            }
+            if (!doctorContainer.bookSlot(doctor, slotTime, patientHospitalId, appointmentContainer)) {
+                System.out.println("The slot " + slotTime + " is no longer available.");
+                return;
+            }
+            System.out.println("Appointment scheduled successfully with " + doctor.getName() + " for " + slotTime + ".");
+            return;
+        }
+    }
+
+    /**
+     * Shows the available slots of a doctor, earliest first, and lets the patient pick one.
+     * The patient can enter the number of a slot, or a date and time to get the first available slot at or after it.
+     * Slots other patients are booking are left out, and the chosen slot is held for the patient.
+     *
+     * @param sc     The scanner reading the patient's input.
+     * @param doctor The doctor whose slots are shown.
+     * @param prompt The question asking the patient for a slot number.
+     * @return The chosen slot in the format "YYYY-MM-DD HH:MM", or null if the doctor has no slots that can be booked.
+     */
+    private String chooseSlot(Scanner sc, Doctor doctor, String prompt) {
+        Availability availability = doctor.getAvailability();
+        List<Long> availableSlots = new ArrayList<>();
+        for (long start : availability.getSlotsFrom(Long.MIN_VALUE)) {
+            if (!availability.isHeldByOther(start, patientHospitalId)) {
+                availableSlots.add(start);
+            }
+        }
+        if (availableSlots.isEmpty()) {
+            return null;
+        }
+
         System.out.println("\nAvailable Slots:");
         System.out.println("----------------------------------------");
         for (int i = 0; i < availableSlots.size(); i++) {
-            System.out.printf("%d. %s%n", i + 1, availableSlots.get(i));
+            System.out.printf("%d. %s%n", i + 1, EpochMinutes.format(availableSlots.get(i)));
         }
         System.out.println("----------------------------------------");
-    
-        System.out.print("Enter the number of the slot you want to book: ");
-        int slotChoice;
+
+        System.out.print(prompt + ", or a date and time (YYYY-MM-DD HH:MM) to take the first slot from then: ");
         while (true) {
-            if (sc.hasNextInt()) {
-                slotChoice = sc.nextInt();
-                sc.nextLine(); // Clear buffer
+            String input = sc.nextLine().trim();
+            long from = EpochMinutes.parse(input);
+            if (from != EpochMinutes.UNKNOWN) {
+                for (long start : availability.getSlotsFrom(from)) {
+                    String slot = EpochMinutes.format(start);
+                    if (doctorContainer.holdSlot(doctor, slot, patientHospitalId)) {
+                        return slot;
+                    }
+                }
+                System.out.println("No available slot at or after " + input + ". Please choose another slot.");
+                continue;
+            }
+            try {
+                int slotChoice = Integer.parseInt(input);
                 if (slotChoice >= 1 && slotChoice <= availableSlots.size()) {
-                    break;
-                } else {
-                    System.out.println("Invalid choice. Please enter a number between 1 and " + availableSlots.size());
+                    String slot = EpochMinutes.format(availableSlots.get(slotChoice - 1));
+                    if (doctorContainer.holdSlot(doctor, slot, patientHospitalId)) {
+                        return slot;
+                    }
+                    System.out.println("The slot " + slot + " was just taken by someone else. Please choose another slot.");
+                    continue;
                 }
-            } else {
-                System.out.println("Invalid input. Please enter a number.");
-                sc.next(); // Clear invalid input
+                System.out.println("Invalid choice. Please enter a number between 1 and " + availableSlots.size());
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input. Please enter a number or a date and time.");
             }
         }
-    
-        // Book the selected slot
-        String chosenSlot = availableSlots.get(slotChoice - 1);
-    
-        // Assume thisPatientHospitalId is a variable holding the current patient's hospital ID
-    
-        appointmentContainer.addAppointment(chosenSlot, patientHospitalId,doctorHospitalId);
-        doctor.removeAvailableSlot(chosenSlot);    
-        System.out.println("Appointment scheduled successfully with " + doctor.getName() + " for " + chosenSlot + ".");
+    }
+
+    /**
+     * Asks the patient to confirm a slot that is held for them, and releases the hold if they do not.
+     *
+     * @param sc     The scanner reading the patient's input.
+     * @param doctor The doctor of the slot.
+     * @param slot   The held slot, in the format "YYYY-MM-DD HH:MM".
+     * @param action What confirming does, such as "Book".
+     * @return True if the patient confirmed, otherwise false.
+     */
+    private boolean confirmSlot(Scanner sc, Doctor doctor, String slot, String action) {
+        System.out.println("The slot " + slot + " with " + doctor.getName() + " is held for you for "
+            + Availability.HOLD_SECONDS + " seconds.");
+        System.out.print(action + " " + slot + "? (Y/N): ");
+        if (sc.nextLine().trim().equalsIgnoreCase("Y")) {
+            return true;
+        }
+        doctorContainer.releaseSlotHold(doctor, slot, patientHospitalId);
+        System.out.println("Nothing was changed.");
+        return false;
     }
     
     /**
@@ -361,9 +514,13 @@ public class PatientMenu extends Menu {
         System.out.printf("%-5s %-15s %-20s %-20s %-20s%n", "No.", "Date & Time", "Doctor ID", "Doctor Name", "Status");
         System.out.println("-----------------------------------------------------------------------");
     
-        // Retrieve all appointments for the patient
-        List<Appointment> allAppointments = appointmentContainer.getAllAppointmentsByPatientIdAndStatus(patientHospitalId, "confirmed");
-        allAppointments.addAll(appointmentContainer.getAllAppointmentsByPatientIdAndStatus(patientHospitalId, "pending"));
+        // Retrieve the confirmed and pending appointments of the patient, earliest first
+        List<Appointment> allAppointments = new ArrayList<>();
+        for (Appointment appointment : appointmentContainer.getAllAppointmentsByPatientIdSortedByTime(patientHospitalId)) {
+            if (appointment.getStatus().equals("confirmed") || appointment.getStatus().equals("pending")) {
+                allAppointments.add(appointment);
+            }
+        }
     
         if (allAppointments.isEmpty()) {
             System.out.println("No upcoming appointments.");
@@ -437,54 +594,39 @@ public class PatientMenu extends Menu {
             return;
         }
     
-        // Display available slots for the doctor
-        List<String> availableSlots = doctor.getAvailableSlots();
-        if (availableSlots.isEmpty()) {
+        // Let the patient pick one of the doctor's available slots
+        String newSlot = chooseSlot(sc, doctor, "Enter the number of the slot you want to reschedule to");
+        if (newSlot == null) {
             System.out.println("No available slots to modify the appointment.");
             return;
         }
-    
-        System.out.println("\nAvailable Slots:");
-        System.out.println("----------------------------------------");
-        for (int i = 0; i < availableSlots.size(); i++) {
-            System.out.printf("%d. %s%n", i + 1, availableSlots.get(i));
+
+        if (!confirmSlot(sc, doctor, newSlot, "Reschedule to")) {
+            return;
         }
-        System.out.println("----------------------------------------");
-    
-        System.out.print("Enter the number of the slot you want to reschedule to: ");
-        int slotChoice;
-        while (true) {
-            if (sc.hasNextInt()) {
-                slotChoice = sc.nextInt();
-                sc.nextLine(); // Clear buffer
-                if (slotChoice >= 1 && slotChoice <= availableSlots.size()) {
-                    break;
-                } else {
-                    System.out.println("Invalid choice. Please enter a number between 1 and " + availableSlots.size());
-                }
-            } else {
-                System.out.println("Invalid input. Please enter a number.");
-                sc.next(); // Clear invalid input
-            }
+
+        // Book the new slot, free up the old one and update the appointment
+        if (!doctorContainer.rescheduleToSlot(doctor, appointment, newSlot, appointmentContainer)) {
+            System.out.println("The slot " + newSlot + " is no longer available, or the appointment was cancelled.");
+            return;
         }
-    
-        // Update the appointment with the new slot and remove old slot from availability
-        String newSlot = availableSlots.get(slotChoice - 1);
-        doctor.removeAvailableSlot(newSlot); // Book new slot
-        doctor.addAvailableSlot(appointment.getTime()); // Free up old slot
-        appointment.setTime(newSlot); // Update appointment time
-        appointment.setStatus("pending");
-        System.out.println("Appointment with "+doctorContainer.getDoctorByHospitalId(appointment.getdoctorHospitalId()).getName()+ " rescheduled successfully to " + newSlot + ".");
+        System.out.println("Appointment with " + doctor.getName() + " rescheduled successfully to " + newSlot + ".");
     }
     
 
     /**
-     * Cancels an existing appointment for the patient.
+     * Cancels an existing appointment for the patient and gives its slot back to the doctor.
      *
      * @param appointment The appointment to cancel.
      */
     private void cancelAppointment(Appointment appointment) {
-        appointmentContainer.removeAppointment(appointment.getRecordId());
+        Doctor doctor = doctorContainer.getDoctorByHospitalId(appointment.getdoctorHospitalId());
+        if (doctor == null) { // The doctor has left, so there is no slot to give back
+            appointmentContainer.removeAppointment(appointment.getRecordId());
+        } else if (!doctorContainer.cancelBooking(doctor, appointment, appointmentContainer)) {
+            System.out.println("The appointment has already been cancelled.");
+            return;
+        }
         System.out.println("Appointment cancelled successfully.");
     }
     
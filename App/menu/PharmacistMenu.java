@@ -166,14 +166,13 @@ public class PharmacistMenu extends Menu {
                 // Check and update the status of the selected prescription
                 Prescription selectedPrescription = prescriptions.get(prescriptionChoice - 1);
                 if (selectedPrescription.getStatus().equalsIgnoreCase("pending")) {
-                    selectedPrescription.setStatus("dispensed");
+                    appointmentOutcomeRecordContainer.updatePrescriptionStatus(selectedRecord, prescriptionChoice - 1, "dispensed");
                     System.out.println("Prescription for " + selectedPrescription.getMedicine() + " has been dispensed "+ selectedPrescription.getAmount() +" amount.");
 
                     // Update the stock for the dispensed medicine
                     Medicine dispensedMedicine = medicineContainer.getMedicineByName(selectedPrescription.getMedicine());
                     if (dispensedMedicine != null) {
-                        int newStock = dispensedMedicine.getCurrentStock() - selectedPrescription.getAmount();
-                        dispensedMedicine.setCurrentStock(newStock);
+                        int newStock = medicineContainer.adjustStock(dispensedMedicine, -selectedPrescription.getAmount());
                         System.out.println("Updated stock for " + dispensedMedicine.getMedicineName() + ": " + newStock + " remaining.");
                     } else {
                         System.out.println("Error: Medicine not found in inventory.");
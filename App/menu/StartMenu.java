@@ -10,6 +10,7 @@ import App.container.data.AppointmentOutcomeRecordContainer;
 import App.container.data.MedicineContainer;
 import App.container.data.ReplenishmentRequestContainer;
 import App.container.user.AdministratorContainer;
+import App.container.user.CredentialDirectory;
 import App.container.user.DoctorContainer;
 import App.container.user.PatientContainer;
 import App.container.user.PharmacistContainer;
@@ -21,6 +22,7 @@ import App.container.user.UserContainer;
  */
 public class StartMenu extends Menu {
     HashMap<String,Container> containers;
+    private final CredentialDirectory credentialDirectory;
 
     /**
      * Constructs a StartMenu instance with the specified containers.
@@ -29,6 +31,12 @@ public class StartMenu extends Menu {
      */
     public StartMenu(HashMap<String,Container> containers) {
         this.containers=containers;
+        this.credentialDirectory = new CredentialDirectory(
+            (UserContainer) containers.get("Patient"),
+            (UserContainer) containers.get("Doctor"),
+            (UserContainer) containers.get("Pharmacist"),
+            (UserContainer) containers.get("Administrator")
+        );
     }
     @Override
 public void run() {
@@ -98,27 +106,25 @@ public void run() {
         appointmentContainer.addAppointment("2021-10-01 11:00", "P1002", "D002");
         appointmentContainer.addAppointment("2021-10-01 14:00", "P1003", "d001");*/
 
-        if (patientContainer.containsUser(hospitalId)&&patientContainer.getUserTypeByHospitalId(hospitalId).equals("Patient")){ 
-            String correctPassword=patientContainer.getUserByHospitalId(hospitalId).getPassword();
-            if (password.equals(correctPassword)) {
-                if (password.equals("password")) {
-                    promptPasswordChange(patientContainer, hospitalId);  // Prompt to change default password
-                }
-                return new PatientMenu(
+        // One lookup finds the user and their role; unknown hospital IDs are usually turned away by its filter
+        CredentialDirectory.Credential credential = credentialDirectory.login(hospitalId, password);
+        if (credential == null) {
+            return null;
+        }
+
+        Menu userMenu;
+        switch (credential.getUserType()) {
+            case "Patient":
+                userMenu = new PatientMenu(
                     hospitalId,
                     patientContainer,
                     doctorContainer,
                     appointmentContainer,
                     appointmentOutcomeRecordContainer
                 );
-            } else return null;
-        } else if (doctorContainer.containsUser(hospitalId)&&doctorContainer.getUserTypeByHospitalId(hospitalId).equals("Doctor")){
-            String correctPassword=doctorContainer.getUserByHospitalId(hospitalId).getPassword();
-            if (password.equals(correctPassword)) {
-                if (password.equals("password")) {
-                    promptPasswordChange(doctorContainer, hospitalId);  // Prompt to change default password
-                }
-                return new DoctorMenu(
+                break;
+            case "Doctor":
+                userMenu = new DoctorMenu(
                     hospitalId,
                     doctorContainer,
                     patientContainer,
@@ -126,27 +132,17 @@ public void run() {
                     appointmentOutcomeRecordContainer,
                     medicineContainer
                 );
-            } else return null;
-        } else if (pharmacistContainer.containsUser(hospitalId)&&pharmacistContainer.getUserTypeByHospitalId(hospitalId).equals("Pharmacist")){
-            String correctPassword=pharmacistContainer.getUserByHospitalId(hospitalId).getPassword();
-            if (password.equals(correctPassword)) {
-                if (password.equals("password")) {
-                    promptPasswordChange(pharmacistContainer, hospitalId);  // Prompt to change default password
-                }
-                return new PharmacistMenu(
+                break;
+            case "Pharmacist":
+                userMenu = new PharmacistMenu(
                     hospitalId,
                     appointmentOutcomeRecordContainer,
                     medicineContainer,
                     replenishmentRequestContainer
                 );
-            } else return null;
-        } else if (administratorContainer.containsUser(hospitalId)&&administratorContainer.getUserTypeByHospitalId(hospitalId).equals("Administrator")){
-            String correctPassword=administratorContainer.getUserByHospitalId(hospitalId).getPassword();
-            if (password.equals(correctPassword)) {
-                if (password.equals("password")) {
-                    promptPasswordChange(administratorContainer, hospitalId);  // Prompt to change default password
-                }
-                return new AdministratorMenu(
+                break;
+            case "Administrator":
+                userMenu = new AdministratorMenu(
                     hospitalId,
                     administratorContainer,
                     patientContainer,
@@ -156,9 +152,14 @@ public void run() {
                     replenishmentRequestContainer,
                     appointmentContainer
                 );
-            } else return null;
+                break;
+            default:
+                return null;
+        }
+        if (credential.usesDefaultPassword()) {
+            promptPasswordChange(credential.getContainer(), hospitalId);  // Prompt to change default password
         }
-        return null;
+        return userMenu;
     }  
     
 
@@ -187,7 +188,7 @@ public void run() {
             String confirmPassword = sc.nextLine();
     
             if (newPassword.equals(confirmPassword)) {
-                userContainer.getUserByHospitalId(hospitalId).setPassword(newPassword);
+                userContainer.updatePassword(userContainer.getUserByHospitalId(hospitalId), newPassword);
                 System.out.println("Password changed successfully.");
                 break;
             } else {
@@ -3,13 +3,15 @@ package App.record;
 /**
  * Represents an appointment between a patient and a doctor in the hospital system.
  * Contains details about the appointment time, patient, doctor, status, and a unique identifier.
+ * Fields are volatile, so sessions reading an appointment see changes made by AppointmentContainer in another session.
  */
 public class Appointment extends Record {
-    private String time;
-    private String patientHospitalId;
-    private String doctorHospitalId;
-    private String status ;
-    private String appointmentIdentifyId;//a unique id for each appointment, constructed by the patientHospitalId+doctorHospitalId+time
+    private volatile long time;     // Minutes since 1970-01-01 00:00, or EpochMinutes.UNKNOWN
+    private volatile String unparsedTime; // The text of a time that is not valid, kept to be written back unchanged
+    private volatile int patientCode; // The hospital IDs, as HospitalIdDictionary.PATIENTS and DOCTORS codes
+    private volatile int doctorCode;
+    private volatile String status;
+    private volatile long appointmentKey; // The unique id patientHospitalId+doctorHospitalId+time, packed by AppointmentKey
 
 
     /**
@@ -21,12 +23,25 @@ public class Appointment extends Record {
      * @param status            The status of the appointment (e.g., "pending", "confirmed", "completed").
      */
     public Appointment(String time, String patientHospitalId, String doctorHospitalId, String status) {
-        super();
-        this.time = time;
-        this.patientHospitalId = patientHospitalId;
-        this.doctorHospitalId = doctorHospitalId;
+        this(NEW_ID, time, patientHospitalId, doctorHospitalId, status);
+    }
+
+    /**
+     * Constructs an Appointment instance with the given record ID, such as one read back from the data file.
+     *
+     * @param recordId          The record ID, or Record.NEW_ID to have a new one handed out.
+     * @param time             The time of the appointment in the format "YYYY-MM-DD HH:MM".
+     * @param patientHospitalId The hospital ID of the patient involved in the appointment.
+     * @param doctorHospitalId  The hospital ID of the doctor involved in the appointment.
+     * @param status            The status of the appointment (e.g., "pending", "confirmed", "completed").
+     */
+    public Appointment(int recordId, String time, String patientHospitalId, String doctorHospitalId, String status) {
+        super(recordId);
+        setTimeText(time);
+        this.patientCode = HospitalIdDictionary.PATIENTS.encode(patientHospitalId);
+        this.doctorCode = HospitalIdDictionary.DOCTORS.encode(doctorHospitalId);
         this.status = status;
-        this.appointmentIdentifyId = patientHospitalId + doctorHospitalId + time;
+        this.appointmentKey = AppointmentKey.of(patientCode, doctorCode, getTime());
     }
 
     /**
@@ -36,34 +51,62 @@ public class Appointment extends Record {
      */
     @Override
     public String toString() {
-        return time;
+        return getTime();
     }
 
     /**
-     * Returns the unique identifier of the appointment.
+     * Returns the unique identifier of the appointment, for display and for the data files.
      *
      * @return The appointment's unique identifier, constructed from patientHospitalId, doctorHospitalId, and time.
      */
     public String getAppointmentIdentifyId() {
-        return appointmentIdentifyId;
+        return AppointmentKey.toString(appointmentKey);
+    }
+
+    /**
+     * Returns the unique identifier of the appointment as a key, to look up or index appointments by.
+     *
+     * @return The key of the appointment, see AppointmentKey.
+     */
+    public long getAppointmentKey() {
+        return appointmentKey;
     }
 
     /**
-     * Returns the time of the appointment.
+     * Returns the time of the appointment, for display and for the data files.
      *
-     * @return The appointment time in the format "YYYY-MM-DD HH:MM".
+     * @return The appointment time in the format "YYYY-MM-DD HH:MM", or the text it was created with if that
+     *         is not a valid time.
      */
     public String getTime() {
+        return unparsedTime != null ? unparsedTime : EpochMinutes.format(time);
+    }
+
+    /**
+     * Returns the time of the appointment, to compare, sort or look up appointments by.
+     *
+     * @return The minutes since 1970-01-01 00:00, or EpochMinutes.UNKNOWN if the time is not valid.
+     */
+    public long getTimeMinute() {
         return time;
     }
 
     /**
-     * Sets the time of the appointment.
+     * Sets the time of the appointment. The unique identifier is updated to match the new time.
      *
      * @param time The new appointment time in the format "YYYY-MM-DD HH:MM".
      */
     public void setTime(String time) {   // Setter method for time
-        this.time = time;
+        setTimeText(time);
+        this.appointmentKey = AppointmentKey.of(patientCode, doctorCode, getTime());
+    }
+
+    /**
+     * Parses and stores a time, keeping the text only if it is not a valid time.
+     */
+    private void setTimeText(String text) {
+        this.time = EpochMinutes.parse(text);
+        this.unparsedTime = time == EpochMinutes.UNKNOWN ? text : null;
     }
 
     /**
@@ -72,16 +115,26 @@ public class Appointment extends Record {
      * @return The patient hospital ID.
      */
     public String getpatientHospitalId() {
-        return patientHospitalId;
+        return HospitalIdDictionary.PATIENTS.decode(patientCode);
     }
 
     /**
-     * Sets the hospital ID of the patient involved in the appointment.
+     * Returns the hospital ID of the patient as a HospitalIdDictionary.PATIENTS code, to compare or index appointments by.
+     *
+     * @return The code of the patient hospital ID.
+     */
+    public int getPatientCode() {
+        return patientCode;
+    }
+
+    /**
+     * Sets the hospital ID of the patient involved in the appointment. The unique identifier is updated to match.
      *
      * @param patientHospitalId The new patient hospital ID.
      */
     public void setpatientHospitalId(String patientHospitalId) {   // Setter method for patientHospitalId
-        this.patientHospitalId = patientHospitalId;
+        this.patientCode = HospitalIdDictionary.PATIENTS.encode(patientHospitalId);
+        this.appointmentKey = AppointmentKey.of(patientCode, doctorCode, getTime());
     }
 
 
@@ -91,16 +144,26 @@ public class Appointment extends Record {
      * @return The doctor hospital ID.
      */
     public String getdoctorHospitalId() {
-        return doctorHospitalId;
+        return HospitalIdDictionary.DOCTORS.decode(doctorCode);
+    }
+
+    /**
+     * Returns the hospital ID of the doctor as a HospitalIdDictionary.DOCTORS code, to compare or index appointments by.
+     *
+     * @return The code of the doctor hospital ID.
+     */
+    public int getDoctorCode() {
+        return doctorCode;
     }
 
     /**
-     * Sets the hospital ID of the doctor involved in the appointment.
+     * Sets the hospital ID of the doctor involved in the appointment. The unique identifier is updated to match.
      *
      * @param doctorHospitalId The new doctor hospital ID.
      */
     public void setdoctorHospitalId(String doctorHospitalId) {   // Setter method for doctorHospitalId
-        this.doctorHospitalId = doctorHospitalId;
+        this.doctorCode = HospitalIdDictionary.DOCTORS.encode(doctorHospitalId);
+        this.appointmentKey = AppointmentKey.of(patientCode, doctorCode, getTime());
     }
 
     /**
@@ -0,0 +1,200 @@
+package App.record;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Packs the identifier of an appointment - its patient, its doctor and its time - into a single long.
+ *
+ * The data files identify an appointment by the text patientHospitalId + doctorHospitalId + time, such as
+ * "P1001D0012023-11-01 12:00". In memory the same identifier is a key made of the HospitalIdDictionary.PATIENTS code
+ * of the patient (22 bits, over four million patients), the HospitalIdDictionary.DOCTORS code of the doctor
+ * (14 bits, over sixteen thousand doctors) and the time in epoch minutes (27 bits, up to the year 2225). Patients
+ * and doctors are coded separately, so the codes of both stay within these widths at any realistic size.
+ * Keys are cheap to hash and compare and take no memory of their own; the text is only rebuilt for display, the
+ * journal and the data files.
+ *
+ * Identifiers that do not fit this layout - an invalid time, a time before 1970, or hospital ID codes too large for
+ * their field - are kept as text in a second dictionary and get a negative key instead. Either way, equal
+ * identifiers always get equal keys, and toString gives back the exact text.
+ *
+ * Like the hospital ID codes they are made of, keys are only meaningful within one run of the program; the data
+ * files keep the text form.
+ */
+public final class AppointmentKey {
+    /**
+     * Stands for an identifier that has no key, because it was never seen.
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final int PATIENT_BITS = 22;
+    private static final int DOCTOR_BITS = 14;
+    private static final int MINUTE_BITS = 27;
+    private static final int TIME_LENGTH = "yyyy-MM-dd HH:mm".length();
+
+    private static final Unpacked UNPACKED = new Unpacked();
+
+    /**
+     * Hands out consecutive codes for the text of identifiers that cannot be packed.
+     */
+    private static class Unpacked {
+        private final HashMap<String, Integer> codes = new HashMap<>();
+        private final ArrayList<String> values = new ArrayList<>();
+
+        /**
+         * Gets the code of a string, giving it the next code if it has none yet.
+         */
+        synchronized int encode(String value) {
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            codes.put(value, values.size());
+            values.add(value);
+            return values.size() - 1;
+        }
+
+        /**
+         * Gets the code of a string without giving it one.
+         *
+         * @return The code, or -1 if the string has none.
+         */
+        synchronized int find(String value) {
+            Integer code = codes.get(value);
+            return code != null ? code : -1;
+        }
+
+        synchronized String decode(int code) {
+            return values.get(code);
+        }
+    }
+
+    private AppointmentKey() {
+    }
+
+    /**
+     * Gets the key of the appointment of a patient with a doctor at a time.
+     *
+     * @param patientHospitalId The hospital ID of the patient.
+     * @param doctorHospitalId The hospital ID of the doctor.
+     * @param time The time of the appointment, as written in the data files.
+     * @return The key of the appointment.
+     */
+    public static long of(String patientHospitalId, String doctorHospitalId, String time) {
+        return of(HospitalIdDictionary.PATIENTS.encode(patientHospitalId), HospitalIdDictionary.DOCTORS.encode(doctorHospitalId), time);
+    }
+
+    /**
+     * Gets the key of the appointment of a patient with a doctor at a time, given the codes of their hospital IDs.
+     *
+     * @param patientCode The HospitalIdDictionary.PATIENTS code of the patient.
+     * @param doctorCode The HospitalIdDictionary.DOCTORS code of the doctor.
+     * @param time The time of the appointment, as written in the data files.
+     * @return The key of the appointment.
+     */
+    public static long of(int patientCode, int doctorCode, String time) {
+        long minute = EpochMinutes.parse(time);
+        if (minute != EpochMinutes.UNKNOWN && EpochMinutes.format(minute).equals(time)) {
+            long key = pack(patientCode, doctorCode, minute);
+            if (key != NONE) {
+                return key;
+            }
+        }
+        String text = HospitalIdDictionary.PATIENTS.decode(patientCode) + HospitalIdDictionary.DOCTORS.decode(doctorCode) + time;
+        return unpacked(UNPACKED.encode(text));
+    }
+
+    /**
+     * Gets the key of an identifier read from a data file, given the patient and doctor it belongs to.
+     * An identifier that is not made of the patient, the doctor and a time is kept as text, unless it is
+     * already known as an appointment of other hospital IDs.
+     *
+     * @param appointmentIdentifyId The identifier, such as "P1001D0012023-11-01 12:00".
+     * @param patientHospitalId The hospital ID of the patient.
+     * @param doctorHospitalId The hospital ID of the doctor.
+     * @return The key of the identifier.
+     */
+    public static long parse(String appointmentIdentifyId, String patientHospitalId, String doctorHospitalId) {
+        int prefixLength = patientHospitalId.length() + doctorHospitalId.length();
+        if (appointmentIdentifyId.startsWith(patientHospitalId)
+            && appointmentIdentifyId.startsWith(doctorHospitalId, patientHospitalId.length())) {
+            return of(patientHospitalId, doctorHospitalId, appointmentIdentifyId.substring(prefixLength));
+        }
+        long known = find(appointmentIdentifyId);
+        if (known != NONE) {
+            return known;
+        }
+        return unpacked(UNPACKED.encode(appointmentIdentifyId));
+    }
+
+    /**
+     * Finds the key of an identifier from its text alone, for example an identifier read from the journal.
+     * No codes are handed out, so an identifier that was never seen has no key.
+     *
+     * @param appointmentIdentifyId The identifier, such as "P1001D0012023-11-01 12:00".
+     * @return The key of the identifier, or NONE if it was never seen.
+     */
+    public static long find(String appointmentIdentifyId) {
+        int code = UNPACKED.find(appointmentIdentifyId);
+        if (code >= 0) {
+            return unpacked(code);
+        }
+        int timeStart = appointmentIdentifyId.length() - TIME_LENGTH;
+        if (timeStart < 0) {
+            return NONE;
+        }
+        String time = appointmentIdentifyId.substring(timeStart);
+        long minute = EpochMinutes.parse(time);
+        if (minute == EpochMinutes.UNKNOWN || !EpochMinutes.format(minute).equals(time)) {
+            return NONE;
+        }
+        // The patient and doctor IDs are not separated, so try every split of the text before the time
+        for (int split = 1; split < timeStart; split++) {
+            int patient = HospitalIdDictionary.PATIENTS.find(appointmentIdentifyId.substring(0, split));
+            int doctor = patient < 0 ? -1 : HospitalIdDictionary.DOCTORS.find(appointmentIdentifyId.substring(split, timeStart));
+            if (doctor >= 0) {
+                long key = pack(patient, doctor, minute);
+                if (key != NONE) {
+                    return key;
+                }
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Rebuilds the text form of a key, as used in the data files and the journal.
+     *
+     * @param key The key of an appointment.
+     * @return The identifier, such as "P1001D0012023-11-01 12:00".
+     */
+    public static String toString(long key) {
+        if (key < 0) {
+            return UNPACKED.decode((int) (-key - 1));
+        }
+        int patient = (int) (key >>> (DOCTOR_BITS + MINUTE_BITS));
+        int doctor = (int) ((key >>> MINUTE_BITS) & ((1 << DOCTOR_BITS) - 1));
+        long minute = key & ((1L << MINUTE_BITS) - 1);
+        return HospitalIdDictionary.PATIENTS.decode(patient) + HospitalIdDictionary.DOCTORS.decode(doctor) + EpochMinutes.format(minute);
+    }
+
+    /**
+     * Packs codes and a time into a key.
+     *
+     * @return The key, or NONE if a code is missing or the time does not fit.
+     */
+    private static long pack(int patient, int doctor, long minute) {
+        if (patient < 0 || patient >= 1 << PATIENT_BITS || doctor < 0 || doctor >= 1 << DOCTOR_BITS
+            || minute < 0 || minute >= 1L << MINUTE_BITS) {
+            return NONE;
+        }
+        return ((long) patient << (DOCTOR_BITS + MINUTE_BITS)) | ((long) doctor << MINUTE_BITS) | minute;
+    }
+
+    /**
+     * Turns a code of the text dictionary into a negative key.
+     */
+    private static long unpacked(int code) {
+        return -(long) code - 1;
+    }
+}
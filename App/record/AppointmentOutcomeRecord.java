@@ -1,26 +1,24 @@
 package App.record;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Represents an appointment outcome record, which contains information about the 
  * outcome of an appointment, including consultation notes, service type, and prescriptions.
+ * The prescriptions are a copy-on-write list, so sessions can read them while another session adds one.
  */
 public class AppointmentOutcomeRecord extends Record {
-    private static final String prescriptions_list = "data/Prescriptions_List.csv";
-
-    private String appointmentRecordId;
-    private String serviceType;
-    private String patientHospitalId;
-    private String doctorHospitalId;
-    private final ArrayList<Prescription> prescriptions;
-    private String consultationNotes;  // Changed to single String
+    private final long appointmentKey; // The unique id of the appointment, packed by AppointmentKey
+    private volatile String serviceType;
+    private final int patientCode;     // The hospital IDs, as HospitalIdDictionary.PATIENTS and DOCTORS codes
+    private final int doctorCode;
+    private final List<Prescription> prescriptions;
+    private volatile String consultationNotes;  // Changed to single String
 
     /**
-     * Constructs an AppointmentOutcomeRecord instance with the specified details.
+     * Constructs an AppointmentOutcomeRecord instance with the specified details and no prescriptions.
      *
      * @param appointmentRecordId The unique identifier of the appointment.
      * @param patientHospitalId   The hospital ID of the patient involved in the appointment.
@@ -29,41 +27,74 @@ public class AppointmentOutcomeRecord extends Record {
      * @param consultationNotes   Notes from the consultation.
      */
     public AppointmentOutcomeRecord(String appointmentRecordId, String patientHospitalId, String doctorHospitalId, String serviceType, String consultationNotes) {
-        super();
-        this.appointmentRecordId = appointmentRecordId;
-        this.patientHospitalId = patientHospitalId;
-        this.doctorHospitalId = doctorHospitalId;
-        this.serviceType = serviceType;
-        this.prescriptions = new ArrayList<>();
-        this.consultationNotes = consultationNotes;
-        
-        loadPrescriptions();
+        this(appointmentRecordId, patientHospitalId, doctorHospitalId, serviceType, consultationNotes, new ArrayList<>());
+    }
+
+    /**
+     * Constructs an AppointmentOutcomeRecord instance with the specified details and prescriptions.
+     * The prescriptions are usually supplied by AppointmentOutcomeRecordContainer, which reads the
+     * prescriptions file once and groups the rows by appointment record ID.
+     *
+     * @param appointmentRecordId The unique identifier of the appointment.
+     * @param patientHospitalId   The hospital ID of the patient involved in the appointment.
+     * @param doctorHospitalId    The hospital ID of the doctor involved in the appointment.
+     * @param serviceType         The type of service provided during the appointment.
+     * @param consultationNotes   Notes from the consultation.
+     * @param prescriptions       The prescriptions already recorded for this appointment.
+     */
+    public AppointmentOutcomeRecord(String appointmentRecordId, String patientHospitalId, String doctorHospitalId, String serviceType, String consultationNotes, ArrayList<Prescription> prescriptions) {
+        this(NEW_ID, appointmentRecordId, patientHospitalId, doctorHospitalId, serviceType, consultationNotes, prescriptions);
     }
 
     /**
-     * Loads prescription details from a CSV file and adds them to the list of prescriptions.
-     * The prescriptions are filtered based on the appointment ID to match this instance.
+     * Constructs an AppointmentOutcomeRecord instance with the given record ID, such as one read back from the
+     * data file.
+     *
+     * @param recordId            The record ID, or Record.NEW_ID to have a new one handed out.
+     * @param appointmentRecordId The unique identifier of the appointment.
+     * @param patientHospitalId   The hospital ID of the patient involved in the appointment.
+     * @param doctorHospitalId    The hospital ID of the doctor involved in the appointment.
+     * @param serviceType         The type of service provided during the appointment.
+     * @param consultationNotes   Notes from the consultation.
+     * @param prescriptions       The prescriptions already recorded for this appointment.
      */
-    private void loadPrescriptions() {
-        try (BufferedReader br = new BufferedReader(new FileReader(prescriptions_list))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] fields = line.split(",");
-                if (fields.length >= 4) {
-                    String fileAppointmentRecordId = fields[0].trim();
-                    if (fileAppointmentRecordId.equals(this.appointmentRecordId)) {
-                        String medicine = fields[1].trim();
-                        int amount = Integer.parseInt(fields[2].trim());
-                        String status = fields[3].trim();
+    public AppointmentOutcomeRecord(int recordId, String appointmentRecordId, String patientHospitalId, String doctorHospitalId, String serviceType, String consultationNotes, ArrayList<Prescription> prescriptions) {
+        this(recordId, AppointmentKey.parse(appointmentRecordId, patientHospitalId, doctorHospitalId), patientHospitalId, doctorHospitalId, serviceType, consultationNotes, prescriptions);
+    }
 
-                        Prescription prescription = new Prescription(medicine, amount, status);
-                        prescriptions.add(prescription);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    /**
+     * Constructs an AppointmentOutcomeRecord instance for the appointment with the given key.
+     *
+     * @param appointmentKey      The key of the appointment, see Appointment.getAppointmentKey.
+     * @param patientHospitalId   The hospital ID of the patient involved in the appointment.
+     * @param doctorHospitalId    The hospital ID of the doctor involved in the appointment.
+     * @param serviceType         The type of service provided during the appointment.
+     * @param consultationNotes   Notes from the consultation.
+     * @param prescriptions       The prescriptions already recorded for this appointment.
+     */
+    public AppointmentOutcomeRecord(long appointmentKey, String patientHospitalId, String doctorHospitalId, String serviceType, String consultationNotes, ArrayList<Prescription> prescriptions) {
+        this(NEW_ID, appointmentKey, patientHospitalId, doctorHospitalId, serviceType, consultationNotes, prescriptions);
+    }
+
+    /**
+     * Constructs an AppointmentOutcomeRecord instance with the given record ID for the appointment with the given key.
+     *
+     * @param recordId            The record ID, or Record.NEW_ID to have a new one handed out.
+     * @param appointmentKey      The key of the appointment, see Appointment.getAppointmentKey.
+     * @param patientHospitalId   The hospital ID of the patient involved in the appointment.
+     * @param doctorHospitalId    The hospital ID of the doctor involved in the appointment.
+     * @param serviceType         The type of service provided during the appointment.
+     * @param consultationNotes   Notes from the consultation.
+     * @param prescriptions       The prescriptions already recorded for this appointment.
+     */
+    public AppointmentOutcomeRecord(int recordId, long appointmentKey, String patientHospitalId, String doctorHospitalId, String serviceType, String consultationNotes, ArrayList<Prescription> prescriptions) {
+        super(recordId);
+        this.appointmentKey = appointmentKey;
+        this.patientCode = HospitalIdDictionary.PATIENTS.encode(patientHospitalId);
+        this.doctorCode = HospitalIdDictionary.DOCTORS.encode(doctorHospitalId);
+        this.serviceType = serviceType;
+        this.prescriptions = new CopyOnWriteArrayList<>(prescriptions);
+        this.consultationNotes = consultationNotes;
     }
 
     /**
@@ -77,12 +108,21 @@ public class AppointmentOutcomeRecord extends Record {
     }
 
     /**
-     * Returns the appointment record ID.
+     * Returns the appointment record ID, for display and for the data files.
      *
      * @return The unique identifier for this appointment.
      */
     public String getAppointmentRecordId() {
-        return appointmentRecordId;
+        return AppointmentKey.toString(appointmentKey);
+    }
+
+    /**
+     * Returns the key of the appointment, to look up or index records by.
+     *
+     * @return The key of the appointment, see AppointmentKey.
+     */
+    public long getAppointmentKey() {
+        return appointmentKey;
     }
 
     /**
@@ -91,7 +131,16 @@ public class AppointmentOutcomeRecord extends Record {
      * @return The patient hospital ID.
      */
     public String getPatientHospitalId() {
-        return patientHospitalId;
+        return HospitalIdDictionary.PATIENTS.decode(patientCode);
+    }
+
+    /**
+     * Returns the hospital ID of the patient as a HospitalIdDictionary.PATIENTS code, to compare or index records by.
+     *
+     * @return The code of the patient hospital ID.
+     */
+    public int getPatientCode() {
+        return patientCode;
     }
 
 
@@ -101,7 +150,7 @@ public class AppointmentOutcomeRecord extends Record {
      * @return The doctor hospital ID.
      */
     public String getDoctorHospitalId() {
-        return doctorHospitalId;
+        return HospitalIdDictionary.DOCTORS.decode(doctorCode);
     }
 
 
@@ -128,7 +177,7 @@ public class AppointmentOutcomeRecord extends Record {
      *
      * @return A list of Prescription objects.
      */
-    public ArrayList<Prescription> getPrescriptions() {
+    public List<Prescription> getPrescriptions() {
         return prescriptions;
     }
 
@@ -140,8 +189,21 @@ public class AppointmentOutcomeRecord extends Record {
      * @param amount       The quantity of the prescribed medicine.
      */
     public void addPrescription(String medicineName, int amount) {
-        Prescription prescription = new Prescription(medicineName, amount, "Pending");
+        addPrescription(NEW_ID, medicineName, amount);
+    }
+
+    /**
+     * Adds a new prescription with the given record ID to the list of prescriptions.
+     *
+     * @param recordId     The record ID, or Record.NEW_ID to have a new one handed out.
+     * @param medicineName The name of the prescribed medicine.
+     * @param amount       The quantity of the prescribed medicine.
+     * @return The new prescription.
+     */
+    public Prescription addPrescription(int recordId, String medicineName, int amount) {
+        Prescription prescription = new Prescription(recordId, medicineName, amount, "Pending");
         prescriptions.add(prescription);
+        return prescription;
     }
 
     /**
@@ -0,0 +1,188 @@
+package App.record;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+
+/**
+ * Converts appointment and slot times between the "yyyy-MM-dd HH:mm" text used in the data files and
+ * the number of minutes since 1970-01-01 00:00, which can be compared, sorted and used as a key.
+ * Times are local clinic times; no time zone is applied.
+ *
+ * The text always has the same width, so it is parsed and formatted by hand, digit by digit, without creating
+ * any objects besides the formatted string. The class holds no state and is safe to use from any thread.
+ */
+public final class EpochMinutes {
+    public static final long MINUTES_PER_DAY = 24 * 60;
+    public static final long MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    /**
+     * Stands for a time that cannot be parsed. It sorts after every valid time.
+     */
+    public static final long UNKNOWN = Long.MAX_VALUE;
+
+    private static final int LENGTH = "yyyy-MM-dd HH:mm".length();
+    private static final long DAYS_0000_TO_1970 = 719468; // Counted from 0000-03-01, the start of the calendar used below
+    private static final DateTimeFormatter FORMAT =
+        DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm").withResolverStyle(ResolverStyle.STRICT);
+
+    private EpochMinutes() {
+    }
+
+    /**
+     * Parses a time in the format "yyyy-MM-dd HH:mm". Surrounding whitespace is ignored.
+     *
+     * @param dateTime The time to parse.
+     * @return The minutes since 1970-01-01 00:00, or UNKNOWN if the text is not a valid time.
+     */
+    public static long parse(String dateTime) {
+        if (dateTime == null) {
+            return UNKNOWN;
+        }
+        int start = 0;
+        int end = dateTime.length();
+        while (start < end && dateTime.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && dateTime.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end - start != LENGTH
+            || dateTime.charAt(start + 4) != '-' || dateTime.charAt(start + 7) != '-'
+            || dateTime.charAt(start + 10) != ' ' || dateTime.charAt(start + 13) != ':') {
+            return UNKNOWN;
+        }
+        int year = digits(dateTime, start, 4);
+        int month = digits(dateTime, start + 5, 2);
+        int day = digits(dateTime, start + 8, 2);
+        int hour = digits(dateTime, start + 11, 2);
+        int minute = digits(dateTime, start + 14, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+            || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return UNKNOWN;
+        }
+        return daysSinceEpoch(year, month, day) * MINUTES_PER_DAY + hour * 60 + minute;
+    }
+
+    /**
+     * Formats a number of minutes since 1970-01-01 00:00 as "yyyy-MM-dd HH:mm".
+     *
+     * @param epochMinute The time to format.
+     * @return The formatted time.
+     */
+    public static String format(long epochMinute) {
+        // Convert the day to a date in a calendar whose years start on 1 March, so the leap day comes last
+        long days = Math.floorDiv(epochMinute, MINUTES_PER_DAY) + DAYS_0000_TO_1970;
+        int minuteOfDay = (int) Math.floorMod(epochMinute, MINUTES_PER_DAY);
+        long era = Math.floorDiv(days, 146097);
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC).format(FORMAT);
+        }
+
+        char[] text = new char[LENGTH];
+        putDigits(text, 0, (int) year, 4);
+        text[4] = '-';
+        putDigits(text, 5, month, 2);
+        text[7] = '-';
+        putDigits(text, 8, day, 2);
+        text[10] = ' ';
+        putDigits(text, 11, minuteOfDay / 60, 2);
+        text[13] = ':';
+        putDigits(text, 14, minuteOfDay % 60, 2);
+        return new String(text);
+    }
+
+    /**
+     * Checks whether a text is a valid time in the format "yyyy-MM-dd HH:mm".
+     *
+     * @param dateTime The text to check.
+     * @return True if the text is a valid time, otherwise false.
+     */
+    public static boolean isValid(String dateTime) {
+        return parse(dateTime) != UNKNOWN;
+    }
+
+    /**
+     * Gets the current time.
+     *
+     * @return The minutes since 1970-01-01 00:00 of the current local time.
+     */
+    public static long now() {
+        return LocalDateTime.now().toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    /**
+     * Gets the start of the day a time falls on.
+     *
+     * @param epochMinute A time.
+     * @return The time of midnight at the start of that day.
+     */
+    public static long startOfDay(long epochMinute) {
+        return epochMinute - Math.floorMod(epochMinute, MINUTES_PER_DAY);
+    }
+
+    /**
+     * Reads a number of the given count of decimal digits.
+     *
+     * @return The number, or -1 if one of the characters is not a digit.
+     */
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Writes a number as the given count of decimal digits, padded with zeros.
+     */
+    private static void putDigits(char[] text, int start, int value, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * Gets the number of days in a month of the proleptic Gregorian calendar.
+     */
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Counts the days from 1970-01-01 to a date, in a calendar whose years start on 1 March.
+     */
+    private static long daysSinceEpoch(int year, int month, int day) {
+        long shiftedYear = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(shiftedYear, 400);
+        long yearOfEra = shiftedYear - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - DAYS_0000_TO_1970;
+    }
+}
@@ -0,0 +1,109 @@
+package App.record;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every hospital ID, such as "P1001" or "D001", a small int code that records and users store instead of the
+ * ID itself.
+ *
+ * The same patient and doctor IDs appear in every appointment, outcome record and medical record, and in the
+ * patients under care of each doctor. Storing the code keeps a single copy of each ID in the whole program and lets
+ * records be compared and indexed by an int. The ID text is looked up again only where it is shown or written to a
+ * data file.
+ *
+ * Patients and doctors have a dictionary each, PATIENTS and DOCTORS, and every field that holds a code says which
+ * one it comes from. Each dictionary hands out its own codes, so the many patients do not use up the codes of the few
+ * doctors, and the codes of either stay small enough to be packed together into an AppointmentKey.
+ *
+ * Codes are dense, start at 0 and are handed out in the order IDs are first seen, so they are only meaningful within
+ * one run of the program; the data files keep the ID text. A code is never taken back, even when its user is
+ * removed. All methods are safe to call from the loaders, which run in parallel, and from concurrent sessions.
+ * Looking up a code or an ID takes no lock; only handing out a new code does. The array of IDs is written again
+ * after each new code, so a thread that got a code from the map also finds its ID in the array.
+ */
+public final class HospitalIdDictionary {
+    /**
+     * Stands for a hospital ID that has no code, because it was never seen.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * The codes of patient hospital IDs.
+     */
+    public static final HospitalIdDictionary PATIENTS = new HospitalIdDictionary();
+
+    /**
+     * The codes of doctor hospital IDs.
+     */
+    public static final HospitalIdDictionary DOCTORS = new HospitalIdDictionary();
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] hospitalIds = new String[256];
+    private volatile int size;
+
+    private HospitalIdDictionary() {
+    }
+
+    /**
+     * Gets the code of a hospital ID, giving it the next free code if it has none yet.
+     *
+     * @param hospitalId The hospital ID.
+     * @return The code of the hospital ID.
+     */
+    public int encode(String hospitalId) {
+        Integer code = codes.get(hospitalId);
+        return code != null ? code : add(hospitalId);
+    }
+
+    /**
+     * Gives a hospital ID the next free code, unless another thread gave it one first.
+     */
+    private synchronized int add(String hospitalId) {
+        Integer code = codes.get(hospitalId);
+        if (code != null) {
+            return code;
+        }
+        String[] ids = size == hospitalIds.length ? Arrays.copyOf(hospitalIds, size * 2) : hospitalIds;
+        ids[size] = hospitalId;
+        hospitalIds = ids; // Publishes the ID before the code can be seen
+        codes.put(hospitalId, size);
+        return size++;
+    }
+
+    /**
+     * Gets the code of a hospital ID without giving it one, for example to look up records by an ID entered
+     * in a menu.
+     *
+     * @param hospitalId The hospital ID.
+     * @return The code of the hospital ID, or NONE if it was never seen.
+     */
+    public int find(String hospitalId) {
+        Integer code = codes.get(hospitalId);
+        return code != null ? code : NONE;
+    }
+
+    /**
+     * Gets the hospital ID of a code.
+     *
+     * @param code A code returned by encode.
+     * @return The hospital ID.
+     */
+    public String decode(int code) {
+        String[] ids = hospitalIds;
+        String hospitalId = code >= 0 && code < ids.length ? ids[code] : null;
+        if (hospitalId == null) {
+            throw new IllegalArgumentException("Unknown hospital ID code: " + code);
+        }
+        return hospitalId;
+    }
+
+    /**
+     * Gets the number of hospital IDs that have a code.
+     *
+     * @return The number of codes handed out so far.
+     */
+    public int size() {
+        return size;
+    }
+}
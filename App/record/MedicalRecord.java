@@ -1,66 +1,52 @@
 package App.record;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Represents the medical record of a patient, which contains information such as 
- * diagnoses and treatment plans. Medical records are loaded from a CSV file.
+ * diagnoses and treatment plans. Medical records are loaded from a CSV file by PatientContainer.
+ * The lists are copy-on-write, so a doctor can update a record while the patient is viewing it.
  */
 public class MedicalRecord extends Record {
-    private String patientHospitalId;
-    private ArrayList<String> diagnoses;
-    private ArrayList<String> treatments;
+    private volatile int patientCode; // The hospital ID of the patient, as a HospitalIdDictionary.PATIENTS code
+    private final List<String> diagnoses;
+    private final List<String> treatments;
 
     /**
-     * Constructs a MedicalRecord for a specific patient based on the provided CSV file path.
+     * Constructs an empty MedicalRecord for a patient that has no diagnoses or treatments yet.
      *
      * @param patientHospitalId The hospital ID of the patient.
-     * @param medicalRecordPath The path to the CSV file containing medical records.
      */
-    public MedicalRecord(String patientHospitalId, String medicalRecordPath) {
-        super();
-        this.patientHospitalId = patientHospitalId;
-        this.treatments = new ArrayList<>();
-        this.diagnoses = new ArrayList<>();
-        
-        // Load data for this specific patientHospitalId
-        loadMedicalRecordFromCSV(medicalRecordPath);
+    public MedicalRecord(String patientHospitalId) {
+        this(patientHospitalId, new ArrayList<>(), new ArrayList<>());
     }
 
     /**
-     * Loads the medical record data for the specified patient from a CSV file.
+     * Constructs a MedicalRecord for a specific patient with the given diagnoses and treatments.
      *
-     * @param filePath The path to the CSV file containing medical records.
+     * @param patientHospitalId The hospital ID of the patient.
+     * @param diagnoses         The diagnoses of the patient.
+     * @param treatments        The treatment plans of the patient.
      */
-    private void loadMedicalRecordFromCSV(String filePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            boolean isHeader = true;
-            
-            while ((line = br.readLine()) != null) {
-                if (isHeader) {
-                    isHeader = false; // Skip header line
-                    continue;
-                }
-                
-                String[] fields = line.split(",");
-                String csvPatientHospitalId = fields[0].trim();
-                
-                // Check if this line corresponds to the current patient's ID
-                if (csvPatientHospitalId.equals(this.patientHospitalId)) {
-                    // Parse diagnoses and treatments into lists
-                    this.diagnoses = new ArrayList<>(Arrays.asList(fields[1].split(";")));
-                    this.treatments = new ArrayList<>(Arrays.asList(fields[2].split(";")));
-                    break; // Stop after finding the matching record
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    public MedicalRecord(String patientHospitalId, ArrayList<String> diagnoses, ArrayList<String> treatments) {
+        this(NEW_ID, patientHospitalId, diagnoses, treatments);
+    }
+
+    /**
+     * Constructs a MedicalRecord with the given record ID, such as one read back from the data file.
+     *
+     * @param recordId          The record ID, or Record.NEW_ID to have a new one handed out.
+     * @param patientHospitalId The hospital ID of the patient.
+     * @param diagnoses         The diagnoses of the patient.
+     * @param treatments        The treatment plans of the patient.
+     */
+    public MedicalRecord(int recordId, String patientHospitalId, ArrayList<String> diagnoses, ArrayList<String> treatments) {
+        super(recordId);
+        this.patientCode = HospitalIdDictionary.PATIENTS.encode(patientHospitalId);
+        this.diagnoses = new CopyOnWriteArrayList<>(diagnoses);
+        this.treatments = new CopyOnWriteArrayList<>(treatments);
     }
 
     /**
@@ -70,7 +56,7 @@ public class MedicalRecord extends Record {
      */
     @Override
     public String toString() {
-        return "Patient"+patientHospitalId;
+        return "Patient"+getPatientHospitalId();
     }
 
     /**
@@ -79,7 +65,7 @@ public class MedicalRecord extends Record {
      * @return The hospital ID of the patient.
      */
     public String getPatientHospitalId() {
-        return patientHospitalId;
+        return HospitalIdDictionary.PATIENTS.decode(patientCode);
     }
 
     /**
@@ -88,7 +74,7 @@ public class MedicalRecord extends Record {
      * @param patientHospitalId The hospital ID to set.
      */
     public void setPatientHospitalId(String patientHospitalId) {
-        this.patientHospitalId = patientHospitalId;
+        this.patientCode = HospitalIdDictionary.PATIENTS.encode(patientHospitalId);
     }
 
     /**
@@ -96,7 +82,7 @@ public class MedicalRecord extends Record {
      *
      * @return A list of treatment plans.
      */
-    public ArrayList<String> getTreatments() {
+    public List<String> getTreatments() {
         return treatments;
     }
 
@@ -106,7 +92,7 @@ public class MedicalRecord extends Record {
      * @param index         The index of the treatment plan to update.
      * @param treatmentPlan The new treatment plan.
      */
-    public void setTreatment(int index, String treatmentPlan) {
+    public synchronized void setTreatment(int index, String treatmentPlan) {
         if (index >= 0 && index < treatments.size()) {
             treatments.set(index, treatmentPlan);
         }
@@ -120,7 +106,7 @@ public class MedicalRecord extends Record {
      *
      * @param treatmentPlan The treatment plan to add.
      */
-    public void addTreatment(String treatmentPlan) {
+    public synchronized void addTreatment(String treatmentPlan) {
         treatments.add(treatmentPlan);
     }
 
@@ -129,7 +115,7 @@ public class MedicalRecord extends Record {
      *
      * @param index The index of the treatment plan to remove.
      */
-    public void removeTreatmentPlan(int index) {
+    public synchronized void removeTreatmentPlan(int index) {
         if (index >= 0 && index < treatments.size()) {
             treatments.remove(index);
         }
@@ -140,7 +126,7 @@ public class MedicalRecord extends Record {
      *
      * @return A list of diagnoses.
      */
-    public ArrayList<String> getDiagnoses() {
+    public List<String> getDiagnoses() {
         return diagnoses;
     }
 
@@ -151,7 +137,7 @@ public class MedicalRecord extends Record {
      * @param index    The index of the diagnosis to update.
      * @param diagnose The new diagnosis.
      */
-    public void setDiagnose(int index, String diagnose) {
+    public synchronized void setDiagnose(int index, String diagnose) {
         if (index >= 0 && index < diagnoses.size()) {
             diagnoses.set(index, diagnose);
         }
@@ -165,7 +151,7 @@ public class MedicalRecord extends Record {
      *
      * @param diagnose The diagnosis to add.
      */
-    public void addDiagnose(String diagnose) {
+    public synchronized void addDiagnose(String diagnose) {
         diagnoses.add(diagnose);
     }
 
@@ -175,7 +161,7 @@ public class MedicalRecord extends Record {
      *
      * @param index The index of the diagnosis to remove.
      */
-    public void removeDiagnose(int index) {
+    public synchronized void removeDiagnose(int index) {
         if (index >= 0 && index < diagnoses.size()) {
             diagnoses.remove(index);
         }
@@ -5,9 +5,9 @@ package App.record;
  * name, current stock, and alert threshold for replenishment.
  */
 public class Medicine extends Record {
-    private String medicineName;
-    private int currentStock;
-    private int alertThreshold;
+    private volatile String medicineName;
+    private volatile int currentStock;
+    private volatile int alertThreshold;
 
     /**
      * Constructs a Medicine record with the specified name, stock level, and alert threshold.
@@ -17,7 +17,19 @@ public class Medicine extends Record {
      * @param alertThreshold The stock level at which an alert should be triggered.
      */
     public Medicine(String medicineName, int currentStock, int alertThreshold) {
-        super();
+        this(NEW_ID, medicineName, currentStock, alertThreshold);
+    }
+
+    /**
+     * Constructs a Medicine record with the given record ID, such as one read back from the data file.
+     *
+     * @param recordId       The record ID, or Record.NEW_ID to have a new one handed out.
+     * @param medicineName   The name of the medicine.
+     * @param currentStock   The current stock level of the medicine.
+     * @param alertThreshold The stock level at which an alert should be triggered.
+     */
+    public Medicine(int recordId, String medicineName, int currentStock, int alertThreshold) {
+        super(recordId);
         this.medicineName = medicineName;
         this.currentStock = currentStock;
         this.alertThreshold = alertThreshold;
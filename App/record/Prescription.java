@@ -5,9 +5,9 @@ package App.record;
  * medicine name, prescribed amount, and the status of the prescription.
  */
 public class Prescription extends Record {
-    private String medicine;
-    private int amount;
-    private String status ;
+    private volatile String medicine;
+    private volatile int amount;
+    private volatile String status;
 
     /**
      * Constructs a Prescription record with the specified medicine name, amount, and status.
@@ -17,7 +17,19 @@ public class Prescription extends Record {
      * @param status   The status of the prescription (e.g., "Pending", "Dispensed").
      */
     public Prescription(String medicine, int amount, String status) {
-        super();  // Passes the unique ID to the Record superclass
+        this(NEW_ID, medicine, amount, status);
+    }
+
+    /**
+     * Constructs a Prescription record with the given record ID, such as one read back from the data file.
+     *
+     * @param recordId The record ID, or Record.NEW_ID to have a new one handed out.
+     * @param medicine The name of the medicine being prescribed.
+     * @param amount   The amount of the medicine prescribed.
+     * @param status   The status of the prescription (e.g., "Pending", "Dispensed").
+     */
+    public Prescription(int recordId, String medicine, int amount, String status) {
+        super(recordId);  // Passes the ID to the Record superclass
         this.medicine = medicine;
         this.amount = amount;
         this.status = status;
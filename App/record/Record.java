@@ -4,18 +4,38 @@ package App.record;
  * Represents an abstract record with a unique identifier.
  * 
  * This class serves as a base for all records within the system,
- * providing a globally unique identifier (ID) for each instance.
+ * providing an identifier (ID) that is unique among the records of the same type.
  */
 public abstract class Record {
-    private static int globalRecordCounter = 0; // Shared counter for all records
+    /**
+     * Passed instead of a record ID to have a new one handed out.
+     */
+    public static final int NEW_ID = -1;
+
     private final int recordId;
 
     /**
      * Constructs a new Record instance with a unique record ID.
-     * The record ID is generated automatically and incremented globally.
+     * The record ID is handed out by the RecordIdAllocator of the record's class, without taking a lock.
      */
     public Record() {
-        this.recordId = globalRecordCounter++; // Increment counter for each new instance
+        this(NEW_ID);
+    }
+
+    /**
+     * Constructs a Record instance with the given record ID, such as one read back from a data file or the journal.
+     * The RecordIdAllocator of the record's class does not hand out that ID again.
+     *
+     * @param recordId The record ID, or NEW_ID to have a new one handed out.
+     */
+    public Record(int recordId) {
+        RecordIdAllocator allocator = RecordIdAllocator.forType(getClass());
+        if (recordId < 0) {
+            this.recordId = allocator.nextId();
+        } else {
+            allocator.raiseHighWaterMark(recordId + 1L);
+            this.recordId = recordId;
+        }
     }
 
     /**
@@ -0,0 +1,176 @@
+package App.record;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out record IDs, with a separate sequence for each type of record, such as Appointment or Medicine.
+ *
+ * Each allocator keeps its high-water mark - the first ID not yet handed out to any thread - in an AtomicLong. A
+ * thread takes a block of BLOCK_SIZE IDs from the mark at a time and hands them out on its own, so creating a record
+ * never takes a lock and threads that create records at the same time, such as the parallel loaders and the journal
+ * compactor, never receive the same ID. The IDs one thread creates in a row are consecutive, which keeps the records
+ * of a container close together in its RecordMap.
+ *
+ * Record IDs are stored with their records in the data files and in the journal entries that create records, so a
+ * record keeps its ID across restarts and journal compactions. A record read back with its ID raises the high-water
+ * mark past it, so loading takes no new IDs. The high-water marks are also saved to a file at checkpoints and read
+ * back at startup, after the data files, so the IDs of records removed since are not handed out again. IDs of a
+ * block that was not used up are skipped.
+ */
+public final class RecordIdAllocator {
+    /**
+     * The number of IDs a thread takes from the high-water mark at a time.
+     */
+    public static final int BLOCK_SIZE = 64;
+
+    private static final ConcurrentHashMap<String, RecordIdAllocator> allocators = new ConcurrentHashMap<>();
+    private static final ClassValue<RecordIdAllocator> byClass = new ClassValue<RecordIdAllocator>() {
+        @Override
+        protected RecordIdAllocator computeValue(Class<?> type) {
+            String name = type.getSimpleName();
+            return forType(name.isEmpty() ? type.getName() : name);
+        }
+    };
+
+    private final String recordType;
+    private final AtomicLong highWaterMark = new AtomicLong();
+    private final ThreadLocal<long[]> blocks = ThreadLocal.withInitial(() -> new long[2]); // {next ID, end of block}
+
+    private RecordIdAllocator(String recordType) {
+        this.recordType = recordType;
+    }
+
+    /**
+     * Gets the allocator of a type of record, creating it the first time.
+     *
+     * @param recordType The name of the type, such as "Appointment".
+     * @return The allocator of the type.
+     */
+    public static RecordIdAllocator forType(String recordType) {
+        return allocators.computeIfAbsent(recordType, RecordIdAllocator::new);
+    }
+
+    /**
+     * Gets the allocator of a record class, named after its simple name. The lookup does not lock once the class
+     * has been seen.
+     *
+     * @param type The class of the record.
+     * @return The allocator of the class.
+     */
+    public static RecordIdAllocator forType(Class<?> type) {
+        return byClass.get(type);
+    }
+
+    /**
+     * Hands out the next ID of this type.
+     *
+     * @return An ID no other record of this type received in this run or, after a checkpoint, in an earlier run.
+     */
+    public int nextId() {
+        long[] block = blocks.get();
+        if (block[0] == block[1]) {
+            long start = highWaterMark.getAndAdd(BLOCK_SIZE);
+            if (start + BLOCK_SIZE > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Record IDs of " + recordType + " are used up");
+            }
+            block[0] = start;
+            block[1] = start + BLOCK_SIZE;
+        }
+        return (int) block[0]++;
+    }
+
+    /**
+     * Gets the name of the type of record this allocator hands out IDs for.
+     *
+     * @return The name of the type.
+     */
+    public String getRecordType() {
+        return recordType;
+    }
+
+    /**
+     * Gets the high-water mark, the first ID not yet taken by any thread.
+     *
+     * @return The high-water mark.
+     */
+    public long getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    /**
+     * Raises the high-water mark, so no ID below it is handed out from now on. A lower mark is ignored.
+     * Blocks threads already took are not affected, so this is meant to be called while records are loaded,
+     * before new records are created.
+     *
+     * @param mark The new high-water mark.
+     */
+    public void raiseHighWaterMark(long mark) {
+        highWaterMark.accumulateAndGet(mark, Math::max);
+    }
+
+    /**
+     * Reads the high-water marks saved by save and raises the marks of the allocators to them.
+     * A missing file is not an error; it means no marks were saved yet.
+     *
+     * @param filePath Path to the file of high-water marks.
+     */
+    public static void load(String filePath) {
+        try {
+            List<String> lines = Files.readAllLines(Paths.get(filePath), StandardCharsets.UTF_8);
+            for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) { // Skip the header line
+                String[] fields = line.split(",");
+                if (fields.length == 2) {
+                    try {
+                        forType(fields[0].trim()).raiseHighWaterMark(Long.parseLong(fields[1].trim()));
+                    } catch (NumberFormatException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // Nothing saved yet
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Saves the high-water mark of every allocator. The file is written next to its destination first and then
+     * moved into place, so a crash leaves either the old or the new marks.
+     *
+     * @param filePath Path to the file of high-water marks.
+     */
+    public static synchronized void save(String filePath) {
+        Map<String, Long> marks = new TreeMap<>();
+        for (RecordIdAllocator allocator : allocators.values()) {
+            marks.put(allocator.recordType, allocator.getHighWaterMark());
+        }
+        Path target = Paths.get(filePath);
+        Path temp = Paths.get(filePath + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write("RecordType,HighWaterMark");
+                writer.newLine();
+                for (Map.Entry<String, Long> entry : marks.entrySet()) {
+                    writer.write(entry.getKey() + "," + entry.getValue());
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
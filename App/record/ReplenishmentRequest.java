@@ -9,7 +9,7 @@ package App.record;
 public class ReplenishmentRequest extends Record {
     private String medicineName;
     private int quantity;
-    private String status ;
+    private volatile String status;
 
     /**
      * Constructs a new ReplenishmentRequest instance.
@@ -19,7 +19,19 @@ public class ReplenishmentRequest extends Record {
      * @param status The current status of the replenishment request (e.g., "pending", "approved").
      */
     public ReplenishmentRequest(String medicineName, int quantity , String status) {
-        super();
+        this(NEW_ID, medicineName, quantity, status);
+    }
+
+    /**
+     * Constructs a ReplenishmentRequest instance with the given record ID, such as one read back from the data file.
+     * 
+     * @param recordId The record ID, or Record.NEW_ID to have a new one handed out.
+     * @param medicineName The name of the medicine for which replenishment is requested.
+     * @param quantity The quantity of the medicine to be replenished.
+     * @param status The current status of the replenishment request (e.g., "pending", "approved").
+     */
+    public ReplenishmentRequest(int recordId, String medicineName, int quantity, String status) {
+        super(recordId);
         this.medicineName = medicineName;
         this.quantity = quantity;
         this.status = status;
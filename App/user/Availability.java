@@ -0,0 +1,299 @@
+package App.user;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import App.record.EpochMinutes;
+
+/**
+ * The available appointment slots of a doctor.
+ *
+ * Slots are kept as minutes since 1970-01-01 00:00 in a sorted set, so adding, booking and releasing a slot,
+ * checking for overlaps and finding the first free slot after a given time all take O(log n).
+ * Every slot starts at its time and lasts SLOT_MINUTES.
+ *
+ * Slots are still read from and written to the data files in the "yyyy-MM-dd HH:mm" format. Slots in the files
+ * that are not valid times are kept as they are, so they are written back unchanged, but they can never be booked.
+ *
+ * The set is a concurrent skip list, so slots can be searched and listed by one session while another books or
+ * releases one; each slot is added or removed atomically, so a slot is booked at most once.
+ *
+ * While a patient confirms a booking, the slot can be held for them for HOLD_SECONDS. A held slot stays available,
+ * but other patients cannot hold or claim it until the hold is released or runs out. Holds are kept in a concurrent
+ * map and replaced by compare-and-set, and a slot is claimed by removing it from the set, so neither takes a lock:
+ * of several patients claiming the same slot at once, exactly one succeeds. A hold that ran out is dropped from the
+ * map the next time hold or isHeldByOther comes across it.
+ */
+public class Availability {
+    /**
+     * The length of an appointment slot, in minutes.
+     */
+    public static final long SLOT_MINUTES = 60;
+
+    /**
+     * How long a hold keeps a slot for a patient, in seconds. Can be set with the system property
+     * "hms.slot.hold.seconds".
+     */
+    public static final long HOLD_SECONDS = Long.getLong("hms.slot.hold.seconds", 120);
+
+    private final ConcurrentSkipListSet<Long> slots = new ConcurrentSkipListSet<>();
+    private final CopyOnWriteArrayList<String> invalidSlots = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<Long, Hold> holds = new ConcurrentHashMap<>();
+
+    /**
+     * A hold on a slot: who holds it and until when.
+     */
+    private static final class Hold {
+        final String holderId;
+        final long expiresAt; // In System.nanoTime()
+
+        Hold(String holderId, long expiresAt) {
+            this.holderId = holderId;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * Checks whether the hold ran out, at the given System.nanoTime().
+         */
+        boolean expired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    /**
+     * Constructs an empty Availability.
+     */
+    public Availability() {
+    }
+
+    /**
+     * Constructs an Availability holding the given slots. Duplicates are added only once.
+     *
+     * @param slots The slots, in the format "yyyy-MM-dd HH:mm".
+     */
+    public Availability(List<String> slots) {
+        for (String slot : slots) {
+            add(slot);
+        }
+    }
+
+    /**
+     * Adds a slot.
+     *
+     * @param slot The slot, in the format "yyyy-MM-dd HH:mm".
+     * @return True if the slot was added, false if it was already available.
+     */
+    public boolean add(String slot) {
+        long start = EpochMinutes.parse(slot);
+        if (start == EpochMinutes.UNKNOWN) {
+            return invalidSlots.addIfAbsent(slot);
+        }
+        return slots.add(start);
+    }
+
+    /**
+     * Adds a slot.
+     *
+     * @param start The start of the slot, in minutes since 1970-01-01 00:00.
+     * @return True if the slot was added, false if it was already available.
+     */
+    public boolean add(long start) {
+        return slots.add(start);
+    }
+
+    /**
+     * Removes a slot, for example because it was booked.
+     *
+     * @param slot The slot, in the format "yyyy-MM-dd HH:mm".
+     * @return True if the slot was removed, false if it was not available.
+     */
+    public boolean remove(String slot) {
+        long start = EpochMinutes.parse(slot);
+        if (start == EpochMinutes.UNKNOWN) {
+            return invalidSlots.remove(slot);
+        }
+        return remove(start);
+    }
+
+    /**
+     * Removes a slot, for example because it was booked.
+     *
+     * @param start The start of the slot, in minutes since 1970-01-01 00:00.
+     * @return True if the slot was removed, false if it was not available.
+     */
+    public boolean remove(long start) {
+        if (!slots.remove(start)) {
+            return false;
+        }
+        holds.remove(start);
+        return true;
+    }
+
+    /**
+     * Holds an available slot for someone for HOLD_SECONDS, or renews their hold. Fails if the slot is not
+     * available or someone else holds it.
+     *
+     * @param start The start of the slot, in minutes since 1970-01-01 00:00.
+     * @param holderId The hospital ID of the patient the slot is held for.
+     * @return True if the slot is now held for them, otherwise false.
+     */
+    public boolean hold(long start, String holderId) {
+        Hold mine = new Hold(holderId, System.nanoTime() + HOLD_SECONDS * 1_000_000_000L);
+        while (slots.contains(start)) {
+            Hold current = holds.get(start);
+            if (current != null && current.expired(System.nanoTime())) {
+                holds.remove(start, current); // Ran out, so it no longer takes up room in the map
+                continue;
+            }
+            if (current != null && !current.holderId.equals(holderId)) {
+                return false;
+            }
+            if (current == null ? holds.putIfAbsent(start, mine) == null : holds.replace(start, current, mine)) {
+                if (!slots.contains(start)) { // Claimed meanwhile, so the hold is of no use
+                    holds.remove(start, mine);
+                    return false;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Releases the hold someone has on a slot. A hold of someone else is kept.
+     *
+     * @param start The start of the slot, in minutes since 1970-01-01 00:00.
+     * @param holderId The hospital ID of the patient the slot is held for.
+     */
+    public void release(long start, String holderId) {
+        Hold current = holds.get(start);
+        if (current != null && current.holderId.equals(holderId)) {
+            holds.remove(start, current);
+        }
+    }
+
+    /**
+     * Checks whether someone other than the given patient holds a slot.
+     *
+     * @param start The start of the slot, in minutes since 1970-01-01 00:00.
+     * @param holderId The hospital ID of the patient asking.
+     * @return True if someone else holds the slot, otherwise false.
+     */
+    public boolean isHeldByOther(long start, String holderId) {
+        Hold current = holds.get(start);
+        if (current == null) {
+            return false;
+        }
+        if (current.expired(System.nanoTime())) {
+            holds.remove(start, current); // Ran out, so it no longer takes up room in the map
+            return false;
+        }
+        return !current.holderId.equals(holderId);
+    }
+
+    /**
+     * Claims a slot for booking: removes it, unless it is not available or someone else holds it. A hold of the
+     * patient themselves is used up.
+     *
+     * @param start The start of the slot, in minutes since 1970-01-01 00:00.
+     * @param holderId The hospital ID of the patient booking the slot.
+     * @return True if the slot was claimed for them, false if it is gone or held by someone else.
+     */
+    public boolean claim(long start, String holderId) {
+        if (!hold(start, holderId)) { // Keeps others from holding the slot until it is removed
+            return false;
+        }
+        return remove(start); // Only one of several claims at once can remove the slot
+    }
+
+    /**
+     * Checks whether a slot starting at the given time is available.
+     *
+     * @param start The start of the slot, in minutes since 1970-01-01 00:00.
+     * @return True if the slot is available, otherwise false.
+     */
+    public boolean contains(long start) {
+        return slots.contains(start);
+    }
+
+    /**
+     * Finds an available slot that overlaps a slot starting at the given time.
+     *
+     * @param start The start of the slot to check, in minutes since 1970-01-01 00:00.
+     * @return The start of an overlapping slot, or EpochMinutes.UNKNOWN if there is none.
+     */
+    public long findOverlap(long start) {
+        Long before = slots.floor(start);
+        if (before != null && before > start - SLOT_MINUTES) {
+            return before;
+        }
+        Long after = slots.ceiling(start);
+        if (after != null && after < start + SLOT_MINUTES) {
+            return after;
+        }
+        return EpochMinutes.UNKNOWN;
+    }
+
+    /**
+     * Finds the first available slot starting at or after the given time.
+     *
+     * @param from The earliest start, in minutes since 1970-01-01 00:00.
+     * @return The start of the slot, or EpochMinutes.UNKNOWN if there is none.
+     */
+    public long firstFreeFrom(long from) {
+        Long start = slots.ceiling(from);
+        return start != null ? start : EpochMinutes.UNKNOWN;
+    }
+
+    /**
+     * Gets the available slots starting at or after the given time, earliest first.
+     *
+     * @param from The earliest start, in minutes since 1970-01-01 00:00.
+     * @return An unmodifiable view of the slot starts.
+     */
+    public NavigableSet<Long> getSlotsFrom(long from) {
+        return Collections.unmodifiableNavigableSet(slots.tailSet(from, true));
+    }
+
+    /**
+     * Checks whether there are no available slots that can be booked.
+     *
+     * @return True if no valid slot is available, otherwise false.
+     */
+    public boolean isEmpty() {
+        return slots.isEmpty();
+    }
+
+    /**
+     * Gets the number of available slots that can be booked. The slots are counted, so this takes O(n).
+     *
+     * @return The number of valid slots.
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Gets all slots in the format of the data files, earliest first, followed by any slots that are not valid times.
+     *
+     * @return A new list of the slots.
+     */
+    public List<String> toList() {
+        List<String> list = new ArrayList<>();
+        for (long start : slots) {
+            list.add(EpochMinutes.format(start));
+        }
+        list.addAll(invalidSlots);
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+}
@@ -1,27 +1,26 @@
 package App.user;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import App.record.EpochMinutes;
+import App.record.HospitalIdDictionary;
+
 /**
  * Represents a doctor in the hospital system.
  * 
  * The Doctor class extends the Staff class and includes additional information such as
  * available appointment slots and patients under the doctor's care.
- * Doctor-specific data is loaded from an external CSV file during instantiation.
+ * Doctor-specific data is loaded from an external CSV file by StaffLoader and passed in on construction.
  */
 public class Doctor extends Staff {
-    private List<String> availableSlots; 
-    private List<String> HospitalIdOfPatientsUnderCare;
-    private static final String DoctorAdditionals = "data/DoctorAdditionals_List.csv";
+    private final Availability availability;
+    private volatile int[] patientCodesUnderCare;  // HospitalIdDictionary.PATIENTS codes of the patients under care, in the order they were added; replaced, never changed, when a patient is added
 
 
     /**
-     * Constructs a new Doctor instance.
+     * Constructs a new Doctor instance with no available slots and no patients under care.
      * 
      * @param hospitalId The unique ID of the doctor in the hospital system.
      * @param password The password used for the doctor's login.
@@ -40,73 +39,117 @@ public class Doctor extends Staff {
         String email,
         int age
     ) {
-        super(hospitalId, password, name, gender, userType, email, age);
-        this.availableSlots = new ArrayList<>();
-        this.HospitalIdOfPatientsUnderCare = new ArrayList<>();
-        loadDoctorAdditionals(hospitalId);
+        this(hospitalId, password, name, gender, userType, email, age, new ArrayList<>(), new ArrayList<>());
     }
 
-
     /**
-     * Loads doctor-specific data (available slots and patients under care) from a CSV file.
+     * Constructs a new Doctor instance with the given available slots and patients under care.
      * 
-     * @param doctorHospitalId The hospital ID of the doctor whose additional data needs to be loaded.
+     * @param hospitalId The unique ID of the doctor in the hospital system.
+     * @param password The password used for the doctor's login.
+     * @param name The name of the doctor.
+     * @param gender The gender of the doctor.
+     * @param userType The user type indicating the role (in this case, "Doctor").
+     * @param email The email address of the doctor.
+     * @param age The age of the doctor.
+     * @param availableSlots The available appointment slots of the doctor.
+     * @param patientsUnderCare The hospital IDs of the patients under the doctor's care.
      */
-    private void loadDoctorAdditionals(String doctorHospitalId) {
-        try (BufferedReader br = new BufferedReader(new FileReader(DoctorAdditionals))) {
-            String line;
-            boolean isHeader = true;
-
-            while ((line = br.readLine()) != null) {
-                if (isHeader) {
-                    isHeader = false; // Skip header
-                    continue;
-                }
-
-                String[] fields = line.split(",");
-                String hospitalId = fields[0].trim();
-
-                if (hospitalId.equals(doctorHospitalId)) {
-                    // Load available slots and patients under care
-                    if (fields.length > 1 && !fields[1].isEmpty()) {
-                        this.availableSlots.addAll(Arrays.asList(fields[1].trim().split(";")));
-                    }
-                    if (fields.length > 2 && !fields[2].isEmpty()) {
-                        this.HospitalIdOfPatientsUnderCare.addAll(Arrays.asList(fields[2].trim().split(";")));
-                    }
-                    break; // Exit after finding the correct doctor
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    public Doctor(
+        String hospitalId, 
+        String password, 
+        String name, 
+        String gender, 
+        String userType, 
+        String email,
+        int age,
+        List<String> availableSlots,
+        List<String> patientsUnderCare
+    ) {
+        super(hospitalId, password, name, gender, userType, email, age);
+        this.availability = new Availability(availableSlots);
+        int[] patientCodes = new int[patientsUnderCare.size()];
+        for (int i = 0; i < patientCodes.length; i++) {
+            patientCodes[i] = HospitalIdDictionary.PATIENTS.encode(patientsUnderCare.get(i));
         }
+        this.patientCodesUnderCare = patientCodes;
     }
 
+
     /**
      * Adds an available slot to the doctor's schedule.
      * 
      * @param slot The time slot to be added.
+     * @return True if the slot was added, false if it was already available.
      */
-    public void addAvailableSlot(String slot) {
-        availableSlots.add(slot);
+    public boolean addAvailableSlot(String slot) {
+        return availability.add(slot);
     }
 
     /**
-     * Retrieves all available slots for the doctor.
+     * Retrieves all available slots for the doctor, earliest first.
      * 
-     * @return A list of available slots.
+     * @return A new list of available slots.
      */
     public List<String> getAvailableSlots() {
-        return new ArrayList<>(availableSlots); // Return a copy to avoid modification
+        return availability.toList();
+    }
+
+    /**
+     * Retrieves the doctor's availability, to look up and book slots by time.
+     * Changes should be made through DoctorContainer, so they are saved.
+     * 
+     * @return The availability of the doctor.
+     */
+    public Availability getAvailability() {
+        return availability;
     }
 
     /**
      * Removes an available slot from the doctor's schedule.
      * 
      * @param slot The time slot to be removed.
+     * @return True if the slot was removed, false if it was not available.
      */
-    public void removeAvailableSlot(String slot) {
-        availableSlots.remove(slot);
+    public boolean removeAvailableSlot(String slot) {
+        return availability.remove(slot);
+    }
+
+    /**
+     * Holds an available slot for a patient while they confirm the booking, see Availability.hold.
+     * 
+     * @param slot The time slot to hold.
+     * @param patientHospitalId The hospital ID of the patient.
+     * @return True if the slot is now held for the patient, false if it is gone or held by someone else.
+     */
+    public boolean holdSlot(String slot, String patientHospitalId) {
+        long start = EpochMinutes.parse(slot);
+        return start != EpochMinutes.UNKNOWN && availability.hold(start, patientHospitalId);
+    }
+
+    /**
+     * Releases the hold a patient has on a slot.
+     * 
+     * @param slot The time slot that is held.
+     * @param patientHospitalId The hospital ID of the patient.
+     */
+    public void releaseSlotHold(String slot, String patientHospitalId) {
+        long start = EpochMinutes.parse(slot);
+        if (start != EpochMinutes.UNKNOWN) {
+            availability.release(start, patientHospitalId);
+        }
+    }
+
+    /**
+     * Claims an available slot for a patient, unless it is gone or someone else holds it, see Availability.claim.
+     * 
+     * @param slot The time slot to claim.
+     * @param patientHospitalId The hospital ID of the patient.
+     * @return True if the slot was claimed for the patient, otherwise false.
+     */
+    public boolean claimSlot(String slot, String patientHospitalId) {
+        long start = EpochMinutes.parse(slot);
+        return start != EpochMinutes.UNKNOWN && availability.claim(start, patientHospitalId);
     }
 
     /**
@@ -114,21 +157,47 @@ public class Doctor extends Staff {
      * 
      * @param patientHospitalId The hospital ID of the patient to be added under care.
      */
-    public void addPatientUnderCare(String patientHospitalId) {
-        HospitalIdOfPatientsUnderCare.add(patientHospitalId);
+    public synchronized void addPatientUnderCare(String patientHospitalId) {
+        int[] patientCodes = Arrays.copyOf(patientCodesUnderCare, patientCodesUnderCare.length + 1);
+        patientCodes[patientCodes.length - 1] = HospitalIdDictionary.PATIENTS.encode(patientHospitalId);
+        patientCodesUnderCare = patientCodes;
+    }
+
+    /**
+     * Checks whether a patient is under the doctor's care.
+     * 
+     * @param patientHospitalId The hospital ID of the patient.
+     * @return True if the patient is under the doctor's care, otherwise false.
+     */
+    public boolean isPatientUnderCare(String patientHospitalId) {
+        int patientCode = HospitalIdDictionary.PATIENTS.find(patientHospitalId);
+        if (patientCode == HospitalIdDictionary.NONE) {
+            return false;
+        }
+        for (int code : patientCodesUnderCare) {
+            if (code == patientCode) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
      * Retrieves all patients currently under the doctor's care.
      * 
-     * @return A list of hospital IDs for patients under care.
+     * @return A new list of hospital IDs for patients under care.
      */
     public List<String> getAllPatientsUnderCare() {
-        return new ArrayList<>(HospitalIdOfPatientsUnderCare); // Return a copy to avoid modification
+        int[] patientCodes = patientCodesUnderCare;
+        List<String> patientsUnderCare = new ArrayList<>(patientCodes.length);
+        for (int code : patientCodes) {
+            patientsUnderCare.add(HospitalIdDictionary.PATIENTS.decode(code));
+        }
+        return patientsUnderCare;
     }
 
     @Override
     public String toString() {
-        return super.toString() + ", Available Slots: " + availableSlots;
+        return super.toString() + ", Available Slots: " + availability;
     }
 }
@@ -0,0 +1,136 @@
+package App.user;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Hashes and verifies user passwords with salted PBKDF2 (HMAC-SHA256).
+ *
+ * A hashed password is stored as "pbkdf2-sha256$iterations$salt$hash", with salt and hash in Base64, so it fits in
+ * the password column of the data files. Older files hold plain text passwords; those are still accepted, and are
+ * hashed the next time the user logs in or changes their password.
+ *
+ * The number of iterations sets how much work one login costs. It can be tuned with the system property
+ * "hms.password.iterations"; passwords hashed with a different number are hashed again at their next login.
+ */
+public final class PasswordHasher {
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int DEFAULT_ITERATIONS = 310_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static volatile int iterations = Integer.getInteger("hms.password.iterations", DEFAULT_ITERATIONS);
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * Gets the number of iterations new hashes are made with.
+     *
+     * @return The number of iterations.
+     */
+    public static int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Sets the number of iterations new hashes are made with.
+     *
+     * @param iterations The number of iterations, at least 1.
+     */
+    public static void setIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iterations must be at least 1");
+        }
+        PasswordHasher.iterations = iterations;
+    }
+
+    /**
+     * Hashes a password with a new random salt.
+     *
+     * @param password The plain text password.
+     * @return The hashed password, in the stored format.
+     */
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        int cost = iterations;
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + cost + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(derive(password, salt, cost));
+    }
+
+    /**
+     * Checks a password against a stored password, which may be hashed or, in older files, plain text.
+     *
+     * @param password The plain text password entered by the user.
+     * @param stored The stored password.
+     * @return True if the password is correct, otherwise false.
+     */
+    public static boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            int cost = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            return cost > 0 && MessageDigest.isEqual(expected, derive(password, salt, cost));
+        } catch (IllegalArgumentException e) {
+            return false; // Damaged entry; NumberFormatException is an IllegalArgumentException as well
+        }
+    }
+
+    /**
+     * Checks whether a stored password should be hashed again, because it is plain text or was hashed with a
+     * different number of iterations.
+     *
+     * @param stored The stored password.
+     * @return True if the password should be hashed again at the next login, otherwise false.
+     */
+    public static boolean needsRehash(String stored) {
+        if (!isHashed(stored)) {
+            return true;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        return end < 0 || !stored.substring(PREFIX.length(), end).equals(Integer.toString(iterations));
+    }
+
+    /**
+     * Checks whether a stored password is hashed rather than plain text.
+     *
+     * @param stored The stored password.
+     * @return True if the password is hashed, otherwise false.
+     */
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /**
+     * Derives the PBKDF2 hash of a password.
+     */
+    private static byte[] derive(String password, byte[] salt, int cost) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, cost, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
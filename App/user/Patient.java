@@ -1,6 +1,7 @@
 package App.user;
 
-import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
 
 import App.record.MedicalRecord;
 
@@ -10,12 +11,14 @@ import App.record.MedicalRecord;
  * The Patient class extends the User class and includes additional information such as date of birth,
  * phone number, blood type, and a medical record.
  * Each patient has their own unique MedicalRecord which stores diagnoses and treatments.
+ * The medical record can be loaded on demand: it is only kept by the patient once it has been changed.
  */
 public class Patient extends User {
-    private String dateOfBirth;
-    private String phoneNumber;
-    private String bloodType;
-    private MedicalRecord medicalRecord; // Each patient has their own MedicalRecord
+    private volatile String dateOfBirth;
+    private volatile String phoneNumber;
+    private volatile String bloodType;
+    private volatile MedicalRecord medicalRecord; // Each patient has their own MedicalRecord, null until needed if loaded on demand
+    private final Function<String, MedicalRecord> medicalRecordLoader;
 
 
     /**
@@ -30,7 +33,7 @@ public class Patient extends User {
      * @param dateOfBirth      The date of birth of the patient.
      * @param phoneNumber      The contact phone number of the patient.
      * @param bloodType        The blood type of the patient.
-     * @param medicalRecordPath The file path to load the patient's medical record data from.
+     * @param medicalRecord    The medical record of the patient.
      */
     public Patient(
         String hospitalId, 
@@ -44,7 +47,7 @@ public class Patient extends User {
         String phoneNumber,
         String bloodType,
 
-        String medicalRecordPath
+        MedicalRecord medicalRecord
         ) 
     {
         super(hospitalId, password, name, gender, userType,email);
@@ -52,7 +55,45 @@ public class Patient extends User {
         this.dateOfBirth = dateOfBirth; 
         this.phoneNumber = phoneNumber;
         this.bloodType = bloodType;
-        this.medicalRecord = new MedicalRecord(hospitalId,medicalRecordPath); // Initialize MedicalRecord with patient hospital ID and path to the MedicalRecord CSV
+        this.medicalRecord = medicalRecord;
+        this.medicalRecordLoader = null;
+    }
+
+    /**
+     * Constructs a new Patient instance whose medical record is loaded on demand.
+     * 
+     * @param hospitalId          The unique ID of the patient in the hospital system.
+     * @param password            The password used for the patient's login.
+     * @param name                The name of the patient.
+     * @param gender              The gender of the patient.
+     * @param userType            The user type indicating the role (in this case, "Patient").
+     * @param email               The email address of the patient.
+     * @param dateOfBirth         The date of birth of the patient.
+     * @param phoneNumber         The contact phone number of the patient.
+     * @param bloodType           The blood type of the patient.
+     * @param medicalRecordLoader Loads the medical record for a hospital ID whenever it is needed.
+     */
+    public Patient(
+        String hospitalId, 
+        String password, 
+        String name, 
+        String gender, 
+        String userType, 
+        String email,
+        
+        String dateOfBirth,
+        String phoneNumber,
+        String bloodType,
+
+        Function<String, MedicalRecord> medicalRecordLoader
+        ) 
+    {
+        super(hospitalId, password, name, gender, userType,email);
+
+        this.dateOfBirth = dateOfBirth; 
+        this.phoneNumber = phoneNumber;
+        this.bloodType = bloodType;
+        this.medicalRecordLoader = medicalRecordLoader; // Loaded by PatientContainer on first use
     }
 
     /**
@@ -111,11 +152,37 @@ public class Patient extends User {
     }
 
     /**
-     * Gets the medical record of the patient.
+     * Gets the medical record of the patient, loading it if needed.
+     * The record must not be changed through the returned object; use the methods of Patient instead.
      * 
      * @return The medical record of the patient.
      */
     public MedicalRecord getMedicalRecord() {
+        if (medicalRecord != null) {
+            return medicalRecord;
+        }
+        return medicalRecordLoader.apply(getHospitalId());
+    }
+
+    /**
+     * Checks whether the patient keeps their own medical record, because it was given to them or has been changed.
+     * A medical record that is not kept can be loaded again from the file at any time.
+     * 
+     * @return True if the medical record is kept by the patient, otherwise false.
+     */
+    public boolean isMedicalRecordPinned() {
+        return medicalRecord != null;
+    }
+
+    /**
+     * Keeps the medical record with the patient before it is changed, so the change cannot be dropped from a cache.
+     * 
+     * @return The medical record of the patient.
+     */
+    private synchronized MedicalRecord pinMedicalRecord() {
+        if (medicalRecord == null) {
+            medicalRecord = medicalRecordLoader.apply(getHospitalId());
+        }
         return medicalRecord;
     }
     
@@ -124,8 +191,8 @@ public class Patient extends User {
      * 
      * @return A list of all treatments.
      */
-    public ArrayList<String> getTreatments() {
-        return medicalRecord.getTreatments();
+    public List<String> getTreatments() {
+        return getMedicalRecord().getTreatments();
     }
 
     /**
@@ -135,7 +202,7 @@ public class Patient extends User {
      * @param treatmentPlan The new treatment plan to set.
      */
     public void setTreatment(int index, String treatmentPlan) {
-        medicalRecord.setTreatment(index, treatmentPlan);
+        pinMedicalRecord().setTreatment(index, treatmentPlan);
     }
 
     /**
@@ -144,7 +211,7 @@ public class Patient extends User {
      * @param treatmentPlan The treatment plan to add.
      */
     public void addTreatment(String treatmentPlan) {
-        medicalRecord.addTreatment(treatmentPlan);
+        pinMedicalRecord().addTreatment(treatmentPlan);
     }
 
     /**
@@ -153,7 +220,7 @@ public class Patient extends User {
      * @param index The index of the treatment plan to remove.
      */
     public void removeTreatmentPlan(int index) {
-        medicalRecord.removeTreatmentPlan(index);
+        pinMedicalRecord().removeTreatmentPlan(index);
     }
 
     /**
@@ -161,8 +228,8 @@ public class Patient extends User {
      * 
      * @return A list of all diagnoses.
      */
-    public ArrayList<String> getDiagnoses() {
-        return medicalRecord.getDiagnoses();
+    public List<String> getDiagnoses() {
+        return getMedicalRecord().getDiagnoses();
     }
 
     /**
@@ -172,7 +239,7 @@ public class Patient extends User {
      * @param diagnose The new diagnosis to set.
      */
     public void setDiagnose(int index, String diagnose) {
-        medicalRecord.setDiagnose(index, diagnose);
+        pinMedicalRecord().setDiagnose(index, diagnose);
     }
 
     /**
@@ -181,7 +248,7 @@ public class Patient extends User {
      * @param diagnose The diagnosis to add.
      */
     public void addDiagnose(String diagnose) {
-        medicalRecord.addDiagnose(diagnose);
+        pinMedicalRecord().addDiagnose(diagnose);
     }
 
     /**
@@ -190,7 +257,7 @@ public class Patient extends User {
      * @param index The index of the diagnosis to remove.
      */
     public void removeDiagnose(int index) {
-        medicalRecord.removeDiagnose(index);
+        pinMedicalRecord().removeDiagnose(index);
     }
 
 }
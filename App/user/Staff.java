@@ -6,7 +6,7 @@ package App.user;
  * The Staff class extends the User class and adds additional attributes and functionality specific to hospital staff.
  */
 public class Staff extends User {
-    private int age;
+    private volatile int age;
 
     /**
      * Constructs a new Staff instance.
@@ -6,12 +6,12 @@ package App.user;
  * The User class contains common attributes shared by all types of users, including hospital staff and patients.
  */
 public abstract class User{
-    private String hospitalId;
-    private String password="password";
-    private String name;
-    private String gender;
-    private String userType;
-    private String email;
+    private volatile String hospitalId;
+    private volatile String password="password";
+    private volatile String name;
+    private volatile String gender;
+    private volatile String userType;
+    private volatile String email;
 
     /**
      * Constructs a new User instance.
@@ -67,18 +67,19 @@ public abstract class User{
     }
 
     /**
-     * Gets the password of the user.
+     * Gets the stored password of the user. This is a salted hash made by PasswordHasher or, for users who have not
+     * logged in since their data was written by an older version, the plain text password.
      * 
-     * @return The password of the user.
+     * @return The stored password of the user.
      */
     public String getPassword() {
         return password;
     }
 
     /**
-     * Sets the password of the user.
+     * Sets the stored password of the user. Use UserContainer.updatePassword to change a password, so it is hashed.
      * 
-     * @param password The new password of the user.
+     * @param password The new stored password of the user.
      */
     public void setPassword(String password) {
         this.password = password;
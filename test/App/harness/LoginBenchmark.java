@@ -0,0 +1,185 @@
+package App.harness;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import App.container.user.CredentialDirectory;
+import App.container.user.PatientContainer;
+import App.user.PasswordHasher;
+
+/**
+ * Measures how long a login takes and how many logins a core can verify per second, at the password hashing cost
+ * the App runs with.
+ *
+ * The benchmark generates USERS patients in a temporary directory, all with the same hashed password, and logs
+ * them in through a CredentialDirectory like StartMenu does. It reports
+ * - the p50 and p99 latency of logins that verify the password hash, each by a user not logged in before,
+ * - the p50 and p99 latency of logins by users who logged in just before, which the directory lets through without
+ *   hashing the password again,
+ * - the number of verified logins per second with one session per core, in total and per core. The sessions start
+ *   with the users not logged in yet and cycle through more users than the directory remembers, so every login
+ *   verifies the hash.
+ *
+ * The cost is the number of PBKDF2 iterations of PasswordHasher, which is set with -Dhms.password.iterations.
+ * Compile it together with the App folder and run it with "java App.harness.LoginBenchmark [logins] [seconds]",
+ * where logins is the number of logins timed one at a time (default 200) and seconds is how long the throughput
+ * is measured (default 10).
+ */
+public class LoginBenchmark {
+    private static final int USERS = 1024;
+    private static final int REMEMBERED = 256;      // Logins CredentialDirectory remembers
+    private static final int WARMUP_LOGINS = 20;
+    private static final String PASSWORD = "Bench1234";
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args The number of logins timed one at a time and the number of seconds throughput is measured.
+     * @throws Exception If the users could not be written or a session failed.
+     */
+    public static void main(String[] args) throws Exception {
+        int logins = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (WARMUP_LOGINS + logins + REMEMBERED > USERS) {
+            throw new IllegalArgumentException("At most " + (USERS - WARMUP_LOGINS - REMEMBERED) + " logins can be timed");
+        }
+
+        Path directory = Files.createTempDirectory("hms-login");
+        try {
+            CredentialDirectory credentials = createUsers(directory);
+            System.out.println("Login benchmark at " + PasswordHasher.getIterations() + " PBKDF2 iterations, "
+                + cores + " cores");
+
+            // Every user logs in once, so each of these logins verifies the hash
+            for (int i = 0; i < WARMUP_LOGINS; i++) {
+                login(credentials, i);
+            }
+            long[] verified = new long[logins];
+            for (int i = 0; i < logins; i++) {
+                verified[i] = timeLogin(credentials, WARMUP_LOGINS + i);
+            }
+            report("Verified login", verified);
+
+            // The same users log in again straight away, so the directory remembers them
+            long[] remembered = new long[logins];
+            for (int i = 0; i < logins; i++) {
+                remembered[i] = timeLogin(credentials, WARMUP_LOGINS + i);
+            }
+            report("Repeated login", remembered);
+
+            measureThroughput(credentials, WARMUP_LOGINS + logins, cores, seconds);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Writes the patients and an empty medical record file to the directory and loads them.
+     */
+    private static CredentialDirectory createUsers(Path directory) throws IOException {
+        String storedPassword = PasswordHasher.hash(PASSWORD); // Hashed once; every user gets the same hash
+        List<String> rows = new ArrayList<>();
+        rows.add("Patient ID,Password,Name,Date of Birth,Gender,Blood Type,Contact Information");
+        for (int i = 0; i < USERS; i++) {
+            rows.add(hospitalId(i) + "," + storedPassword + ",Bench " + i + ",1990-01-01,Male,O+,bench" + i + "@hms");
+        }
+        Path patientPath = directory.resolve("Patient_List.csv");
+        Path medicalRecordPath = directory.resolve("Medical_Record.csv");
+        Files.write(patientPath, rows);
+        Files.write(medicalRecordPath, Arrays.asList("PatientHospitalId,Diagnoses,Treatments"));
+        return new CredentialDirectory(new PatientContainer(patientPath.toString(), medicalRecordPath.toString()));
+    }
+
+    /**
+     * Logs in with one session per core for the given number of seconds and prints the number of logins per second.
+     * The sessions spread over the users from firstUser on, and the users before it come last.
+     */
+    private static void measureThroughput(CredentialDirectory credentials, int firstUser, int cores, int seconds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(cores);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        List<Future<Integer>> sessions = new ArrayList<>();
+        for (int t = 0; t < cores; t++) {
+            int first = firstUser + t * ((USERS - firstUser) / cores);
+            sessions.add(executor.submit(() -> {
+                int count = 0;
+                while (System.nanoTime() < deadline) {
+                    login(credentials, (first + count) % USERS);
+                    count++;
+                }
+                return count;
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> session : sessions) {
+            total += session.get();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+        double perSecond = total / elapsed;
+        System.out.printf("Throughput:     %.1f logins/s with %d sessions, %.1f logins/s per core%n",
+            perSecond, cores, perSecond / cores);
+    }
+
+    /**
+     * Logs a user in and returns how long it took, in nanoseconds.
+     */
+    private static long timeLogin(CredentialDirectory credentials, int user) {
+        long start = System.nanoTime();
+        login(credentials, user);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Logs a user in.
+     *
+     * @throws IllegalStateException If the login was refused.
+     */
+    private static void login(CredentialDirectory credentials, int user) {
+        if (credentials.login(hospitalId(user), PASSWORD) == null) {
+            throw new IllegalStateException("Login of " + hospitalId(user) + " was refused");
+        }
+    }
+
+    private static String hospitalId(int user) {
+        return "PBENCH" + user;
+    }
+
+    /**
+     * Prints the p50 and p99 of the given latencies.
+     */
+    private static void report(String description, long[] latencies) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-15s p50 %.3f ms, p99 %.3f ms (%d logins)%n", description + ":",
+            percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6, sorted.length);
+    }
+
+    /**
+     * Gets a percentile of sorted values, by the nearest-rank method.
+     */
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Deletes the temporary directory and the files in it.
+     */
+    private static void deleteDirectory(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
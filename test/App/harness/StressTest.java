@@ -0,0 +1,473 @@
+package App.harness;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import App.Bootstrap;
+import App.container.Journal;
+import App.container.data.AppointmentContainer;
+import App.container.data.MedicineContainer;
+import App.container.user.DoctorContainer;
+import App.container.user.PatientContainer;
+import App.record.Appointment;
+import App.record.EpochMinutes;
+import App.record.Medicine;
+import App.user.Doctor;
+import App.user.Patient;
+
+/**
+ * Runs many sessions against the same containers at once and checks that no change was lost or applied twice.
+ *
+ * The appointments and medicines are loaded from the data files, but the data files are never written: changes are
+ * journaled to a journal in a temporary directory, which is deleted afterwards. The test checks that
+ * - no stock adjustment is lost while sessions adjust the same medicine,
+ * - the appointment indexes agree with the appointments while sessions add, update, reschedule and remove them,
+ * - the slot index agrees with the Doctor's slots while sessions add and remove slots,
+ * - no slot is booked twice and no slot is lost while patients book, reschedule and cancel the same slots,
+ * - medical records read while other sessions add diagnoses and export the medical record file are never mixed up,
+ *   and no added diagnosis is lost. The patients and their medical records are generated in the temporary
+ *   directory, with more patients than the medical record cache holds.
+ *
+ * Compile it together with the App folder and run it from the project directory with "java App.harness.StressTest".
+ * It prints the result of every check and exits with status 1 if any of them failed.
+ */
+public class StressTest {
+    private static final String[] STATUSES = {"pending", "confirmed", "completed", "cancelled"};
+    private static final int WRITERS = 4;
+    private static final int READERS = 8;
+    private static final int CHANGES_PER_WRITER = 5000;
+    private static final int PATIENTS = 16;
+    private static final int CHURN_SESSIONS = 8;
+    private static final int CHURN_CHANGES = 3000;
+    private static final int RECORD_PATIENTS = 4000;    // More than the 1024 records the cache holds
+    private static final int RECORD_CHANGES = 2000;
+    private static final int RECORD_EXPORT_INTERVAL = 500;
+
+    private static int failures;
+
+    /**
+     * Runs every check.
+     *
+     * @param args Command-line arguments (not used).
+     * @throws Exception If a session could not be run or the journal could not be created.
+     */
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("hms-stress");
+        Journal journal = new Journal(directory.toString());
+        journal.start(journal.getCheckpointLsn(), upToLsn -> { });
+        try {
+            checkContainers(journal);
+            checkBooking(journal);
+            checkMedicalRecords(journal, directory);
+        } finally {
+            journal.close();
+            deleteDirectory(directory);
+        }
+        System.out.println(failures == 0 ? "All checks passed" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Changes appointments, the stock of one medicine and the slots of one Doctor from several sessions, while
+     * other sessions query them, then checks the results.
+     */
+    private static void checkContainers(Journal journal) throws Exception {
+        AppointmentContainer appointmentContainer = new AppointmentContainer(Bootstrap.APPOINTMENT_PATH);
+        MedicineContainer medicineContainer = new MedicineContainer(Bootstrap.MEDICINE_PATH);
+        DoctorContainer doctorContainer = new DoctorContainer();
+        doctorContainer.addStaff("DSTRESS", "password", "Stress", "Male", "Doctor", "stress@hms", 40);
+        appointmentContainer.setJournal(journal);
+        medicineContainer.setJournal(journal);
+        doctorContainer.setJournal(journal);
+
+        Doctor doctor = doctorContainer.getDoctorByHospitalId("DSTRESS");
+        Medicine medicine = medicineContainer.getAllMedicines().get(0);
+        int initialStock = medicine.getCurrentStock();
+        AtomicInteger errors = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < WRITERS; t++) {
+            Random random = new Random(t);
+            writers.add(executor.submit(() -> {
+                try {
+                    for (int i = 0; i < CHANGES_PER_WRITER; i++) {
+                        changeAppointment(appointmentContainer, random);
+                        medicineContainer.adjustStock(medicine, 1);
+                        String slot = "2032-02-0" + (1 + random.nextInt(9)) + " 0" + random.nextInt(10) + ":00";
+                        if (random.nextBoolean()) {
+                            doctorContainer.addAvailableSlot(doctor, slot);
+                        } else {
+                            doctorContainer.removeAvailableSlot(doctor, slot);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    errors.incrementAndGet();
+                }
+            }));
+        }
+        for (int t = 0; t < READERS; t++) {
+            Random random = new Random(100 + t);
+            executor.submit(() -> {
+                try {
+                    while (!stop.get()) {
+                        for (Appointment appointment : appointmentContainer.getAllAppointments()) {
+                            appointment.getAppointmentIdentifyId();
+                        }
+                        appointmentContainer.getAllAppointmentsByPatientIdAndStatus(patient(random), status(random));
+                        appointmentContainer.getAllAppointmentsByDoctorIdAndStatus(doctor(random), status(random));
+                        appointmentContainer.getAllAppointmentsByPatientIdDoctorIdAndStatus(patient(random), doctor(random), status(random));
+                        doctorContainer.getDoctorsAvailableAt(doctorContainer.getEarliestAvailableSlot(0));
+                        doctor.getAvailability().toList();
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    errors.incrementAndGet();
+                }
+            });
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        stop.set(true);
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        check("no session failed", errors.get() == 0);
+        check("no stock adjustment was lost", medicine.getCurrentStock() - initialStock == WRITERS * CHANGES_PER_WRITER);
+        check("the status indexes agree with the appointments", statusIndexesAgree(appointmentContainer));
+        boolean keysAgree = true;
+        for (Appointment appointment : appointmentContainer.getAllAppointments()) {
+            keysAgree &= appointmentContainer.getAppointmentByKey(appointment.getAppointmentKey()) != null;
+        }
+        check("every appointment is found by its key", keysAgree);
+        boolean slotsAgree = true;
+        for (long start : doctor.getAvailability().getSlotsFrom(Long.MIN_VALUE)) {
+            slotsAgree &= doctorContainer.getDoctorsAvailableAt(start).contains(doctor);
+        }
+        check("the slot index agrees with the Doctor's slots", slotsAgree);
+    }
+
+    /**
+     * Makes one random change to the appointments.
+     */
+    private static void changeAppointment(AppointmentContainer appointmentContainer, Random random) {
+        List<Appointment> appointments = appointmentContainer.getAllAppointments();
+        int operation = random.nextInt(4);
+        if (operation == 0 || appointments.isEmpty()) {
+            appointmentContainer.addAppointment("2030-01-0" + (1 + random.nextInt(9)) + " 10:00", patient(random), doctor(random));
+            return;
+        }
+        Appointment appointment = appointments.get(random.nextInt(appointments.size()));
+        if (operation == 1) {
+            appointmentContainer.updateAppointmentStatus(appointment, status(random));
+        } else if (operation == 2) {
+            appointmentContainer.removeAppointment(appointment.getRecordId());
+        } else {
+            appointmentContainer.rescheduleAppointment(appointment, "2031-01-01 1" + random.nextInt(9) + ":00");
+        }
+    }
+
+    /**
+     * Checks that every (patient, doctor, status) lookup returns exactly the appointments with those values.
+     */
+    private static boolean statusIndexesAgree(AppointmentContainer appointmentContainer) {
+        for (int p = 0; p < 5; p++) {
+            for (int d = 0; d < 3; d++) {
+                for (String status : STATUSES) {
+                    Set<Appointment> expected = new HashSet<>();
+                    for (Appointment appointment : appointmentContainer.getAllAppointments()) {
+                        if (appointment.getpatientHospitalId().equals("PSTRESS" + p)
+                                && appointment.getdoctorHospitalId().equals("DSTRESS" + d)
+                                && appointment.getStatus().equals(status)) {
+                            expected.add(appointment);
+                        }
+                    }
+                    Set<Appointment> found = new HashSet<>(appointmentContainer.getAllAppointmentsByPatientIdDoctorIdAndStatus("PSTRESS" + p, "DSTRESS" + d, status));
+                    if (!expected.equals(found)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lets many patients book the same slots of one Doctor at once, then reschedule and cancel bookings, and checks
+     * that every slot ends up either booked once or free, never both and never twice.
+     */
+    private static void checkBooking(Journal journal) throws Exception {
+        AppointmentContainer appointmentContainer = new AppointmentContainer(Bootstrap.APPOINTMENT_PATH);
+        DoctorContainer doctorContainer = new DoctorContainer();
+        doctorContainer.addStaff("DBOOK", "password", "Book", "Female", "Doctor", "book@hms", 40);
+        appointmentContainer.setJournal(journal);
+        doctorContainer.setJournal(journal);
+        Doctor doctor = doctorContainer.getDoctorByHospitalId("DBOOK");
+
+        // Every patient tries to book every slot; each slot must go to exactly one of them
+        List<String> slots = new ArrayList<>();
+        for (int day = 1; day <= 9; day++) {
+            for (int hour = 10; hour < 20; hour++) {
+                String slot = "2033-03-0" + day + " " + hour + ":00";
+                slots.add(slot);
+                doctorContainer.addAvailableSlot(doctor, slot);
+            }
+        }
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(PATIENTS);
+        List<Future<?>> sessions = new ArrayList<>();
+        for (int t = 0; t < PATIENTS; t++) {
+            String patientHospitalId = "PBOOK" + t;
+            sessions.add(executor.submit(() -> {
+                try {
+                    for (String slot : slots) {
+                        if (doctorContainer.bookSlot(doctor, slot, patientHospitalId, appointmentContainer)) {
+                            booked.incrementAndGet();
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    errors.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> session : sessions) {
+            session.get();
+        }
+        Map<String, Integer> bookingsPerSlot = new HashMap<>();
+        for (Appointment appointment : appointmentContainer.getAllAppointmentsByDoctorIdAndStatus("DBOOK", "pending")) {
+            bookingsPerSlot.merge(appointment.getTime(), 1, Integer::sum);
+        }
+        boolean bookedOnce = booked.get() == slots.size();
+        for (String slot : slots) {
+            bookedOnce &= bookingsPerSlot.getOrDefault(slot, 0) == 1;
+        }
+        check("every slot was booked exactly once", bookedOnce);
+        check("no booked slot is still available",
+            doctor.getAvailability().isEmpty() && doctorContainer.getEarliestAvailableSlot(0) == EpochMinutes.UNKNOWN);
+
+        // A held slot can only be booked by the patient holding it
+        String heldSlot = "2034-01-01 10:00";
+        doctorContainer.addAvailableSlot(doctor, heldSlot);
+        boolean holds = doctorContainer.holdSlot(doctor, heldSlot, "PHOLD1")
+            && !doctorContainer.holdSlot(doctor, heldSlot, "PHOLD2")
+            && !doctorContainer.bookSlot(doctor, heldSlot, "PHOLD2", appointmentContainer);
+        doctorContainer.releaseSlotHold(doctor, heldSlot, "PHOLD1");
+        holds &= doctorContainer.holdSlot(doctor, heldSlot, "PHOLD2")
+            && !doctorContainer.bookSlot(doctor, heldSlot, "PHOLD1", appointmentContainer)
+            && doctorContainer.bookSlot(doctor, heldSlot, "PHOLD2", appointmentContainer);
+        check("a held slot is only booked by its holder", holds);
+
+        // Patients book, reschedule and cancel among the same ten slots
+        List<String> churnSlots = new ArrayList<>();
+        for (int hour = 0; hour < 10; hour++) {
+            churnSlots.add("2035-05-05 0" + hour + ":00");
+            doctorContainer.addAvailableSlot(doctor, churnSlots.get(hour));
+        }
+        List<Future<?>> churn = new ArrayList<>();
+        for (int t = 0; t < CHURN_SESSIONS; t++) {
+            Random random = new Random(t);
+            churn.add(executor.submit(() -> {
+                try {
+                    for (int i = 0; i < CHURN_CHANGES; i++) {
+                        churnBooking(doctorContainer, appointmentContainer, doctor, churnSlots, random);
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    errors.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> session : churn) {
+            session.get();
+        }
+        executor.shutdown();
+
+        Set<String> taken = new HashSet<>();
+        boolean consistent = true;
+        for (Appointment appointment : appointmentContainer.getAllAppointmentsByDoctorIdSortedByTime("DBOOK")) {
+            if (churnSlots.contains(appointment.getTime())) {
+                consistent &= taken.add(appointment.getTime()); // Booked twice if already taken
+            }
+        }
+        for (String slot : churnSlots) {
+            long start = EpochMinutes.parse(slot);
+            boolean free = doctor.getAvailability().contains(start);
+            consistent &= free != taken.contains(slot); // Lost if neither free nor booked
+            consistent &= doctorContainer.getDoctorsAvailableAt(start).contains(doctor) == free;
+        }
+        check("no slot was booked twice or lost while rescheduling and cancelling", consistent);
+        check("no booking session failed", errors.get() == 0);
+    }
+
+    /**
+     * Lets several sessions add diagnoses to random patients, one of them also exporting the medical record file
+     * now and then, while other sessions read random medical records. Every patient starts with the diagnosis "D"
+     * and the treatment "T" followed by their number, so a reader can tell if it got someone else's record.
+     */
+    private static void checkMedicalRecords(Journal journal, Path directory) throws Exception {
+        String patientPath = directory.resolve("Patient_List.csv").toString();
+        String medicalRecordPath = directory.resolve("Medical_Record.csv").toString();
+        List<String> patientRows = new ArrayList<>();
+        List<String> recordRows = new ArrayList<>();
+        patientRows.add("Patient ID,Password,Name,Date of Birth,Gender,Blood Type,Contact Information");
+        recordRows.add("PatientHospitalId,Diagnoses,Treatments");
+        for (int p = 0; p < RECORD_PATIENTS; p++) {
+            patientRows.add("PMR" + p + ",password,Record " + p + ",1990-01-01,Female,A+,record" + p + "@hms");
+            recordRows.add("PMR" + p + ",D" + p + ",T" + p);
+        }
+        Collections.shuffle(recordRows.subList(1, recordRows.size()), new Random(0));
+        Files.write(Paths.get(patientPath), patientRows);
+        Files.write(Paths.get(medicalRecordPath), recordRows);
+        PatientContainer patientContainer = new PatientContainer(patientPath, medicalRecordPath);
+        patientContainer.setJournal(journal);
+
+        AtomicInteger errors = new AtomicInteger();
+        AtomicInteger mixedUp = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        List<Future<?>> writers = new ArrayList<>();
+        List<Map<Integer, List<String>>> added = new ArrayList<>();
+        for (int t = 0; t < WRITERS; t++) {
+            int writer = t;
+            Random random = new Random(200 + t);
+            Map<Integer, List<String>> addedByWriter = new HashMap<>();
+            added.add(addedByWriter);
+            writers.add(executor.submit(() -> {
+                try {
+                    for (int i = 0; i < RECORD_CHANGES; i++) {
+                        int p = random.nextInt(RECORD_PATIENTS);
+                        String diagnosis = "W" + writer + "-" + i;
+                        patientContainer.addDiagnosis(patientContainer.getPatientByHospitalId("PMR" + p), diagnosis);
+                        addedByWriter.computeIfAbsent(p, key -> new ArrayList<>()).add(diagnosis);
+                        if (writer == 0 && i % RECORD_EXPORT_INTERVAL == 0) {
+                            patientContainer.exportMedicalRecordsToCSV(medicalRecordPath); // Moves the rows
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    errors.incrementAndGet();
+                }
+            }));
+        }
+        for (int t = 0; t < READERS; t++) {
+            Random random = new Random(300 + t);
+            executor.submit(() -> {
+                try {
+                    while (!stop.get()) {
+                        int p = random.nextInt(RECORD_PATIENTS);
+                        Patient patient = patientContainer.getPatientByHospitalId("PMR" + p);
+                        List<String> diagnoses = patient.getDiagnoses();
+                        if (diagnoses.isEmpty() || !diagnoses.get(0).equals("D" + p)
+                                || !patient.getTreatments().equals(Collections.singletonList("T" + p))) {
+                            mixedUp.incrementAndGet();
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    errors.incrementAndGet();
+                }
+            });
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        stop.set(true);
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        boolean complete = true;
+        for (int p = 0; p < RECORD_PATIENTS; p++) {
+            List<String> expected = new ArrayList<>();
+            for (Map<Integer, List<String>> addedByWriter : added) {
+                expected.addAll(addedByWriter.getOrDefault(p, Collections.emptyList()));
+            }
+            List<String> diagnoses = patientContainer.getPatientByHospitalId("PMR" + p).getDiagnoses();
+            List<String> found = new ArrayList<>(diagnoses.subList(Math.min(1, diagnoses.size()), diagnoses.size()));
+            Collections.sort(expected);
+            Collections.sort(found);
+            complete &= !diagnoses.isEmpty() && diagnoses.get(0).equals("D" + p) && expected.equals(found);
+        }
+        check("no medical record session failed", errors.get() == 0);
+        check("no medical record was read for the wrong patient", mixedUp.get() == 0);
+        check("no added diagnosis was lost", complete);
+    }
+
+    /**
+     * Makes one random booking, rescheduling or cancellation among the given slots.
+     */
+    private static void churnBooking(DoctorContainer doctorContainer, AppointmentContainer appointmentContainer,
+            Doctor doctor, List<String> slots, Random random) {
+        List<Appointment> booked = new ArrayList<>();
+        for (Appointment appointment : appointmentContainer.getAllAppointmentsByDoctorIdAndStatus("DBOOK", "pending")) {
+            if (slots.contains(appointment.getTime())) {
+                booked.add(appointment);
+            }
+        }
+        String slot = slots.get(random.nextInt(slots.size()));
+        if (booked.isEmpty() || random.nextInt(4) == 0) {
+            doctorContainer.bookSlot(doctor, slot, "PCHURN" + random.nextInt(9), appointmentContainer);
+            return;
+        }
+        Appointment appointment = booked.get(random.nextInt(booked.size()));
+        if (random.nextInt(3) == 0) {
+            doctorContainer.cancelBooking(doctor, appointment, appointmentContainer);
+        } else {
+            doctorContainer.rescheduleToSlot(doctor, appointment, slot, appointmentContainer);
+        }
+    }
+
+    private static String patient(Random random) {
+        return "PSTRESS" + random.nextInt(5);
+    }
+
+    private static String doctor(Random random) {
+        return "DSTRESS" + random.nextInt(3);
+    }
+
+    private static String status(Random random) {
+        return STATUSES[random.nextInt(STATUSES.length)];
+    }
+
+    /**
+     * Prints the result of a check and counts it if it failed.
+     */
+    private static void check(String description, boolean passed) {
+        System.out.println((passed ? "PASS " : "FAIL ") + description);
+        if (!passed) {
+            failures++;
+        }
+    }
+
+    /**
+     * Deletes the temporary journal directory and the files in it.
+     */
+    private static void deleteDirectory(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}